@@ -1,6 +1,9 @@
 package com.example.leo.logChoco.config;
 
+import com.example.leo.logChoco.config.entity.ConvertInfo;
 import com.example.leo.logChoco.config.entity.OutboundLogInfo;
+import com.example.leo.logChoco.config.entity.ProcessingInfo;
+import com.example.leo.logChoco.config.entity.RouteInfo;
 import com.example.leo.logChoco.config.entity.ServerInfo;
 import lombok.Getter;
 import lombok.Setter;
@@ -16,12 +19,21 @@ import java.util.List;
 @Setter
 public class LogChocoConfig {
     private String filePath;
+    // reload formats when setting file is changed
+    private boolean formatFileWatch = true;
 
+    @NestedConfigurationProperty
+    private ProcessingInfo processing = new ProcessingInfo();
+    @NestedConfigurationProperty
+    private ConvertInfo convert = new ConvertInfo();
     @NestedConfigurationProperty
     private OutboundLogInfo outboundLogInfo;
     @NestedConfigurationProperty
     private List<ServerInfo> receiveServer;
     @NestedConfigurationProperty
     private List<ServerInfo> targetServer;
+    // routes of formatted logs to target servers. every log is sent to every target server if it is empty.
+    @NestedConfigurationProperty
+    private List<RouteInfo> route;
 
 }
@@ -0,0 +1,19 @@
+package com.example.leo.logChoco.config.entity;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Class that has limits for batching inbound logs of a lane.
+ * Batch size and linger time are adjusted between these limits to keep latency under target.
+ * */
+@Getter
+@Setter
+public class BatchingInfo {
+    // time from arrival of a log to the end of handling its batch that batching tries to keep.
+    private long targetLatencyMillis = 200;
+    private int minBatchSize = 64;
+    private int maxBatchSize = 1024 * 10;
+    // longest time a log waits for its batch to be filled.
+    private long maxLingerMillis = 2000;
+}
@@ -0,0 +1,32 @@
+package com.example.leo.logChoco.config.entity;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class that has information of offline conversion of log files.
+ * If input is given, logChoco converts the files instead of running inbound servers.
+ * */
+@Getter
+@Setter
+public class ConvertInfo {
+    // files or glob patterns of file names to convert. e.g. /archive/2024-02-*.log
+    private List<String> input = new ArrayList<>();
+    // file that converted logs are written to. they are sent to target servers if it is empty.
+    private String output;
+    // number of threads that convert chunks at once. 0 uses every core.
+    private int parallelism = 0;
+    // input files are split into chunks of about this size at line breaks.
+    private int chunkMegabytes = 16;
+    // address given to converted logs. it is written in syslog header of LEEF.
+    private String source = "127.0.0.1";
+    // stop logChoco when conversion is finished.
+    private boolean exitOnFinish = true;
+
+    public boolean isEnabled() {
+        return input != null && !input.isEmpty();
+    }
+}
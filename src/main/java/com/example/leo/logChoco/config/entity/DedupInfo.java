@@ -0,0 +1,18 @@
+package com.example.leo.logChoco.config.entity;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Class that has limits of the table that collapses repeated logs of formats with dedupColumns.
+ * */
+@Getter
+@Setter
+public class DedupInfo {
+    // logs being collapsed at once. a log that does not fit is sent as it is.
+    private int maxEntries = 100000;
+    // independent parts of the table, chosen by hash of key. rounded up to a power of 2.
+    private int shards = 16;
+    // windows end on ticks of this, so a collapsed log is sent up to this late.
+    private long tickMillis = 100;
+}
@@ -0,0 +1,29 @@
+package com.example.leo.logChoco.config.entity;
+
+import com.example.leo.logChoco.entity.ExecutionEngine;
+import com.example.leo.logChoco.entity.ProcessingOrder;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Class that has information of how inbound batches are matched and formatted.
+ * */
+@Getter
+@Setter
+public class ProcessingInfo {
+    // number of independent lanes. logs are given to a lane by hash of source address.
+    private int lanes = 1;
+    // number of threads that handle a batch of a lane at once. 1 handles every batch on the thread of the lane.
+    private int parallelism = 1;
+    // batch smaller than this is not divided.
+    private int minChunkSize = 256;
+    private ProcessingOrder order = ProcessingOrder.SOURCE;
+    // threads that run lanes and blocking stages.
+    private ExecutionEngine engine = ExecutionEngine.REACTOR;
+    // number of blocking tasks, like disk or file I/O, that run at once.
+    private int blockingConcurrency = 64;
+    // batching of each lane.
+    private BatchingInfo batching = new BatchingInfo();
+    // collapsing repeated logs of formats with dedupColumns.
+    private DedupInfo dedup = new DedupInfo();
+}
@@ -0,0 +1,24 @@
+package com.example.leo.logChoco.config.entity;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class that has a route of formatted logs to target servers.
+ * A log takes the first route that it matches, and is not sent if it matches no route.
+ * */
+@Getter
+@Setter
+public class RouteInfo {
+    // ids of formats of the route. every format if it is empty.
+    private List<String> formats = new ArrayList<>();
+    // event ids of the route. every event if it is empty.
+    private List<String> eventIds = new ArrayList<>();
+    // least value of severity column (severityIndex of format). no limit if it is not set.
+    private Long minSeverity;
+    // names of target-server, or ip:port of it. logs of the route are dropped if it is empty.
+    private List<String> targets = new ArrayList<>();
+}
@@ -1,16 +1,36 @@
 package com.example.leo.logChoco.config.entity;
 
+import com.example.leo.logChoco.entity.Compression;
 import com.example.leo.logChoco.entity.NetworkProtocol;
+import com.example.leo.logChoco.entity.SyslogFormat;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.util.List;
+
 /**
  * Class that has information of servers for inbound and outbound logs
  * */
 @Getter
 @Setter
 public class ServerInfo {
+    // name that routes refer to target-server by. optional.
+    private String name;
     private String ip;
     private int port;
     private NetworkProtocol protocol;
+    // compression of TCP stream. both ends must use the same one.
+    private Compression compression = Compression.NONE;
+    // syslog header of lines of TCP. header is stripped before matching, and its hostname is used as source of log.
+    private SyslogFormat syslogHeader = SyslogFormat.NONE;
+    // ids of formats that logs of this receive-server are matched with. every format is tried if it is empty.
+    private List<String> formats;
+    // try other formats too when none of formats matches.
+    private boolean formatFallback = false;
+
+    // file or glob pattern of file names to tail, for FILE protocol. e.g. /var/log/appliance/*.log
+    private String path;
+    // file that keeps read offsets of tailed files. a file next to working directory is used if it is empty.
+    private String checkpointPath;
+    private long pollMillis = 500;
 }
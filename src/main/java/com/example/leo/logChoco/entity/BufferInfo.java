@@ -1,9 +0,0 @@
-package com.example.leo.logChoco.entity;
-
-import java.time.Duration;
-
-public class BufferInfo {
-
-    public static final int BUFFER_SIZE = 1024 * 10;
-    public static final Duration BUFFER_DURATION_SECOND = Duration.ofSeconds(2);
-}
@@ -0,0 +1,29 @@
+package com.example.leo.logChoco.entity;
+
+import io.netty.handler.codec.compression.ZlibWrapper;
+
+/**
+ * Compression of TCP stream between logChoco and a receive-server or target-server.
+ * */
+public enum Compression {
+    NONE(null, null),
+    GZIP(ZlibWrapper.GZIP, ZlibWrapper.GZIP),
+    // zlib stream. raw deflate without header is also read.
+    DEFLATE(ZlibWrapper.ZLIB, ZlibWrapper.ZLIB_OR_NONE);
+
+    private final ZlibWrapper encoderWrapper;
+    private final ZlibWrapper decoderWrapper;
+
+    Compression(ZlibWrapper encoderWrapper, ZlibWrapper decoderWrapper) {
+        this.encoderWrapper = encoderWrapper;
+        this.decoderWrapper = decoderWrapper;
+    }
+
+    public ZlibWrapper getEncoderWrapper() {
+        return encoderWrapper;
+    }
+
+    public ZlibWrapper getDecoderWrapper() {
+        return decoderWrapper;
+    }
+}
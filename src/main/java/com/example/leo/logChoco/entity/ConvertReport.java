@@ -0,0 +1,25 @@
+package com.example.leo.logChoco.entity;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Class that shows result of offline conversion.
+ * */
+@Getter
+@Setter
+public class ConvertReport {
+
+    private int files;
+    private long bytes;
+    private long lines;
+    private long matched;
+    private long unmatched;
+    // matched but dropped by drop rules.
+    private long dropped;
+    // bytes of converted logs that are written.
+    private long outputBytes;
+    private long elapsedMillis;
+    private double megabytesPerSecond;
+    private double linesPerSecond;
+}
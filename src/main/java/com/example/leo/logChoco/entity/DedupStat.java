@@ -0,0 +1,21 @@
+package com.example.leo.logChoco.entity;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Class that shows how many logs are collapsed by dedupColumns of formats.
+ * */
+@Getter
+@Setter
+public class DedupStat {
+
+    // keys being collapsed now.
+    private int entries;
+    // logs that are not sent because they are collapsed into an earlier log of the same key.
+    private long suppressed;
+    // repeat logs that are sent with count of logs collapsed into them.
+    private long aggregated;
+    // logs that are sent as they are because table is full.
+    private long overflow;
+}
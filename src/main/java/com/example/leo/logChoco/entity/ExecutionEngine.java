@@ -0,0 +1,11 @@
+package com.example.leo.logChoco.entity;
+
+/**
+ * Threads that run pipeline lanes and blocking stages.
+ * */
+public enum ExecutionEngine {
+    // schedulers of reactor on platform threads.
+    REACTOR,
+    // virtual threads of JDK 21 or later. reactor is used instead on older JDK.
+    VIRTUAL_THREAD
+}
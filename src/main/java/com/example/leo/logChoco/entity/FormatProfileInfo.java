@@ -0,0 +1,27 @@
+package com.example.leo.logChoco.entity;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class that shows matching cost of one log format.
+ * */
+@Getter
+@Setter
+public class FormatProfileInfo {
+
+    // index of format in setting file
+    private int formatIndex;
+    private String formatInRegex;
+    private List<String> analysisWarnings;
+    private long matched;
+    private long rejected;
+    private long elapsedNanos;
+    // average time of one attempt in nanoseconds
+    private long avgNanosPerAttempt;
+    // logs dropped by each drop rule.
+    private Map<String, Long> dropRuleHits;
+}
@@ -0,0 +1,25 @@
+package com.example.leo.logChoco.entity;
+
+import lombok.Getter;
+
+/**
+ * Class that has content of setting file for log format and its version.
+ * It is never changed after created.
+ * */
+@Getter
+public class FormatSetting {
+
+    private final String content;
+    // sha-256 of content in hex. used as ETag.
+    private final String hash;
+    // increased by one whenever content is changed.
+    private final long version;
+    private final long loadedAt;
+
+    public FormatSetting(String content, String hash, long version) {
+        this.content = content;
+        this.hash = hash;
+        this.version = version;
+        this.loadedAt = System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.leo.logChoco.entity;
+
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Class that has every compiled log format read from setting file at once.
+ * It is never changed after created. A new snapshot replaces it when setting file is reloaded.
+ * */
+@Getter
+public class FormatSnapshot {
+
+    private final List<ReadFieldInfo> fieldInfoList;
+    // increased by one on every successful reload.
+    private final long version;
+    private final long loadedAt;
+
+    // formats that are tried for logs of each receive-server, by index of receive-server. null if every format is tried.
+    private final int[][] receiverFormats;
+    // true at [receive-server][format] if the format is bound to the receive-server.
+    private final boolean[][] receiverBindings;
+    // true if other formats are tried when no bound format matches.
+    private final boolean[] receiverFallbacks;
+    // every format in order, for logs of receive-server that has no binding.
+    private final int[] allFormats;
+    // target servers of formatted logs of each format.
+    private final RouteTable routeTable;
+
+    public FormatSnapshot(List<ReadFieldInfo> fieldInfoList, long version) {
+        this(fieldInfoList, version, new int[0][], new boolean[0], RouteTable.EVERY_TARGET);
+    }
+
+    public FormatSnapshot(List<ReadFieldInfo> fieldInfoList, long version, int[][] receiverFormats, boolean[] receiverFallbacks,
+                          RouteTable routeTable) {
+        this.fieldInfoList = Collections.unmodifiableList(fieldInfoList);
+        this.version = version;
+        this.loadedAt = System.currentTimeMillis();
+        this.receiverFormats = receiverFormats;
+        this.receiverFallbacks = receiverFallbacks;
+        this.routeTable = routeTable;
+
+        this.allFormats = new int[fieldInfoList.size()];
+        for(int i = 0; i < allFormats.length; i++) {
+            allFormats[i] = i;
+        }
+        this.receiverBindings = new boolean[receiverFormats.length][];
+        for(int receiver = 0; receiver < receiverFormats.length; receiver++) {
+            if(receiverFormats[receiver] != null) {
+                receiverBindings[receiver] = new boolean[fieldInfoList.size()];
+                for(int formatIndex : receiverFormats[receiver]) {
+                    receiverBindings[receiver][formatIndex] = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Return indexes of formats that are tried first for logs of a receive-server.
+     * Every format is returned for receive-server that has no binding, or for unknown receive-server like -1.
+     * */
+    public int[] getFormatsOf(int receiverIndex) {
+        if(receiverIndex < 0 || receiverIndex >= receiverFormats.length || receiverFormats[receiverIndex] == null) {
+            return allFormats;
+        }
+        return receiverFormats[receiverIndex];
+    }
+
+    /**
+     * Return true if format is in getFormatsOf(receiverIndex).
+     * */
+    public boolean isBound(int receiverIndex, int formatIndex) {
+        if(receiverIndex < 0 || receiverIndex >= receiverBindings.length || receiverBindings[receiverIndex] == null) {
+            return true;
+        }
+        return receiverBindings[receiverIndex][formatIndex];
+    }
+
+    /**
+     * Return true if formats that are not bound are also tried for logs of a receive-server.
+     * */
+    public boolean isFallback(int receiverIndex) {
+        return receiverIndex >= 0 && receiverIndex < receiverFallbacks.length && receiverFallbacks[receiverIndex];
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.leo.logChoco.entity;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Class that has candidate format and sample logs to test it with.
+ * */
+@Getter
+@Setter
+public class FormatTestRequest {
+
+    // candidate format. same with an entry of setting file.
+    private ReadFieldInfo format;
+    // raw logs to test.
+    private List<String> lines;
+    // how long throughput is measured.
+    private long durationMillis = 200;
+}
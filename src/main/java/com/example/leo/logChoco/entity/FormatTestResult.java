@@ -0,0 +1,54 @@
+package com.example.leo.logChoco.entity;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class that shows how candidate format matched sample logs and what it costs.
+ * */
+@Getter
+@Setter
+public class FormatTestResult {
+
+    private String formatInRegex;
+    private List<String> analysisWarnings;
+    private List<LineResult> lines = new ArrayList<>();
+
+    private long attempts;
+    private double matchesPerSecond;
+    private double attemptsPerSecond;
+    // heap allocated by one match attempt. -1 if JVM doesn't support measuring it.
+    private double allocatedBytesPerAttempt;
+    // true if any match didn't finish in time limit. throughput is not measured then.
+    private boolean timedOut;
+
+    // inputs that made regex slow down by backtracking.
+    private List<BacktrackingInfo> backtracking = new ArrayList<>();
+
+    @Getter
+    @Setter
+    public static class LineResult {
+        private String line;
+        private boolean matched;
+        // true if matching didn't finish in time limit, or ran out of stack by recursion of regex.
+        private boolean timedOut;
+        // value of each column. null if not matched.
+        private Map<String, String> fields;
+        // typed value of each column read by scanner. e.g. epoch millis for date.
+        private Map<String, Object> values;
+    }
+
+    @Getter
+    @Setter
+    public static class BacktrackingInfo {
+        private String input;
+        private long baseNanos;
+        private long nearMissNanos;
+        // true if matching didn't finish in time limit.
+        private boolean timedOut;
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.leo.logChoco.entity;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Class that shows how many lines of a HTTP ingest request are given to pipeline.
+ * */
+@Getter
+@Setter
+public class IngestResult {
+
+    private long accepted;
+    // lines that are too long, or NDJSON lines that have no log field.
+    private long rejected;
+}
@@ -0,0 +1,28 @@
+package com.example.leo.logChoco.entity;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Class that shows how many logs each pipeline lane has received and handled.
+ * */
+@Getter
+@Setter
+public class LaneInfo {
+
+    private int lane;
+    private long received;
+    private long processed;
+    // logs that are received but not handled yet.
+    private long queued;
+    private long batches;
+    private int lastBatchSize;
+    // batch size and linger time that batching controller uses now.
+    private int batchSize;
+    private double lingerMillis;
+    // logs per second observed while batches are filled.
+    private double arrivalRate;
+    private double serviceNanosPerLog;
+    // time from arrival of the first log of last batch to the end of handling it.
+    private double lastLatencyMillis;
+}
@@ -0,0 +1,37 @@
+package com.example.leo.logChoco.entity;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Class that counts match attempts of one log format.
+ * */
+public class MatchStat {
+
+    // number of logs that matched the format
+    private final LongAdder matched = new LongAdder();
+    // number of logs that were tested but not matched
+    private final LongAdder rejected = new LongAdder();
+    // time spent on matching in nanoseconds
+    private final LongAdder elapsedNanos = new LongAdder();
+
+    public void record(boolean isMatched, long nanos) {
+        if(isMatched) {
+            matched.increment();
+        } else {
+            rejected.increment();
+        }
+        elapsedNanos.add(nanos);
+    }
+
+    public long getMatched() {
+        return matched.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos.sum();
+    }
+}
@@ -1,6 +1,5 @@
 package com.example.leo.logChoco.entity;
 
-import com.example.leo.logChoco.entity.log.LogInfo;
 import lombok.Getter;
 import lombok.Setter;
 
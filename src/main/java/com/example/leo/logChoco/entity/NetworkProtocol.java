@@ -1,5 +1,7 @@
 package com.example.leo.logChoco.entity;
 
 public enum NetworkProtocol {
-    TCP, UDP, TLS, HTTP
+    TCP, UDP, TLS, HTTP,
+    // tails local files. only for inbound.
+    FILE
 }
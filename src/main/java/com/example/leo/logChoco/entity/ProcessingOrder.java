@@ -0,0 +1,11 @@
+package com.example.leo.logChoco.entity;
+
+/**
+ * Order of formatted logs when a batch is handled by many workers.
+ * */
+public enum ProcessingOrder {
+    // logs from same address keep their order. logs from different addresses can be reordered.
+    SOURCE,
+    // every log keeps order of arrival.
+    GLOBAL
+}
@@ -1,11 +1,20 @@
 package com.example.leo.logChoco.entity;
 
+import com.example.leo.logChoco.entity.log.LogBatch;
 import com.example.leo.logChoco.format.OutboundLogFormat;
+import com.example.leo.logChoco.regex.MatchMode;
+import com.example.leo.logChoco.regex.scanner.AbstractFieldScanner;
+import com.example.leo.logChoco.regex.scanner.FieldTokenizer;
+import com.example.leo.logChoco.regex.scanner.ScannedLine;
+import com.example.leo.logChoco.rule.DropRule;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
@@ -16,6 +25,8 @@ import java.util.regex.Pattern;
 @Setter
 @ToString
 public class ReadFieldInfo {
+    // name of format that receive-servers refer to. optional.
+    private String id;
     // String of key 'format' that is read from setting file.
     private List<String> format;
     // String of key 'columns' that is read from setting file.
@@ -27,6 +38,21 @@ public class ReadFieldInfo {
     // String of key 'logFormat' that is read from setting file.
     private OutboundLogFormat logFormat;
     private int idIndex;
+    // REGEX by default. SCANNER checks each field without regex. KEY_VALUE and QUOTED are for logs that are not positional.
+    private MatchMode matchMode = MatchMode.REGEX;
+    // divides key and value in KEY_VALUE mode.
+    private String keyValueSeparator = "=";
+    // quote of values that have delimiter in them, in KEY_VALUE and QUOTED mode.
+    private char quote = '"';
+    // time zone of DATE columns, e.g. Asia/Seoul. time zone of server if not set.
+    private String timeZone;
+    // expressions on typed columns. matched logs that satisfy any of them are dropped before formatting.
+    // e.g. "serverity < 3 and critical == false", "dport in {53,123}", "sip in 10.0.0.0/8"
+    private List<String> dropRules = new ArrayList<>();
+    // columns of key that repeated logs are collapsed by. the first log of a key is sent at once, and later logs of it in window
+    // are sent as one log with repeat count and first and last time when window ends. nothing is collapsed if it is empty.
+    private List<String> dedupColumns = new ArrayList<>();
+    private long dedupWindowMillis = 10000;
 
     // used for CEF format
     private int severityIndex = -1;
@@ -34,6 +60,44 @@ public class ReadFieldInfo {
 
     private String formatInRegex;
     private Pattern pattern;
+    // delimiter as regex in REGEX mode, like \s+ or \t. null if delimiter is plain text, which is found without regex.
+    @JsonIgnore
+    @ToString.Exclude
+    private Pattern delimiterPattern;
+    // warnings found when regex is analyzed.
+    @JsonIgnore
+    private List<String> analysisWarnings = new ArrayList<>();
+
+    // scanner of each field. built for every format so typed values can be read in any mode.
+    @JsonIgnore
+    @ToString.Exclude
+    private AbstractFieldScanner[] fieldScanners;
+    // index of first DATE column that is used as event time. -1 if there is no DATE column.
+    @JsonIgnore
+    private int eventTimeIndex = -1;
+    @JsonIgnore
+    @ToString.Exclude
+    private DropRule[] compiledDropRules = new DropRule[0];
+    // indexes of dedupColumns.
+    @JsonIgnore
+    private int[] dedupFields = new int[0];
+    // splits log into columns in KEY_VALUE and QUOTED mode. null in other modes.
+    @JsonIgnore
+    @ToString.Exclude
+    private FieldTokenizer fieldTokenizer;
+    // positions of columns of a log that is only checked.
+    @JsonIgnore
+    @ToString.Exclude
+    private final ThreadLocal<ScannedLine> scratchLines = ThreadLocal.withInitial(() -> new ScannedLine(0));
+    // matcher of delimiterPattern for each thread.
+    @JsonIgnore
+    @ToString.Exclude
+    private final ThreadLocal<Matcher> delimiterMatchers = ThreadLocal.withInitial(() -> delimiterPattern.matcher(""));
+
+    // count and time of match attempts
+    @JsonIgnore
+    @ToString.Exclude
+    private final MatchStat matchStat = new MatchStat();
 
     public void setFormatInRegex(String formatInRegex) {
         this.pattern = Pattern.compile(formatInRegex);
@@ -44,6 +108,147 @@ public class ReadFieldInfo {
      * Check if given string matches regex.
      */
     public boolean checkIfMatchLogRegex(String text) {
-        return this.pattern.matcher(text).matches();
+        long start = System.nanoTime();
+        boolean isMatched = matches(text);
+        matchStat.record(isMatched, System.nanoTime() - start);
+        return isMatched;
+    }
+
+    /**
+     * Same with checkIfMatchLogRegex(String), but reuses matcher of this format instead of creating one.
+     * */
+    public boolean checkIfMatchLogRegex(CharSequence text, Matcher matcher) {
+        long start = System.nanoTime();
+        boolean isMatched = matchMode == MatchMode.REGEX ? matcher.reset(text).matches() : scan(text, null);
+        matchStat.record(isMatched, System.nanoTime() - start);
+        return isMatched;
+    }
+
+    /**
+     * Check if given text matches format in match mode, without recording stat.
+     * */
+    public boolean matches(CharSequence text) {
+        if(matchMode == MatchMode.REGEX) {
+            return this.pattern.matcher(text).matches();
+        }
+        return scan(text, null);
+    }
+
+    /**
+     * Split text by delimiter and check each field with its scanner.
+     * Last field takes the rest of text. If line is given, position and typed value of each field is saved into it.
+     * */
+    public boolean scan(CharSequence text, ScannedLine line) {
+        if(fieldTokenizer != null) {
+            return scanTokens(text, line);
+        }
+
+        int fieldCount = fieldScanners.length;
+        if(line != null) {
+            line.reset(fieldCount);
+        }
+
+        int start = 0;
+        for(int i = 0; i < fieldCount; i++) {
+            int end = i == fieldCount - 1 ? text.length() : indexOfDelimiter(text, start, text.length());
+            if(end < 0) {
+                return false;
+            }
+
+            AbstractFieldScanner scanner = fieldScanners[i];
+            if(!scanner.isValid(text, start, end)) {
+                return false;
+            }
+            if(line != null) {
+                boolean hasValue = start < end && scanner.isTyped();
+                line.set(i, start, end, hasValue ? scanner.parse(text, start, end) : 0, hasValue);
+            }
+            start = delimiterEnd(text, end, text.length());
+        }
+        return true;
+    }
+
+    /**
+     * Return true if a line of batch that matches this format is dropped by any of drop rules.
+     * Fields of the line must be split already. Only the first rule that drops it is counted.
+     * */
+    public boolean isDropped(LogBatch batch, int line) {
+        for(DropRule rule : compiledDropRules) {
+            if(rule.drops(batch, line)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Split text into columns by tokenizer and check each column with its scanner.
+     * */
+    private boolean scanTokens(CharSequence text, ScannedLine line) {
+        int fieldCount = fieldScanners.length;
+        ScannedLine fields = line != null ? line : scratchLines.get();
+        fields.reset(fieldCount);
+
+        int[] starts = fields.getStarts();
+        int[] ends = fields.getEnds();
+        if(!fieldTokenizer.split(text, 0, text.length(), starts, ends, 0)) {
+            return false;
+        }
+
+        for(int i = 0; i < fieldCount; i++) {
+            int start = starts[i];
+            int end = ends[i];
+            AbstractFieldScanner scanner = fieldScanners[i];
+            if(!scanner.isValid(text, start, end)) {
+                return false;
+            }
+            if(line != null) {
+                boolean hasValue = start < end && scanner.isTyped();
+                line.set(i, start, end, hasValue ? scanner.parse(text, start, end) : 0, hasValue);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return index of delimiter between from and end of text, or -1 if there is none.
+     * */
+    public int indexOfDelimiter(CharSequence text, int from, int end) {
+        if(delimiterPattern != null) {
+            Matcher matcher = delimiterMatcher(text, from, end);
+            return matcher.find() ? matcher.start() : -1;
+        }
+
+        int last = end - delimiter.length();
+        char first = delimiter.charAt(0);
+
+        for(int i = from; i <= last; i++) {
+            if(text.charAt(i) != first) {
+                continue;
+            }
+            int k = 1;
+            while(k < delimiter.length() && text.charAt(i + k) == delimiter.charAt(k)) {
+                k++;
+            }
+            if(k == delimiter.length()) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Return index right after delimiter that starts at index. delimiter that is regex can be of any length.
+     * */
+    public int delimiterEnd(CharSequence text, int index, int end) {
+        if(delimiterPattern != null) {
+            Matcher matcher = delimiterMatcher(text, index, end);
+            return matcher.lookingAt() ? matcher.end() : index;
+        }
+        return index + delimiter.length();
+    }
+
+    private Matcher delimiterMatcher(CharSequence text, int from, int end) {
+        return delimiterMatchers.get().reset(text).region(from, end).useTransparentBounds(true).useAnchoringBounds(false);
     }
 }
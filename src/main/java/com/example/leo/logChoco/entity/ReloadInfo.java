@@ -0,0 +1,22 @@
+package com.example.leo.logChoco.entity;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Class that shows result of reloading setting file for log format.
+ * */
+@Getter
+@Setter
+public class ReloadInfo {
+
+    // version of format snapshot in use.
+    private long version;
+    private long successCount;
+    private long failureCount;
+    // time spent on last reload in milliseconds.
+    private long lastReloadMillis;
+    private long lastSuccessAt;
+    private long lastFailureAt;
+    private String lastError;
+}
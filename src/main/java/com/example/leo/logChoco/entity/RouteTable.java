@@ -0,0 +1,105 @@
+package com.example.leo.logChoco.entity;
+
+import com.example.leo.logChoco.entity.log.LogBatch;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Class that has routes of formatted logs compiled for formats of a snapshot.
+ * Routes that can take logs of each format are listed by index of format, so finding a route is an array lookup
+ * and a few checks. Each distinct set of targets has an index, and logs are collected for each target set.
+ * */
+public class RouteTable {
+
+    // table that sends every log to every target.
+    public static final RouteTable EVERY_TARGET = new RouteTable(null, new String[][]{null}, List.of());
+
+    // routes that can take logs of each format, in order. null if every log goes to target set 0.
+    private final Route[][] routesByFormat;
+    // keys of targets of each target set. null means every target.
+    private final String[][] targetSets;
+    @Getter
+    private final List<Route> routes;
+    // logs that match no route since the table is made.
+    private final LongAdder unrouted = new LongAdder();
+
+    public RouteTable(Route[][] routesByFormat, String[][] targetSets, List<Route> routes) {
+        this.routesByFormat = routesByFormat;
+        this.targetSets = targetSets;
+        this.routes = routes;
+    }
+
+    /**
+     * Return index of target set of a formatted line, or -1 if it matches no route.
+     * @param severityIndex severityIndex of format of the line
+     * */
+    public int route(LogBatch batch, int line, int severityIndex) {
+        if(routesByFormat == null) {
+            return 0;
+        }
+
+        for(Route route : routesByFormat[batch.getFormatIndex(line)]) {
+            if(route.matches(batch, line, severityIndex)) {
+                route.hits.increment();
+                return route.targetSet;
+            }
+        }
+        unrouted.increment();
+        return -1;
+    }
+
+    public int getTargetSetCount() {
+        return targetSets.length;
+    }
+
+    /**
+     * Return keys of targets of a target set. null means every target.
+     * */
+    public String[] getTargets(int targetSet) {
+        return targetSets[targetSet];
+    }
+
+    public long getUnroutedCount() {
+        return unrouted.sum();
+    }
+
+    /**
+     * A route of the table. it is shared by every format that it takes.
+     * */
+    @Getter
+    @Setter
+    public static class Route {
+        private int index;
+        // as they are written in route.
+        private List<String> formats;
+        private List<String> targets;
+        // null if every event id is taken.
+        private Set<String> eventIds;
+        // null if there is no limit.
+        private Long minSeverity;
+        private int targetSet;
+        @Getter(AccessLevel.NONE)
+        private final LongAdder hits = new LongAdder();
+
+        private boolean matches(LogBatch batch, int line, int severityIndex) {
+            if(eventIds != null && !eventIds.contains(batch.getEventId(line))) {
+                return false;
+            }
+            if(minSeverity != null) {
+                return severityIndex >= 0 && batch.hasFieldValue(line, severityIndex)
+                        && batch.getFieldValue(line, severityIndex) >= minSeverity;
+            }
+            return true;
+        }
+
+        public long getHitCount() {
+            return hits.sum();
+        }
+
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.leo.logChoco.entity;
+
+/**
+ * Syslog header that a receive-server reads before matching formats.
+ * */
+public enum SyslogFormat {
+    // line is matched as it is.
+    NONE,
+    // RFC 5424 if version follows PRI, otherwise RFC 3164.
+    AUTO,
+    RFC3164,
+    RFC5424
+}
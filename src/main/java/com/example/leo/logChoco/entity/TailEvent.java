@@ -0,0 +1,26 @@
+package com.example.leo.logChoco.entity;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Class that is sent to live tail clients.
+ * It has raw log and formatted log of one inbound log.
+ * */
+@Getter
+@Setter
+public class TailEvent {
+
+    private String ip;
+    private int port;
+    // index of matched format. -1 if no format is matched.
+    private int formatIndex;
+    private String eventId;
+    // time in log in epoch milliseconds. -1 if it is unknown.
+    private long eventTime;
+    // read from syslog header. -1 and null if log has no header.
+    private int priority;
+    private String appName;
+    private String rawLog;
+    private String formattedLog;
+}
@@ -0,0 +1,26 @@
+package com.example.leo.logChoco.entity;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.regex.Pattern;
+
+/**
+ * Class that has conditions of live tail request.
+ * Each condition is ignored if it is not set.
+ * */
+@Getter
+@Setter
+public class TailFilter {
+
+    // ip address of device that sends logs.
+    private String ip;
+    // index of format in setting file. -1 means logs that match no format.
+    private Integer formatIndex;
+    // event id of formatted log.
+    private String eventId;
+    // regex that is checked against raw log.
+    private Pattern rawPattern;
+    // ratio of logs to send, between 0 and 1.
+    private double sampleRate = 1.0;
+}
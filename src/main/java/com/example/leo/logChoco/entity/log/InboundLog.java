@@ -1,14 +1,149 @@
 package com.example.leo.logChoco.entity.log;
 
+import com.example.leo.logChoco.regex.scanner.EventTimeParser;
+import io.netty.buffer.ByteBuf;
+import io.netty.util.Recycler;
+import io.netty.util.ResourceLeakDetector;
+import io.netty.util.ResourceLeakDetectorFactory;
+import io.netty.util.ResourceLeakTracker;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Class that is a log read from inbound connection.
+ * It is pooled for each event loop thread by Recycler, and keeps raw bytes of log in a buffer that is reused,
+ * so reading a log creates no object. Address and its string are shared by every log of a connection.
+ * It must be recycled once it is copied into a batch, and must not be used after that.
+ * Logs that are never recycled are reported by leak detector of netty. set -Dio.netty.leakDetection.level=paranoid to check every log.
+ * */
 @Getter
 @Setter
 public class InboundLog extends LogInfo{
 
+    private static final int INITIAL_BYTES = 256;
+    // buffer larger than this is not kept in pool, so a few long lines don't keep large buffers in every pooled log.
+    private static final int MAX_POOLED_BYTES = 4 * 1024;
+    private static final byte[] EMPTY_BYTES = new byte[0];
+    // logs of a whole batch are out of pool at once, so pool holds more than the largest batch.
+    private static final int MAX_POOLED_LOGS = 16 * 1024;
+    // every log is pooled, not one of some. logs recycled by lane threads come back in chunks of this size.
+    private static final int POOL_RATIO = 0;
+    private static final int RECYCLE_CHUNK_SIZE = 32;
+
+    private static final Recycler<InboundLog> RECYCLER = new Recycler<>(MAX_POOLED_LOGS, POOL_RATIO, RECYCLE_CHUNK_SIZE) {
+        @Override
+        protected InboundLog newObject(Handle<InboundLog> handle) {
+            return new InboundLog(handle);
+        }
+    };
+
+    private static final ResourceLeakDetector<InboundLog> LEAK_DETECTOR =
+            ResourceLeakDetectorFactory.instance().newResourceLeakDetector(InboundLog.class);
+
+    @Getter(AccessLevel.NONE)
+    private final Recycler.Handle<InboundLog> handle;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private ResourceLeakTracker<InboundLog> leakTracker;
+
+    // raw address of source. it is shared by logs of a connection, so it must not be changed.
+    private byte[] address;
+    private byte[] bytes = new byte[INITIAL_BYTES];
+    private int length;
+
+    // read from syslog header. -1, null and unknown time if log has no header.
+    private int priority = -1;
+    private String appName;
+    private long eventTime = EventTimeParser.UNKNOWN_TIME;
+    // index of receive-server that log is read from. -1 if it is unknown.
+    private int receiverIndex = -1;
 
     public InboundLog(String ip, int port, String text) {
         super(ip, port, text);
+        this.handle = null;
+    }
+
+    private InboundLog(Recycler.Handle<InboundLog> handle) {
+        super(null, 0, null);
+        this.handle = handle;
+    }
+
+    /**
+     * Take a log from pool of current thread and copy readable bytes of buffer into it.
+     * @param ip string of address that is cached by connection
+     * */
+    public static InboundLog newInstance(byte[] address, String ip, int port, ByteBuf buf) {
+        InboundLog inboundLog = take(address, ip, port, buf.readableBytes());
+        buf.getBytes(buf.readerIndex(), inboundLog.bytes, 0, inboundLog.length);
+        return inboundLog;
+    }
+
+    /**
+     * Take a log from pool of current thread and copy a range of bytes into it.
+     * */
+    public static InboundLog newInstance(byte[] address, String ip, int port, byte[] src, int offset, int length) {
+        InboundLog inboundLog = take(address, ip, port, length);
+        System.arraycopy(src, offset, inboundLog.bytes, 0, length);
+        return inboundLog;
+    }
+
+    private static InboundLog take(byte[] address, String ip, int port, int length) {
+        InboundLog inboundLog = RECYCLER.get();
+        inboundLog.leakTracker = LEAK_DETECTOR.track(inboundLog);
+        inboundLog.address = address;
+        inboundLog.setIp(ip);
+        inboundLog.setPort(port);
+
+        if(inboundLog.bytes.length < length) {
+            inboundLog.bytes = new byte[Math.max(Math.max(inboundLog.bytes.length * 2, INITIAL_BYTES), length)];
+        }
+        inboundLog.length = length;
+        return inboundLog;
+    }
+
+    /**
+     * Return true if raw bytes of log are in this log, which is true for logs taken from pool.
+     * */
+    public boolean isPooled() {
+        return handle != null;
+    }
+
+    /**
+     * Return text of log. It is decoded only when it is asked, because batches read bytes directly.
+     * */
+    @Override
+    public String getLog() {
+        if(super.getLog() == null && isPooled()) {
+            setLog(new String(bytes, 0, length, StandardCharsets.UTF_8));
+        }
+        return super.getLog();
+    }
+
+    /**
+     * Give this log back to pool. It does nothing for a log that is not taken from pool.
+     * */
+    public void recycle() {
+        if(handle == null) {
+            return;
+        }
+        if(leakTracker != null) {
+            leakTracker.close(this);
+            leakTracker = null;
+        }
+        address = null;
+        setIp(null);
+        setLog(null);
+        length = 0;
+        if(bytes.length > MAX_POOLED_BYTES) {
+            bytes = EMPTY_BYTES;
+        }
+        priority = -1;
+        appName = null;
+        eventTime = EventTimeParser.UNKNOWN_TIME;
+        receiverIndex = -1;
+        handle.recycle(this);
     }
 }
@@ -0,0 +1,412 @@
+package com.example.leo.logChoco.entity.log;
+
+import com.example.leo.logChoco.entity.ReadFieldInfo;
+import com.example.leo.logChoco.regex.scanner.AbstractFieldScanner;
+import com.example.leo.logChoco.regex.scanner.EventTimeParser;
+import com.example.leo.logChoco.regex.scanner.FieldTokenizer;
+import lombok.Getter;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Class that has a batch of inbound logs in columns instead of one object per log.
+ * Raw logs are copied into one shared char buffer, and each log and field is kept as offsets into it.
+ * Typed values of fields are kept in primitive arrays. see scanners for how each type is encoded.
+ * It is reused through LogBatchPool, so nothing read from it as CharSequence can be kept after the batch is released.
+ * Different lines can be handled by different threads at once, because each line has its own slots in every array.
+ * */
+public class LogBatch {
+
+    private final int INITIAL_LINES = 1024;
+    private final int INITIAL_CHARS = 128 * 1024;
+    private final int INITIAL_FIELDS = 16 * 1024;
+
+    @Getter
+    private int size = 0;
+
+    private char[] text = new char[INITIAL_CHARS];
+    private int textLength = 0;
+    // view on text. charAt of it is index of text. it is never moved, so many threads can read it.
+    private CharBuffer textView = CharBuffer.wrap(text);
+
+    private int[] lineStarts = new int[INITIAL_LINES];
+    private int[] lineEnds = new int[INITIAL_LINES];
+    // address string is shared by logs from same connection.
+    private String[] ips = new String[INITIAL_LINES];
+    private int[] ports = new int[INITIAL_LINES];
+    // index of matched format. -1 if no format is matched.
+    private int[] formatIndexes = new int[INITIAL_LINES];
+    // time in log in epoch milliseconds. -1 if it is unknown.
+    private long[] eventTimes = new long[INITIAL_LINES];
+    // read from syslog header. -1 and null if log has no header.
+    private int[] priorities = new int[INITIAL_LINES];
+    private String[] appNames = new String[INITIAL_LINES];
+    // index of receive-server of log. -1 if it is unknown.
+    private int[] receiverIndexes = new int[INITIAL_LINES];
+    // true if log is matched but dropped by a drop rule of its format. it has no formatted log.
+    private boolean[] drops = new boolean[INITIAL_LINES];
+    // result of formatting. null if no format is matched.
+    private String[] eventIds = new String[INITIAL_LINES];
+    private String[] formattedLogs = new String[INITIAL_LINES];
+
+    // fields of a line are at line * fieldStride ~ line * fieldStride + fieldCounts[line] of field arrays.
+    private int fieldStride = 0;
+    private int[] fieldCounts = new int[INITIAL_LINES];
+    private int[] fieldStarts = new int[INITIAL_FIELDS];
+    private int[] fieldEnds = new int[INITIAL_FIELDS];
+    private long[] fieldValues = new long[INITIAL_FIELDS];
+    private boolean[] fieldHasValues = new boolean[INITIAL_FIELDS];
+
+    /**
+     * Copy a log into the batch.
+     * */
+    public void add(String ip, int port, String log) {
+        if(size == lineStarts.length) {
+            growLines();
+        }
+        if(textLength + log.length() > text.length) {
+            growText(textLength + log.length());
+        }
+
+        log.getChars(0, log.length(), text, textLength);
+        commitLine(ip, port, log.length());
+    }
+
+    /**
+     * Copy UTF-8 bytes of a log into the batch. Bytes in ASCII are copied without decoding into string.
+     * */
+    public void add(String ip, int port, byte[] bytes, int length) {
+        if(size == lineStarts.length) {
+            growLines();
+        }
+        if(textLength + length > text.length) {
+            growText(textLength + length);
+        }
+
+        for(int i = 0; i < length; i++) {
+            byte b = bytes[i];
+            if(b < 0) {
+                // not ASCII. nothing is committed yet, so decode whole log instead.
+                add(ip, port, new String(bytes, 0, length, StandardCharsets.UTF_8));
+                return;
+            }
+            text[textLength + i] = (char) b;
+        }
+        commitLine(ip, port, length);
+    }
+
+    /**
+     * Copy UTF-8 bytes of a log from buffer, like a mapped file, into the batch. Position of buffer is not changed.
+     * */
+    public void add(String ip, int port, ByteBuffer buffer, int offset, int length) {
+        if(size == lineStarts.length) {
+            growLines();
+        }
+        if(textLength + length > text.length) {
+            growText(textLength + length);
+        }
+
+        for(int i = 0; i < length; i++) {
+            byte b = buffer.get(offset + i);
+            if(b < 0) {
+                byte[] bytes = new byte[length];
+                buffer.get(offset, bytes, 0, length);
+                add(ip, port, new String(bytes, StandardCharsets.UTF_8));
+                return;
+            }
+            text[textLength + i] = (char) b;
+        }
+        commitLine(ip, port, length);
+    }
+
+    public void addAll(List<? extends LogInfo> logs) {
+        for(LogInfo log : logs) {
+            if(log instanceof InboundLog inboundLog && inboundLog.isPooled()) {
+                add(inboundLog.getIp(), inboundLog.getPort(), inboundLog.getBytes(), inboundLog.getLength());
+            } else {
+                add(log.getIp(), log.getPort(), log.getLog());
+            }
+            if(log instanceof InboundLog inboundLog) {
+                receiverIndexes[size - 1] = inboundLog.getReceiverIndex();
+                if(inboundLog.getPriority() >= 0) {
+                    setSyslogHeader(size - 1, inboundLog.getPriority(), inboundLog.getAppName(), inboundLog.getEventTime());
+                }
+            }
+        }
+    }
+
+    /**
+     * Make a line of length chars that are copied at the end of text.
+     * */
+    private void commitLine(String ip, int port, int length) {
+        lineStarts[size] = textLength;
+        lineEnds[size] = textLength + length;
+        ips[size] = ip;
+        ports[size] = port;
+        formatIndexes[size] = -1;
+        eventTimes[size] = EventTimeParser.UNKNOWN_TIME;
+        priorities[size] = -1;
+        receiverIndexes[size] = -1;
+        drops[size] = false;
+        fieldCounts[size] = 0;
+
+        textLength += length;
+        size++;
+    }
+
+    /**
+     * Clear logs to reuse the batch. Buffers are kept.
+     * */
+    public void clear() {
+        Arrays.fill(ips, 0, size, null);
+        Arrays.fill(appNames, 0, size, null);
+        Arrays.fill(eventIds, 0, size, null);
+        Arrays.fill(formattedLogs, 0, size, null);
+        size = 0;
+        textLength = 0;
+    }
+
+    /**
+     * Return capacity of text buffer in chars.
+     * */
+    public int getTextCapacity() {
+        return text.length;
+    }
+
+    /**
+     * Reserve slots of fields for every line. It must be called before lines are split.
+     * @param maxFieldCount the largest number of columns among formats
+     * */
+    public void reserveFields(int maxFieldCount) {
+        fieldStride = maxFieldCount;
+        if((long) size * fieldStride > fieldStarts.length) {
+            growFields(size * fieldStride);
+        }
+    }
+
+    /**
+     * Return view on text of this batch. given view is returned if it is already on the text.
+     * */
+    public CharBuffer getTextView(CharBuffer view) {
+        return view != null && view.hasArray() && view.array() == text ? view : CharBuffer.wrap(text);
+    }
+
+    /**
+     * Move view from getTextView to a line and return it.
+     * */
+    public CharSequence getLineView(int line, CharBuffer view) {
+        view.clear();
+        view.position(lineStarts[line]);
+        view.limit(lineEnds[line]);
+        return view;
+    }
+
+    /**
+     * Return a line as new string.
+     * */
+    public String getLine(int line) {
+        return new String(text, lineStarts[line], lineEnds[line] - lineStarts[line]);
+    }
+
+    public int getLineLength(int line) {
+        return lineEnds[line] - lineStarts[line];
+    }
+
+    public String getIp(int line) {
+        return ips[line];
+    }
+
+    public int getPort(int line) {
+        return ports[line];
+    }
+
+    public int getFormatIndex(int line) {
+        return formatIndexes[line];
+    }
+
+    public void setFormatIndex(int line, int formatIndex) {
+        formatIndexes[line] = formatIndex;
+    }
+
+    public long getEventTime(int line) {
+        return eventTimes[line];
+    }
+
+    public boolean isDropped(int line) {
+        return drops[line];
+    }
+
+    public void setDropped(int line, boolean dropped) {
+        drops[line] = dropped;
+    }
+
+    public int getReceiverIndex(int line) {
+        return receiverIndexes[line];
+    }
+
+    public int getPriority(int line) {
+        return priorities[line];
+    }
+
+    public String getAppName(int line) {
+        return appNames[line];
+    }
+
+    /**
+     * Keep syslog header of a line. Timestamp of header is event time unless a date field of format is read.
+     * */
+    public void setSyslogHeader(int line, int priority, String appName, long timestamp) {
+        priorities[line] = priority;
+        appNames[line] = appName;
+        eventTimes[line] = timestamp;
+    }
+
+    public String getEventId(int line) {
+        return eventIds[line];
+    }
+
+    public String getFormattedLog(int line) {
+        return formattedLogs[line];
+    }
+
+    public void setFormattedLog(int line, String eventId, String formattedLog) {
+        eventIds[line] = eventId;
+        formattedLogs[line] = formattedLog;
+    }
+
+    /**
+     * Split a line matched by given format into fields and read typed value of each field.
+     * Last field takes the rest of line, and missing fields are empty.
+     * Formats with tokenizer are split by it instead of delimiter.
+     * */
+    public void splitFields(int line, ReadFieldInfo fieldInfo) {
+        AbstractFieldScanner[] scanners = fieldInfo.getFieldScanners();
+        int fieldCount = scanners.length;
+        int base = line * fieldStride;
+        fieldCounts[line] = fieldCount;
+
+        int lineEnd = lineEnds[line];
+        FieldTokenizer tokenizer = fieldInfo.getFieldTokenizer();
+        if(tokenizer != null) {
+            if(!tokenizer.split(textView, lineStarts[line], lineEnd, fieldStarts, fieldEnds, base)) {
+                Arrays.fill(fieldStarts, base, base + fieldCount, lineEnd);
+                Arrays.fill(fieldEnds, base, base + fieldCount, lineEnd);
+            }
+            for(int i = 0; i < fieldCount; i++) {
+                readFieldValue(base + i, scanners[i]);
+            }
+        } else {
+            int start = lineStarts[line];
+            for(int i = 0; i < fieldCount; i++) {
+                int end = lineEnd;
+                if(i < fieldCount - 1) {
+                    int delimiterIndex = fieldInfo.indexOfDelimiter(textView, start, lineEnd);
+                    end = delimiterIndex < 0 ? lineEnd : delimiterIndex;
+                }
+
+                fieldStarts[base + i] = start;
+                fieldEnds[base + i] = end;
+                readFieldValue(base + i, scanners[i]);
+
+                start = Math.min(fieldInfo.delimiterEnd(textView, end, lineEnd), lineEnd);
+            }
+        }
+
+        int eventTimeIndex = fieldInfo.getEventTimeIndex();
+        if(eventTimeIndex >= 0 && fieldHasValues[base + eventTimeIndex]) {
+            eventTimes[line] = fieldValues[base + eventTimeIndex];
+        }
+    }
+
+    private void readFieldValue(int index, AbstractFieldScanner scanner) {
+        int start = fieldStarts[index];
+        int end = fieldEnds[index];
+        boolean hasValue = start < end && scanner.isTyped() && scanner.isValid(textView, start, end);
+        fieldValues[index] = hasValue ? scanner.parse(textView, start, end) : 0;
+        fieldHasValues[index] = hasValue;
+    }
+
+    /**
+     * Append a field of a line to builder without creating string.
+     * */
+    public void appendField(StringBuilder sb, int line, int field) {
+        int index = line * fieldStride + field;
+        sb.append(text, fieldStarts[index], fieldEnds[index] - fieldStarts[index]);
+    }
+
+    public String getField(int line, int field) {
+        int index = line * fieldStride + field;
+        return new String(text, fieldStarts[index], fieldEnds[index] - fieldStarts[index]);
+    }
+
+    /**
+     * Return true if a field of a line is same with text, without creating string.
+     * */
+    public boolean fieldEquals(int line, int field, String value) {
+        int index = line * fieldStride + field;
+        int start = fieldStarts[index];
+        if(fieldEnds[index] - start != value.length()) {
+            return false;
+        }
+        for(int i = 0; i < value.length(); i++) {
+            if(text[start + i] != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return same hash with String.hashCode of a field of a line, without creating string.
+     * */
+    public int fieldHash(int line, int field) {
+        int index = line * fieldStride + field;
+        int hash = 0;
+        for(int i = fieldStarts[index]; i < fieldEnds[index]; i++) {
+            hash = 31 * hash + text[i];
+        }
+        return hash;
+    }
+
+    public boolean hasFieldValue(int line, int field) {
+        return fieldHasValues[line * fieldStride + field];
+    }
+
+    public long getFieldValue(int line, int field) {
+        return fieldValues[line * fieldStride + field];
+    }
+
+    private void growLines() {
+        int capacity = lineStarts.length * 2;
+        lineStarts = Arrays.copyOf(lineStarts, capacity);
+        lineEnds = Arrays.copyOf(lineEnds, capacity);
+        ips = Arrays.copyOf(ips, capacity);
+        ports = Arrays.copyOf(ports, capacity);
+        formatIndexes = Arrays.copyOf(formatIndexes, capacity);
+        eventTimes = Arrays.copyOf(eventTimes, capacity);
+        priorities = Arrays.copyOf(priorities, capacity);
+        appNames = Arrays.copyOf(appNames, capacity);
+        receiverIndexes = Arrays.copyOf(receiverIndexes, capacity);
+        drops = Arrays.copyOf(drops, capacity);
+        eventIds = Arrays.copyOf(eventIds, capacity);
+        formattedLogs = Arrays.copyOf(formattedLogs, capacity);
+        fieldCounts = Arrays.copyOf(fieldCounts, capacity);
+    }
+
+    private void growText(int required) {
+        text = Arrays.copyOf(text, Math.max(text.length * 2, required));
+        textView = CharBuffer.wrap(text);
+    }
+
+    private void growFields(int required) {
+        int capacity = Math.max(fieldStarts.length * 2, required);
+        fieldStarts = Arrays.copyOf(fieldStarts, capacity);
+        fieldEnds = Arrays.copyOf(fieldEnds, capacity);
+        fieldValues = Arrays.copyOf(fieldValues, capacity);
+        fieldHasValues = Arrays.copyOf(fieldHasValues, capacity);
+    }
+}
@@ -1,107 +1,89 @@
 package com.example.leo.logChoco.format;
 
 import com.example.leo.logChoco.config.entity.OutboundLogInfo;
-import com.example.leo.logChoco.entity.log.InboundLog;
 import com.example.leo.logChoco.entity.ReadFieldInfo;
-import com.example.leo.logChoco.entity.log.LogInfo;
+import com.example.leo.logChoco.entity.log.LogBatch;
 import lombok.Getter;
 
-import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
+/**
+ * Base class of formatters. A formatter is made once for each format and reused for every log of it,
+ * so it must be used by one thread at a time.
+ * */
 @Getter
 abstract public class AbstractFormatter {
 
     protected OutboundLogInfo outboundLogInfo;
-    protected List<String> logTextList;
-    protected String eventId;
     protected ReadFieldInfo fieldInfo;
+
+    // log that is being formatted. fields of it are read from the batch.
+    protected LogBatch batch;
+    protected int line;
+    protected String eventId;
     protected String remoteAddr;
 
-    public AbstractFormatter(OutboundLogInfo outboundLogInfo, ReadFieldInfo fieldInfo, LogInfo inboundLog) {
-        this.logTextList = changeLogTextIntoList(fieldInfo, inboundLog.getLog());
+    // reused for every log.
+    private final StringBuilder builder = new StringBuilder(256);
+
+    public AbstractFormatter(OutboundLogInfo outboundLogInfo, ReadFieldInfo fieldInfo) {
         this.outboundLogInfo = outboundLogInfo;
         this.fieldInfo = fieldInfo;
-        this.eventId = logTextList.get(fieldInfo.getIdIndex());
-        this.remoteAddr = inboundLog.getIp();
-    }
-
-    /**
-     * split raw log and save it list
-     * @param fieldInfo
-     * @param  logText
-     * */
-    private List<String> changeLogTextIntoList(ReadFieldInfo fieldInfo, String logText) {
-        String delimiter = fieldInfo.getDelimiter();
-        String[] logArry = logText.split(delimiter, -1);
-        return Arrays.asList(logArry);
     }
 
     /**
-     * Make and return formatted log from raw log.
+     * Make and return formatted log of a line in batch.
+     * Fields of the line must be split already.
      * */
-    public String getFormattedLog() {
-        String header = createHeader();
-        String body = createBody();
-        String tail = createTail();
-
-        StringBuilder sb = new StringBuilder();
-        sb.append(header).append(body).append(tail).append("\n");
+    public String getFormattedLog(LogBatch batch, int line) {
+        this.batch = batch;
+        this.line = line;
+        this.eventId = batch.getField(line, fieldInfo.getIdIndex());
+        this.remoteAddr = batch.getIp(line);
+
+        StringBuilder sb = builder;
+        sb.setLength(0);
+        createHeader(sb);
+        createBody(sb);
+        createTail(sb);
+        sb.append("\n");
         return sb.toString();
     }
 
     /**
-     * parse inbound log into key and value.
+     * Append each field of inbound log as key and value.
      * each key value is delimited by delimiter in yml file.
      * */
-    protected String parseLogIntoKeyValue(String delimiter, boolean isJson) {
-
+    protected void appendKeyValues(StringBuilder sb, String delimiter, boolean isJson) {
         List<String> columnList = fieldInfo.getColumns();
 
-        String result = (String) IntStream.range(0, columnList.size())
-                .mapToObj(i -> {
-                    String key = columnList.get(i);
-                    String value = logTextList.get(i);
-
-                    return getKeyValue(key, value, isJson);
-                })
-                .collect(Collectors.joining(delimiter));
-
-
-        return result;
-    }
-
-    private String getKeyValue(String key, String value, boolean isJson) {
-        StringBuilder sb = new StringBuilder();
-        String delimiter = "=";
-
-        if(isJson) {
-            delimiter = ":";
-            key = "\"" + key + "\"";
-            value = "\"" + value + "\"";
+        for(int i = 0; i < columnList.size(); i++) {
+            if(i > 0) {
+                sb.append(delimiter);
+            }
+
+            if(isJson) {
+                sb.append('"').append(columnList.get(i)).append("\":\"");
+                batch.appendField(sb, line, i);
+                sb.append('"');
+            } else {
+                sb.append(columnList.get(i)).append('=');
+                batch.appendField(sb, line, i);
+            }
         }
-
-        sb.append(key).append(delimiter).append(value).toString();
-
-        String result = sb.toString();
-
-        return result;
     }
 
-
     /**
-     * If necessary, create header of log
+     * If necessary, append header of log
      * */
-    abstract protected String createHeader();
+    abstract protected void createHeader(StringBuilder sb);
     /**
-     * If necessary, create tail of log
+     * If necessary, append tail of log
      * */
-    abstract protected String createTail();
+    abstract protected void createTail(StringBuilder sb);
     /**
-     * Create log body.
+     * Append log body.
      * */
-    abstract protected String createBody();
+    abstract protected void createBody(StringBuilder sb);
 
 }
@@ -2,9 +2,7 @@ package com.example.leo.logChoco.format;
 
 import com.example.leo.logChoco.config.entity.CefInfo;
 import com.example.leo.logChoco.config.entity.OutboundLogInfo;
-import com.example.leo.logChoco.entity.log.InboundLog;
 import com.example.leo.logChoco.entity.ReadFieldInfo;
-import com.example.leo.logChoco.entity.log.LogInfo;
 
 import java.util.Map;
 import java.util.Optional;
@@ -17,57 +15,58 @@ public class CefLogFormatter extends LeefLogFormatter{
 
     private String DEFAULT_CEF_VERSION = "0";
 
-    public CefLogFormatter(OutboundLogInfo outboundLogInfo, ReadFieldInfo fieldInfo, LogInfo inboundLog) {
-        super(outboundLogInfo, fieldInfo, inboundLog);
+    public CefLogFormatter(OutboundLogInfo outboundLogInfo, ReadFieldInfo fieldInfo) {
+        super(outboundLogInfo, fieldInfo);
         this.cefInfo = outboundLogInfo.getCefInfo();
         this.severityIndex = fieldInfo.getSeverityIndex();
         this.eventNameIndex = fieldInfo.getEventNameIndex();
     }
 
     @Override
-    protected String createHeader() {
-
-        StringBuilder sb = new StringBuilder();
+    protected void createHeader(StringBuilder sb) {
 
         String vendor = cefInfo.getVendor();
         String productName = cefInfo.getProductName();
         String productVersion = cefInfo.getProductVersion();
 
-        // If index of severity is not defined, get default value from yml file.
-        String severity = severityIndex < 0? cefInfo.getDefaultSeverity() : logTextList.get(severityIndex);
+        if(cefInfo.isIncludeSyslogHeader()) {
+            super.appendSyslogHeader(sb);
+            sb.append(" ");
+        }
+
+        sb.append("CEF:").append(DEFAULT_CEF_VERSION).append("|").append(vendor).append("|")
+                .append(productName).append("|").append(productVersion).append("|").append(super.eventId)
+                .append("|");
 
         /* If index of event name is not defined, get it from 'defaultEventNameMapper' or 'defaultEventName' in yml file.
            Search name from 'defaultEventNameMapper' with eventId and if no name is found, set eventName with 'defaultEventName'
         * */
-        String eventName;
         if(eventNameIndex >= 0) {
-            eventName = logTextList.get(eventNameIndex);
+            batch.appendField(sb, line, eventNameIndex);
         } else {
             Map<String, String> nameMapper = cefInfo.getDefualtEventNameMapper();
 
-            eventName = Optional.ofNullable(nameMapper.get(eventId)).orElse(cefInfo.getDefaultEventName());
+            sb.append(Optional.ofNullable(nameMapper.get(eventId)).orElse(cefInfo.getDefaultEventName()));
         }
+        sb.append("|");
 
-        if(cefInfo.isIncludeSyslogHeader()) {
-            String syslogHeader = super.getSyslogHeader();
-            sb.append(syslogHeader).append(" ");
+        // If index of severity is not defined, get default value from yml file.
+        if(severityIndex < 0) {
+            sb.append(cefInfo.getDefaultSeverity());
+        } else {
+            batch.appendField(sb, line, severityIndex);
         }
-
-        sb.append("CEF:").append(DEFAULT_CEF_VERSION).append("|").append(vendor).append("|")
-                .append(productName).append("|").append(productVersion).append("|").append(super.eventId)
-                .append("|").append(eventName).append("|").append(severity).append("|");
-
-        return sb.toString();
+        sb.append("|");
     }
 
     @Override
-    protected String createTail() {
-        return super.createTail();
+    protected void createTail(StringBuilder sb) {
+        super.createTail(sb);
     }
 
     @Override
-    protected String createBody() {
-        return super.createBody();
+    protected void createBody(StringBuilder sb) {
+        super.createBody(sb);
     }
 
 
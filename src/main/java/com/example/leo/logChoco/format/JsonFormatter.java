@@ -1,32 +1,30 @@
 package com.example.leo.logChoco.format;
 
 import com.example.leo.logChoco.config.entity.OutboundLogInfo;
-import com.example.leo.logChoco.entity.log.InboundLog;
 import com.example.leo.logChoco.entity.ReadFieldInfo;
-import com.example.leo.logChoco.entity.log.LogInfo;
 
 public class JsonFormatter extends AbstractFormatter {
 
     private final String DEFAULT_LEEF_DELIMITER_FOR_JSON = ",";
     private String delimiter;
-    public JsonFormatter(OutboundLogInfo outboundLogInfo, ReadFieldInfo fieldInfo, LogInfo inboundLog) {
-        super(outboundLogInfo, fieldInfo, inboundLog);
+    public JsonFormatter(OutboundLogInfo outboundLogInfo, ReadFieldInfo fieldInfo) {
+        super(outboundLogInfo, fieldInfo);
 
         delimiter = DEFAULT_LEEF_DELIMITER_FOR_JSON;
     }
 
     @Override
-    protected String createHeader() {
-        return "{";
+    protected void createHeader(StringBuilder sb) {
+        sb.append("{");
     }
 
     @Override
-    protected String createTail() {
-        return "}";
+    protected void createTail(StringBuilder sb) {
+        sb.append("}");
     }
 
     @Override
-    protected String createBody() {
-        return super.parseLogIntoKeyValue(delimiter, true);
+    protected void createBody(StringBuilder sb) {
+        super.appendKeyValues(sb, delimiter, true);
     }
 }
@@ -2,15 +2,13 @@ package com.example.leo.logChoco.format;
 
 import com.example.leo.logChoco.config.entity.LeefInfo;
 import com.example.leo.logChoco.config.entity.OutboundLogInfo;
-import com.example.leo.logChoco.entity.log.InboundLog;
 import com.example.leo.logChoco.entity.ReadFieldInfo;
-import com.example.leo.logChoco.entity.log.LogInfo;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.util.StringUtils;
 
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.Locale;
 
 /**
@@ -20,44 +18,44 @@ public class LeefLogFormatter extends AbstractFormatter {
 
     private Logger logger = LoggerFactory.getLogger(getClass());
 
+    private static final DateTimeFormatter SYSLOG_TIME_FORMAT = DateTimeFormatter.ofPattern("MMM dd HH:mm:ss", new Locale("en", "US"));
+
     private final String DEFAULT_LEEF_VERSION = "2.0";
     private final String DEFAULT_LEEF_DELIMITER_FOR_LEEF = "\t";
     private String delimiter;
     private LeefInfo leefInfo;
+    private String leefVersion;
+    // part of LEEF header before event id. it is same for every log.
+    private String headerPrefix;
 
-    public LeefLogFormatter(OutboundLogInfo outboundLogInfo, ReadFieldInfo fieldInfo, LogInfo inboundLog) {
-        super(outboundLogInfo, fieldInfo, inboundLog);
+    public LeefLogFormatter(OutboundLogInfo outboundLogInfo, ReadFieldInfo fieldInfo) {
+        super(outboundLogInfo, fieldInfo);
         leefInfo = super.outboundLogInfo.getLeefInfo();
 
         String configDelimiter = leefInfo.getDelimiter();
         delimiter = StringUtils.hasText(configDelimiter) ? configDelimiter : DEFAULT_LEEF_DELIMITER_FOR_LEEF;
-    }
-
-    @Override
-    protected String createHeader() {
-        String leefVersion = leefInfo.getLeefVersion();
-        String vendor = leefInfo.getVendor();
-        String productName = leefInfo.getProductName();
-        String productVersion = leefInfo.getProductVersion();
-        boolean includeHeader = leefInfo.isIncludeSyslogHeader();
 
         // check if leef version is valid.
+        leefVersion = leefInfo.getLeefVersion();
         if(!"1.0".equals(leefVersion) && !"2.0".equals(leefVersion)) {
-            leefVersion = DEFAULT_LEEF_VERSION;
             logger.warn("LEEF version {} is not valid. change it to 2.0", leefVersion);
+            leefVersion = DEFAULT_LEEF_VERSION;
         }
 
-        StringBuilder sb = new StringBuilder();
+        headerPrefix = "LEEF:" + leefVersion + "|" + leefInfo.getVendor() + "|" + leefInfo.getProductName()
+                + "|" + leefInfo.getProductVersion() + "|";
+    }
 
+    @Override
+    protected void createHeader(StringBuilder sb) {
         // create syslog header
-        if(includeHeader) {
-            String syslogHeader = getSyslogHeader();
-            sb.append(syslogHeader).append(" ");
+        if(leefInfo.isIncludeSyslogHeader()) {
+            appendSyslogHeader(sb);
+            sb.append(" ");
         }
 
         //create LEEF header
-        sb.append("LEEF:").append(leefVersion).append("|").append(vendor).append("|").append(productName)
-                .append("|").append(productVersion).append("|").append(super.eventId);
+        sb.append(headerPrefix).append(super.eventId);
 
         if(leefVersion.equals(DEFAULT_LEEF_VERSION)) {
             sb.append("|");
@@ -66,32 +64,23 @@ public class LeefLogFormatter extends AbstractFormatter {
             }
             sb.append("|");
         }
-
-
-        return sb.toString();
     }
 
-    protected String getSyslogHeader() {
-        StringBuilder sb = new StringBuilder();
+    protected void appendSyslogHeader(StringBuilder sb) {
         sb.append(getTimeStamp()).append(" ").append(super.remoteAddr).append(" ");
-        return sb.toString();
     }
 
     protected String getTimeStamp() {
-        SimpleDateFormat df = new SimpleDateFormat("MMM dd HH:mm:ss", new Locale("en", "US"));
-        String timeStamp = df.format(Calendar.getInstance().getTime());
-        return timeStamp;
+        return SYSLOG_TIME_FORMAT.format(LocalDateTime.now());
     }
 
     @Override
-    protected String createTail() {
-        return "";
+    protected void createTail(StringBuilder sb) {
     }
 
     @Override
-    protected String createBody() {
-        String body = parseLogIntoKeyValue(delimiter, false);
-        return body;
+    protected void createBody(StringBuilder sb) {
+        appendKeyValues(sb, delimiter, false);
     }
 
 
@@ -0,0 +1,51 @@
+package com.example.leo.logChoco.format;
+
+import com.example.leo.logChoco.config.entity.OutboundLogInfo;
+import org.springframework.util.StringUtils;
+
+/**
+ * Class that adds repeat count and first and last time to a formatted log that stands for repeated logs.
+ * CEF uses its own keys cnt, start and end. LEEF and JSON use repeatCount, firstTime and lastTime.
+ * Times are epoch milliseconds. It keeps nothing of a log, so any thread can use it.
+ * */
+public class RepeatFormatter {
+
+    private final String DEFAULT_DELIMITER = "\t";
+
+    // same delimiter with LEEF and CEF formatters.
+    private final String delimiter;
+
+    public RepeatFormatter(OutboundLogInfo outboundLogInfo) {
+        String configDelimiter = outboundLogInfo == null || outboundLogInfo.getLeefInfo() == null
+                ? null : outboundLogInfo.getLeefInfo().getDelimiter();
+        delimiter = StringUtils.hasText(configDelimiter) ? configDelimiter : DEFAULT_DELIMITER;
+    }
+
+    /**
+     * Return formatted log of the first log with count and times of its repeats appended to its key values.
+     * */
+    public String format(String formattedLog, OutboundLogFormat logFormat, long count, long firstTime, long lastTime) {
+        int end = formattedLog.endsWith("\n") ? formattedLog.length() - 1 : formattedLog.length();
+        StringBuilder sb = new StringBuilder(end + 64);
+
+        if(logFormat == OutboundLogFormat.JSON) {
+            int closing = formattedLog.lastIndexOf('}', end);
+            sb.append(formattedLog, 0, closing)
+                    .append(",\"repeatCount\":\"").append(count)
+                    .append("\",\"firstTime\":\"").append(firstTime)
+                    .append("\",\"lastTime\":\"").append(lastTime).append('"')
+                    .append(formattedLog, closing, end);
+        } else if(logFormat == OutboundLogFormat.CEF) {
+            sb.append(formattedLog, 0, end)
+                    .append(delimiter).append("cnt=").append(count)
+                    .append(delimiter).append("start=").append(firstTime)
+                    .append(delimiter).append("end=").append(lastTime);
+        } else {
+            sb.append(formattedLog, 0, end)
+                    .append(delimiter).append("repeatCount=").append(count)
+                    .append(delimiter).append("firstTime=").append(firstTime)
+                    .append(delimiter).append("lastTime=").append(lastTime);
+        }
+        return sb.append("\n").toString();
+    }
+}
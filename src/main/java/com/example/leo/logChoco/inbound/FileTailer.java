@@ -0,0 +1,365 @@
+package com.example.leo.logChoco.inbound;
+
+import com.example.leo.logChoco.config.entity.ServerInfo;
+import com.example.leo.logChoco.entity.log.InboundLog;
+import com.example.leo.logChoco.entity.log.LogInfo;
+import com.example.leo.logChoco.service.ExecutionService;
+import com.example.leo.logChoco.service.PatternInfoService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.StringUtils;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Class that tails files of a FILE receive-server and gives each line to the pipeline.
+ * New data is read in large chunks with positional reads, and lines are framed inside the chunk.
+ * Files are tracked by file key, so a renamed file is read to its end and a new file at the same path is read from its start.
+ * A file that becomes shorter than its offset, or whose first bytes change, is truncated and is read again from its start.
+ * First bytes catch copytruncate even if the writer has already written past the old offset before next poll.
+ * A rotated or deleted file is read to its end, including the last line without line break, before it is closed.
+ * Offsets are saved in checkpoint file only after their lines are handled by the lane, and a restart resumes from them.
+ * So lines waiting in the lane are read again after a crash instead of being lost.
+ * */
+public class FileTailer {
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final int CHUNK_SIZE = 1024 * 1024;
+    // a poll reads no more than this from a file, so a large file does not flood lanes at once.
+    private final int MAX_CHUNKS_PER_POLL = 16;
+    // same limit as frames of TCP.
+    private final int MAX_LINE_LENGTH = 20 * 1024;
+    // longest time stop() waits for lanes to handle lines that are read, before saving checkpoint.
+    private final long STOP_TIMEOUT_MILLIS = 5000;
+    // first bytes of a file that are compared on each change to find out it is truncated and written again.
+    private final int FINGERPRINT_BYTES = 64;
+
+    private final ServerInfo server;
+    private final Consumer<LogInfo> next;
+    private final ExecutionService executionService;
+    private final PatternInfoService patternInfoService;
+
+    private final Path directory;
+    private final PathMatcher matcher;
+    private final Path checkpointPath;
+
+    private final byte[] chunk = new byte[CHUNK_SIZE];
+    private final ByteBuffer chunkBuffer = ByteBuffer.wrap(chunk);
+
+    // files being tailed by file key, or by path if file system has no file key.
+    private final Map<Object, TailedFile> files = new HashMap<>();
+    // offsets from checkpoint file by key. an offset is taken when its file is found.
+    private Map<String, Long> savedOffsets = new HashMap<>();
+    // true if any offset is moved after last save.
+    private boolean dirty = false;
+    private boolean stopped = false;
+    private Disposable poller;
+
+    public FileTailer(ServerInfo server, Consumer<LogInfo> next, ExecutionService executionService, PatternInfoService patternInfoService) {
+        this.server = server;
+        this.next = next;
+        this.executionService = executionService;
+        this.patternInfoService = patternInfoService;
+
+        Path path = Paths.get(server.getPath()).toAbsolutePath();
+        this.directory = path.getParent();
+        // only file name can be a glob pattern.
+        this.matcher = FileSystems.getDefault().getPathMatcher("glob:" + path.getFileName());
+        this.checkpointPath = StringUtils.hasText(server.getCheckpointPath())
+                ? Paths.get(server.getCheckpointPath())
+                : Paths.get("file-tail-" + Integer.toHexString(server.getPath().hashCode()) + ".offsets");
+    }
+
+    /**
+     * Load checkpoint and poll files on blocking threads.
+     * */
+    public void start() {
+        savedOffsets = loadCheckpoint();
+        poller = Flux.interval(Duration.ZERO, Duration.ofMillis(Math.max(server.getPollMillis(), 10)))
+                .onBackpressureDrop()
+                .concatMap(tick -> executionService.blocking(() -> {
+                    poll();
+                    return tick;
+                }).onErrorResume(e -> {
+                    logger.error("Failed to tail {}. {}", server.getPath(), e.getMessage());
+                    return Mono.empty();
+                }), 1)
+                .subscribe();
+    }
+
+    /**
+     * Stop polling, wait for lanes to handle lines that are read, then save offsets and close files.
+     * It waits for a poll in progress. Lines that are not handled in time are read again on next start.
+     * */
+    public void stop() {
+        if(poller != null) {
+            poller.dispose();
+        }
+        synchronized (this) {
+            stopped = true;
+            long deadline = System.currentTimeMillis() + STOP_TIMEOUT_MILLIS;
+            while(!commitHandledOffsets() && System.currentTimeMillis() < deadline) {
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            saveCheckpoint();
+            files.values().forEach(TailedFile::close);
+            files.clear();
+        }
+    }
+
+    private synchronized void poll() throws IOException {
+        if(stopped) {
+            return;
+        }
+        commitHandledOffsets();
+
+        Set<Object> found = new HashSet<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for(Path file : stream) {
+                if(!matcher.matches(file.getFileName()) || !Files.isRegularFile(file)) {
+                    continue;
+                }
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                Object key = attributes.fileKey() != null ? attributes.fileKey() : file;
+                found.add(key);
+
+                TailedFile tailed = files.get(key);
+                if(tailed == null) {
+                    tailed = open(file, key, attributes.size());
+                    files.put(key, tailed);
+                }
+                boolean isChanged = attributes.size() != tailed.size || !attributes.lastModifiedTime().equals(tailed.modified);
+                tailed.size = attributes.size();
+                tailed.modified = attributes.lastModifiedTime();
+                if(isChanged && (attributes.size() < tailed.offset || !matchesFingerprint(tailed))) {
+                    logger.info("{} is truncated. read it from start", file);
+                    tailed.offset = 0;
+                    tailed.committedOffset = 0;
+                    tailed.marks.clear();
+                    tailed.discarding = false;
+                    tailed.fingerprint = readHead(tailed);
+                    dirty = true;
+                }
+                read(tailed, false);
+            }
+        } catch (NoSuchFileException e) {
+            logger.debug("Directory {} does not exist yet", directory);
+        }
+
+        // files that are not found are renamed to other names or deleted. read the rest of them with open channel.
+        Iterator<TailedFile> iterator = files.values().iterator();
+        while(iterator.hasNext()) {
+            TailedFile tailed = iterator.next();
+            if(!found.contains(tailed.key)) {
+                // nothing is written to it any more, so it is read to its end at once.
+                read(tailed, true);
+                logger.info("Stop tailing {}. it is rotated or deleted", tailed.source);
+                tailed.close();
+                iterator.remove();
+                dirty = true;
+            }
+        }
+
+        if(dirty) {
+            saveCheckpoint();
+        }
+    }
+
+    private TailedFile open(Path file, Object key, long size) throws IOException {
+        TailedFile tailed = new TailedFile();
+        tailed.key = key;
+        tailed.source = file.toString();
+        tailed.channel = FileChannel.open(file, StandardOpenOption.READ);
+
+        Long saved = savedOffsets.remove(key.toString());
+        tailed.offset = saved != null && saved <= size ? saved : 0;
+        tailed.committedOffset = tailed.offset;
+        tailed.fingerprint = readHead(tailed);
+        logger.info("Start tailing {} from offset {}", file, tailed.offset);
+        return tailed;
+    }
+
+    /**
+     * Return true if file still starts with its fingerprint. fingerprint of a short file grows with it.
+     * */
+    private boolean matchesFingerprint(TailedFile tailed) throws IOException {
+        byte[] head = readHead(tailed);
+        int known = tailed.fingerprint.length;
+        if(head.length < known || !Arrays.equals(head, 0, known, tailed.fingerprint, 0, known)) {
+            return false;
+        }
+        tailed.fingerprint = head;
+        return true;
+    }
+
+    private byte[] readHead(TailedFile tailed) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(FINGERPRINT_BYTES);
+        int read;
+        do {
+            read = tailed.channel.read(head, head.position());
+        } while(read > 0 && head.hasRemaining());
+        return Arrays.copyOf(head.array(), head.position());
+    }
+
+    /**
+     * Read new data of a file in chunks and give complete lines to pipeline.
+     * Bytes after the last line break are read again on next poll, or given as the last line if toEnd is set.
+     * @param toEnd read to end of file without limit of a poll. set for a file that is closed after this.
+     * */
+    private void read(TailedFile tailed, boolean toEnd) throws IOException {
+        for(int i = 0; toEnd || i < MAX_CHUNKS_PER_POLL; i++) {
+            chunkBuffer.clear();
+            int read = tailed.channel.read(chunkBuffer, tailed.offset);
+            if(read <= 0) {
+                return;
+            }
+
+            int consumed = frameLines(tailed, read);
+            if(consumed == 0 && read == chunk.length) {
+                // a line longer than a chunk. drop it until its line break like frames of TCP.
+                logger.warn("Line in {} at offset {} is longer than {} bytes. drop it", tailed.source, tailed.offset, MAX_LINE_LENGTH);
+                tailed.discarding = true;
+                consumed = read;
+            }
+            if(toEnd && read < chunk.length && consumed < read) {
+                int end = chunk[read - 1] == '\r' ? read - 1 : read;
+                giveLine(tailed, consumed, end);
+                tailed.discarding = false;
+                consumed = read;
+            }
+            if(consumed > 0) {
+                tailed.offset += consumed;
+                // offset is committed when lane has handled every log given to it until now.
+                tailed.marks.add(new long[]{patternInfoService.getReceivedCount(tailed.source), tailed.offset});
+            }
+            if(read < chunk.length) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Give each complete line in chunk to pipeline and return number of bytes up to the last line break.
+     * */
+    private int frameLines(TailedFile tailed, int length) {
+        int start = 0;
+        for(int i = 0; i < length; i++) {
+            if(chunk[i] != '\n') {
+                continue;
+            }
+
+            int end = i > start && chunk[i - 1] == '\r' ? i - 1 : i;
+            giveLine(tailed, start, end);
+            start = i + 1;
+        }
+        return start;
+    }
+
+    private void giveLine(TailedFile tailed, int start, int end) {
+        if(tailed.discarding) {
+            tailed.discarding = false;
+        } else if(end - start > MAX_LINE_LENGTH) {
+            logger.warn("Line in {} is longer than {} bytes. drop it", tailed.source, MAX_LINE_LENGTH);
+        } else if(end > start) {
+            next.accept(InboundLog.newInstance(null, tailed.source, 0, chunk, start, end - start));
+        }
+    }
+
+    /**
+     * Move committed offset of each file up to the lines that lanes have handled.
+     * Return true if every line that is read is handled.
+     * */
+    private boolean commitHandledOffsets() {
+        boolean isAllHandled = true;
+        for(TailedFile tailed : files.values()) {
+            long processed = patternInfoService.getProcessedCount(tailed.source);
+            while(!tailed.marks.isEmpty() && tailed.marks.peek()[0] <= processed) {
+                tailed.committedOffset = tailed.marks.poll()[1];
+                dirty = true;
+            }
+            isAllHandled &= tailed.marks.isEmpty();
+        }
+        return isAllHandled;
+    }
+
+    private Map<String, Long> loadCheckpoint() {
+        Map<String, Long> offsets = new HashMap<>();
+        if(!Files.exists(checkpointPath)) {
+            return offsets;
+        }
+
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(checkpointPath)) {
+            properties.load(in);
+            properties.stringPropertyNames().forEach(key -> offsets.put(key, Long.parseLong(properties.getProperty(key))));
+            logger.info("Load {} offset(s) of {} from {}", offsets.size(), server.getPath(), checkpointPath);
+        } catch (IOException | NumberFormatException e) {
+            logger.error("Failed to load checkpoint {}. tail files from start. {}", checkpointPath, e.getMessage());
+        }
+        return offsets;
+    }
+
+    /**
+     * Write offsets of files being tailed to a temporary file and move it over checkpoint, so checkpoint is never half written.
+     * */
+    private void saveCheckpoint() {
+        Properties properties = new Properties();
+        files.values().forEach(tailed -> properties.setProperty(tailed.key.toString(), Long.toString(tailed.committedOffset)));
+
+        Path temporary = checkpointPath.resolveSibling(checkpointPath.getFileName() + ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temporary)) {
+                properties.store(out, "read offsets of " + server.getPath());
+            }
+            Files.move(temporary, checkpointPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            dirty = false;
+        } catch (IOException e) {
+            logger.error("Failed to save checkpoint {}. {}", checkpointPath, e.getMessage());
+        }
+    }
+
+    private static class TailedFile {
+        private Object key;
+        // path when the file is found. it is kept after rename, so lines of a file go to the same lane.
+        private String source;
+        private FileChannel channel;
+        // offset of next read.
+        private long offset;
+        // offset up to which lines are handled by lane. it is saved in checkpoint.
+        private long committedOffset;
+        // received count of lane and offset after each read, in order. removed when lane has handled them.
+        private final Deque<long[]> marks = new ArrayDeque<>();
+        // true while dropping the rest of a line that is too long.
+        private boolean discarding;
+        // first bytes of file, and size and modified time when it is polled last.
+        private byte[] fingerprint;
+        private long size = -1;
+        private FileTime modified;
+
+        private void close() {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
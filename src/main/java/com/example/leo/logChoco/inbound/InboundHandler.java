@@ -1,21 +1,37 @@
 package com.example.leo.logChoco.inbound;
 
+import com.example.leo.logChoco.entity.SyslogFormat;
 import com.example.leo.logChoco.entity.log.InboundLog;
 import com.example.leo.logChoco.entity.log.LogInfo;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 
 import io.netty.channel.ChannelInboundHandlerAdapter;
-import io.netty.util.CharsetUtil;
-import reactor.core.publisher.Sinks;
 
 import java.net.InetSocketAddress;
+import java.util.function.Consumer;
 
 public class InboundHandler extends ChannelInboundHandlerAdapter {
 
-    private Sinks.Many<LogInfo> sink;
-    public InboundHandler(Sinks.Many<LogInfo> sink) {
-        this.sink = sink;
+    // gives log to pipeline lane of its source.
+    private Consumer<LogInfo> next;
+
+    // address of connection never changes, so it is read once and shared by every log of it.
+    private byte[] address;
+    private String addr;
+    private int port;
+    // null if lines have no syslog header.
+    private SyslogHeaderParser syslogParser;
+
+    public InboundHandler(Consumer<LogInfo> next) {
+        this(next, SyslogFormat.NONE);
+    }
+
+    public InboundHandler(Consumer<LogInfo> next, SyslogFormat syslogFormat) {
+        this.next = next;
+        if(syslogFormat != null && syslogFormat != SyslogFormat.NONE) {
+            this.syslogParser = new SyslogHeaderParser(syslogFormat);
+        }
     }
 
     public void channelRegistered(ChannelHandlerContext ctx) throws Exception {
@@ -34,20 +50,36 @@ public class InboundHandler extends ChannelInboundHandlerAdapter {
 
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object buf) throws Exception {
-
-        InetSocketAddress sock = (InetSocketAddress) ctx.channel().remoteAddress();
-
-        String addr = sock.getAddress().getHostAddress();
-        int port = sock.getPort();
+        if(addr == null) {
+            InetSocketAddress sock = (InetSocketAddress) ctx.channel().remoteAddress();
+            address = sock.getAddress().getAddress();
+            addr = sock.getAddress().getHostAddress();
+            port = sock.getPort();
+        }
 
         ByteBuf in = (ByteBuf) buf;
-        String log = in.toString(CharsetUtil.UTF_8);
-
-        InboundLog inboundLog = new InboundLog(addr, port, log);
-
-
-        sink.emitNext(inboundLog, Sinks.EmitFailureHandler.FAIL_FAST);
-        in.release();
+        try {
+            // log is recycled by lane after it is copied into a batch.
+            if(syslogParser != null && syslogParser.parse(in)) {
+                next.accept(newSyslogLog(in));
+            } else {
+                next.accept(InboundLog.newInstance(address, addr, port, in));
+            }
+        } finally {
+            in.release();
+        }
+    }
 
+    /**
+     * Make a log of message body after syslog header. Hostname of header is source of log, because relays send logs of many devices.
+     * */
+    private InboundLog newSyslogLog(ByteBuf in) {
+        String hostname = syslogParser.getHostname() != null ? syslogParser.getHostname() : addr;
+        int bodyIndex = syslogParser.getBodyIndex();
+        InboundLog inboundLog = InboundLog.newInstance(address, hostname, port, in.slice(bodyIndex, in.writerIndex() - bodyIndex));
+        inboundLog.setPriority(syslogParser.getPriority());
+        inboundLog.setAppName(syslogParser.getAppName());
+        inboundLog.setEventTime(syslogParser.getTimestamp());
+        return inboundLog;
     }
 }
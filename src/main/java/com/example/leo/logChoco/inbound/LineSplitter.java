@@ -0,0 +1,178 @@
+package com.example.leo.logChoco.inbound;
+
+import com.example.leo.logChoco.entity.IngestResult;
+import com.example.leo.logChoco.entity.log.InboundLog;
+import com.example.leo.logChoco.entity.log.LogInfo;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.compression.ZlibCodecFactory;
+import io.netty.handler.codec.compression.ZlibWrapper;
+import io.netty.util.CharsetUtil;
+
+import java.util.function.Consumer;
+
+/**
+ * Class that splits a streaming body into lines and gives each line to the pipeline.
+ * Compressed body is decompressed as it arrives. A line that is split between buffers is kept until the rest arrives,
+ * so the whole body is never held.
+ * In NDJSON mode, each line is a JSON object and its log field is the log.
+ * It is made for a request, and must be used by one thread at a time.
+ * */
+public class LineSplitter {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    // same limit as frames of TCP.
+    private final int MAX_LINE_LENGTH = 20 * 1024;
+
+    private final Consumer<LogInfo> next;
+    private final byte[] address;
+    private final String ip;
+    private final int port;
+    // field of log in NDJSON object. null if lines are logs.
+    private final String jsonField;
+    // decompresses body. null if body is not compressed.
+    private final EmbeddedChannel decoder;
+
+    // start of a line that is not finished in last buffer.
+    private final ByteBuf partial = Unpooled.buffer(256);
+    // true while dropping the rest of a line that is too long.
+    private boolean discarding = false;
+    private final IngestResult result = new IngestResult();
+
+    /**
+     * @param wrapper compression of body. null if it is not compressed.
+     * */
+    public LineSplitter(Consumer<LogInfo> next, byte[] address, String ip, int port, ZlibWrapper wrapper, String jsonField) {
+        this.next = next;
+        this.address = address;
+        this.ip = ip;
+        this.port = port;
+        this.jsonField = jsonField;
+        this.decoder = wrapper == null ? null : new EmbeddedChannel(ZlibCodecFactory.newZlibDecoder(wrapper));
+    }
+
+    /**
+     * Split readable bytes of buffer. The buffer is not released.
+     * */
+    public void write(ByteBuf buf) {
+        if(decoder == null) {
+            split(buf);
+            return;
+        }
+        decoder.writeInbound(buf.retain());
+        readDecoded();
+    }
+
+    /**
+     * Split the rest of body after the last buffer. Last line does not need a line break.
+     * */
+    public IngestResult finish() {
+        if(decoder != null) {
+            decoder.finish();
+            readDecoded();
+        }
+        if(partial.isReadable() || discarding) {
+            endPartialLine();
+        }
+        return result;
+    }
+
+    public void release() {
+        partial.release();
+        if(decoder != null) {
+            decoder.finishAndReleaseAll();
+        }
+    }
+
+    private void readDecoded() {
+        ByteBuf decoded;
+        while((decoded = decoder.readInbound()) != null) {
+            try {
+                split(decoded);
+            } finally {
+                decoded.release();
+            }
+        }
+    }
+
+    private void split(ByteBuf buf) {
+        while(buf.isReadable()) {
+            int lineBreak = buf.indexOf(buf.readerIndex(), buf.writerIndex(), (byte) '\n');
+            if(lineBreak < 0) {
+                appendPartial(buf, buf.readableBytes());
+                return;
+            }
+
+            int length = lineBreak - buf.readerIndex();
+            if(partial.isReadable() || discarding) {
+                appendPartial(buf, length);
+                buf.skipBytes(1);
+                endPartialLine();
+            } else {
+                emitLine(buf, buf.readerIndex(), length);
+                buf.skipBytes(length + 1);
+            }
+        }
+    }
+
+    private void appendPartial(ByteBuf buf, int length) {
+        if(discarding || partial.readableBytes() + length > MAX_LINE_LENGTH) {
+            discarding = true;
+            partial.clear();
+            buf.skipBytes(length);
+            return;
+        }
+        partial.writeBytes(buf, length);
+    }
+
+    private void endPartialLine() {
+        if(discarding) {
+            result.setRejected(result.getRejected() + 1);
+            discarding = false;
+        } else {
+            emitLine(partial, partial.readerIndex(), partial.readableBytes());
+        }
+        partial.clear();
+    }
+
+    private void emitLine(ByteBuf buf, int index, int length) {
+        if(length > 0 && buf.getByte(index + length - 1) == '\r') {
+            length--;
+        }
+        if(length == 0) {
+            return;
+        }
+        if(length > MAX_LINE_LENGTH) {
+            result.setRejected(result.getRejected() + 1);
+            return;
+        }
+
+        LogInfo log;
+        if(jsonField == null) {
+            log = InboundLog.newInstance(address, ip, port, buf.slice(index, length));
+        } else {
+            String text = readJsonField(buf.toString(index, length, CharsetUtil.UTF_8));
+            if(text == null) {
+                result.setRejected(result.getRejected() + 1);
+                return;
+            }
+            log = new InboundLog(ip, port, text);
+        }
+        next.accept(log);
+        result.setAccepted(result.getAccepted() + 1);
+    }
+
+    private String readJsonField(String line) {
+        try {
+            JsonNode value = OBJECT_MAPPER.readTree(line).get(jsonField);
+            return value != null && value.isValueNode() ? value.asText() : null;
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+    }
+}
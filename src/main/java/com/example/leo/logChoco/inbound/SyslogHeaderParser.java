@@ -0,0 +1,434 @@
+package com.example.leo.logChoco.inbound;
+
+import com.example.leo.logChoco.entity.SyslogFormat;
+import com.example.leo.logChoco.regex.scanner.EventTimeParser;
+import io.netty.buffer.ByteBuf;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.zone.ZoneRules;
+
+/**
+ * Class that reads syslog header of RFC 3164 or RFC 5424 at the start of a line in one pass.
+ * It finds where message body starts, and decodes PRI, timestamp, hostname and app-name.
+ * Hostname and app-name strings are cached, so lines from the same devices create no string.
+ * It is made for a connection, and must be used by one thread at a time.
+ * */
+public class SyslogHeaderParser {
+
+    private static final byte[][] MONTHS = {
+            "Jan".getBytes(), "Feb".getBytes(), "Mar".getBytes(), "Apr".getBytes(), "May".getBytes(), "Jun".getBytes(),
+            "Jul".getBytes(), "Aug".getBytes(), "Sep".getBytes(), "Oct".getBytes(), "Nov".getBytes(), "Dec".getBytes()
+    };
+    private static final int MAX_PRIORITY = 191;
+    private static final long ONE_DAY_MILLIS = 24 * 60 * 60 * 1000L;
+    private static final long ONE_MINUTE_MILLIS = 60 * 1000L;
+
+    private final SyslogFormat format;
+    // zone of RFC 3164 timestamps, which have no zone and year.
+    private final ZoneRules zoneRules = ZoneId.systemDefault().getRules();
+    private final StringCache hostnames = new StringCache();
+    private final StringCache appNames = new StringCache();
+    // current year is checked once a minute instead of for every line.
+    private int currentYear;
+    private long yearCheckedAt = 0;
+
+    // result of last parse.
+    @Getter
+    private int priority;
+    @Getter
+    private long timestamp;
+    // null if header has no hostname.
+    @Getter
+    private String hostname;
+    @Getter
+    private String appName;
+    // index of buffer where message body starts.
+    @Getter
+    private int bodyIndex;
+
+    private ByteBuf buf;
+    private int position;
+    private int end;
+
+    public SyslogHeaderParser(SyslogFormat format) {
+        this.format = format;
+    }
+
+    /**
+     * Read syslog header of readable bytes of buffer. Reader index is not moved.
+     * @return false if the line does not start with syslog header of the format
+     * */
+    public boolean parse(ByteBuf buf) {
+        this.buf = buf;
+        this.position = buf.readerIndex();
+        this.end = buf.writerIndex();
+        priority = -1;
+        timestamp = EventTimeParser.UNKNOWN_TIME;
+        hostname = null;
+        appName = null;
+
+        if(!readPriority()) {
+            return false;
+        }
+        boolean isRfc5424 = position + 1 < end && isDigit(buf.getByte(position)) && buf.getByte(position + 1) == ' ';
+        return switch (format) {
+            case RFC5424 -> isRfc5424 && parseRfc5424();
+            case RFC3164 -> !isRfc5424 && parseRfc3164();
+            case AUTO -> isRfc5424 ? parseRfc5424() : parseRfc3164();
+            default -> false;
+        };
+    }
+
+    private boolean readPriority() {
+        if(position >= end || buf.getByte(position) != '<') {
+            return false;
+        }
+        int value = 0;
+        int digits = 0;
+        position++;
+        while(position < end && isDigit(buf.getByte(position)) && digits < 3) {
+            value = value * 10 + buf.getByte(position) - '0';
+            position++;
+            digits++;
+        }
+        if(digits == 0 || position >= end || buf.getByte(position) != '>' || value > MAX_PRIORITY) {
+            return false;
+        }
+        position++;
+        priority = value;
+        return true;
+    }
+
+    /**
+     * VERSION SP TIMESTAMP SP HOSTNAME SP APP-NAME SP PROCID SP MSGID SP STRUCTURED-DATA [SP MSG]
+     * */
+    private boolean parseRfc5424() {
+        // version
+        position += 2;
+
+        int timeEnd = indexOfSpace(position);
+        if(timeEnd < 0) {
+            return false;
+        }
+        timestamp = parseRfc3339(position, timeEnd);
+        position = timeEnd + 1;
+
+        int hostEnd = indexOfSpace(position);
+        if(hostEnd < 0) {
+            return false;
+        }
+        hostname = isNil(position, hostEnd) ? null : hostnames.get(buf, position, hostEnd);
+        position = hostEnd + 1;
+
+        int appEnd = indexOfSpace(position);
+        if(appEnd < 0) {
+            return false;
+        }
+        appName = isNil(position, appEnd) ? null : appNames.get(buf, position, appEnd);
+        position = appEnd + 1;
+
+        // procid and msgid
+        for(int i = 0; i < 2; i++) {
+            int tokenEnd = indexOfSpace(position);
+            if(tokenEnd < 0) {
+                return false;
+            }
+            position = tokenEnd + 1;
+        }
+
+        if(!skipStructuredData()) {
+            return false;
+        }
+        if(position < end && buf.getByte(position) == ' ') {
+            position++;
+        }
+        // BOM of UTF-8 message
+        if(position + 2 < end && buf.getByte(position) == (byte) 0xEF && buf.getByte(position + 1) == (byte) 0xBB
+                && buf.getByte(position + 2) == (byte) 0xBF) {
+            position += 3;
+        }
+        bodyIndex = position;
+        return true;
+    }
+
+    private boolean skipStructuredData() {
+        if(position < end && buf.getByte(position) == '-') {
+            position++;
+            return true;
+        }
+        boolean found = false;
+        while(position < end && buf.getByte(position) == '[') {
+            found = true;
+            boolean inQuote = false;
+            position++;
+            while(true) {
+                if(position >= end) {
+                    return false;
+                }
+                byte b = buf.getByte(position++);
+                if(b == '\\' && inQuote) {
+                    position++;
+                } else if(b == '"') {
+                    inQuote = !inQuote;
+                } else if(b == ']' && !inQuote) {
+                    break;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * TIMESTAMP SP [HOSTNAME SP][TAG[pid]: ]MSG. timestamp is Mmm dd hh:mm:ss, or RFC 3339 of some relays.
+     * */
+    private boolean parseRfc3164() {
+        if(position + 16 <= end && buf.getByte(position + 3) == ' ' && buf.getByte(position + 15) == ' ') {
+            timestamp = parseBsdTime(position);
+            if(timestamp == EventTimeParser.UNKNOWN_TIME) {
+                return false;
+            }
+            position += 16;
+        } else {
+            int timeEnd = indexOfSpace(position);
+            if(timeEnd < 0 || (timestamp = parseRfc3339(position, timeEnd)) == EventTimeParser.UNKNOWN_TIME) {
+                return false;
+            }
+            position = timeEnd + 1;
+        }
+
+        // some senders leave out hostname, like "<13>Feb 29 07:05:09 sshd[1]: msg". socket address is used then.
+        if(!isTag(position)) {
+            int hostEnd = indexOfSpace(position);
+            if(hostEnd <= position) {
+                return false;
+            }
+            hostname = hostnames.get(buf, position, hostEnd);
+            position = hostEnd + 1;
+        }
+
+        // tag ends with ':' or with '[' of pid, and has no space.
+        int tagEnd = position;
+        while(tagEnd < end) {
+            byte b = buf.getByte(tagEnd);
+            if(b == ':' || b == '[' || b == ' ') {
+                break;
+            }
+            tagEnd++;
+        }
+        int colon = tagEnd;
+        if(colon < end && buf.getByte(colon) == '[') {
+            while(colon < end && buf.getByte(colon) != ']') {
+                colon++;
+            }
+            colon++;
+        }
+        if(tagEnd > position && colon < end && buf.getByte(colon) == ':') {
+            appName = appNames.get(buf, position, tagEnd);
+            position = colon + 1;
+            if(position < end && buf.getByte(position) == ' ') {
+                position++;
+            }
+        }
+        bodyIndex = position;
+        return true;
+    }
+
+    /**
+     * Return true if token at index is a tag like "sshd:" or "sshd[123]:", which ends with ':' right before space or end of line.
+     * Hostname can't be taken as a tag, as it has no ':' or has one inside like IPv6 address.
+     * */
+    private boolean isTag(int index) {
+        int tokenEnd = indexOfSpace(index);
+        if(tokenEnd < 0) {
+            tokenEnd = end;
+        }
+        if(tokenEnd - index < 2 || buf.getByte(tokenEnd - 1) != ':') {
+            return false;
+        }
+        int nameEnd = tokenEnd - 1;
+        if(buf.getByte(nameEnd - 1) == ']') {
+            int open = nameEnd - 2;
+            while(open > index && isDigit(buf.getByte(open))) {
+                open--;
+            }
+            if(open == nameEnd - 2 || buf.getByte(open) != '[') {
+                return false;
+            }
+            nameEnd = open;
+        }
+        for(int i = index; i < nameEnd; i++) {
+            byte b = buf.getByte(i);
+            if(b == ':' || b == '[' || b == ']') {
+                return false;
+            }
+        }
+        return nameEnd > index;
+    }
+
+    /**
+     * Read "Mmm dd hh:mm:ss" in local zone. Year is current year, or last year if the time is more than a day later than now.
+     * */
+    private long parseBsdTime(int index) {
+        int month = -1;
+        for(int i = 0; i < MONTHS.length; i++) {
+            if(buf.getByte(index) == MONTHS[i][0] && buf.getByte(index + 1) == MONTHS[i][1] && buf.getByte(index + 2) == MONTHS[i][2]) {
+                month = i + 1;
+                break;
+            }
+        }
+        byte dayTens = buf.getByte(index + 4);
+        int day = (dayTens == ' ' ? 0 : digit(index + 4) * 10) + digit(index + 5);
+        int hour = number(index + 7);
+        int minute = number(index + 10);
+        int second = number(index + 13);
+        if(month < 0 || day <= 0 || day > 31 || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 60
+                || buf.getByte(index + 9) != ':' || buf.getByte(index + 12) != ':') {
+            return EventTimeParser.UNKNOWN_TIME;
+        }
+
+        long now = System.currentTimeMillis();
+        if(now - yearCheckedAt > ONE_MINUTE_MILLIS) {
+            currentYear = LocalDateTime.now().getYear();
+            yearCheckedAt = now;
+        }
+        int year = currentYear;
+        try {
+            long millis = toEpochMillis(year, month, day, hour, minute, second);
+            return millis > now + ONE_DAY_MILLIS ? toEpochMillis(year - 1, month, day, hour, minute, second) : millis;
+        } catch (DateTimeException e) {
+            return EventTimeParser.UNKNOWN_TIME;
+        }
+    }
+
+    private long toEpochMillis(int year, int month, int day, int hour, int minute, int second) {
+        LocalDateTime time = LocalDateTime.of(year, month, day, hour, minute, second);
+        return time.toEpochSecond(zoneRules.getOffset(time)) * 1000L;
+    }
+
+    /**
+     * Read yyyy-MM-ddTHH:mm:ss[.fraction](Z|+hh:mm|-hh:mm). "-" and other texts are unknown time.
+     * */
+    private long parseRfc3339(int start, int stop) {
+        if(stop - start < 20 || buf.getByte(start + 4) != '-' || buf.getByte(start + 7) != '-' || buf.getByte(start + 10) != 'T'
+                || buf.getByte(start + 13) != ':' || buf.getByte(start + 16) != ':') {
+            return EventTimeParser.UNKNOWN_TIME;
+        }
+        // each half of year is checked, as a negative half can still make a positive year like "20x5".
+        int century = number(start);
+        int yearOfCentury = number(start + 2);
+        int month = number(start + 5);
+        int day = number(start + 8);
+        int hour = number(start + 11);
+        int minute = number(start + 14);
+        int second = number(start + 17);
+        if(century < 0 || yearOfCentury < 0 || month < 1 || month > 12 || day < 1 || day > 31 || hour < 0 || hour > 23 || minute < 0 || minute > 59
+                || second < 0 || second > 60) {
+            return EventTimeParser.UNKNOWN_TIME;
+        }
+        int year = century * 100 + yearOfCentury;
+
+        int index = start + 19;
+        int millis = 0;
+        if(buf.getByte(index) == '.') {
+            index++;
+            int scale = 100;
+            while(index < stop && isDigit(buf.getByte(index))) {
+                millis += (buf.getByte(index) - '0') * scale;
+                scale /= 10;
+                index++;
+            }
+        }
+
+        int offsetSeconds;
+        byte zone = index < stop ? buf.getByte(index) : 0;
+        if(zone == 'Z' || zone == 'z') {
+            offsetSeconds = 0;
+        } else if((zone == '+' || zone == '-') && index + 6 <= stop && buf.getByte(index + 3) == ':') {
+            int hours = number(index + 1);
+            int minutes = number(index + 4);
+            if(hours < 0 || minutes < 0) {
+                return EventTimeParser.UNKNOWN_TIME;
+            }
+            offsetSeconds = (hours * 3600 + minutes * 60) * (zone == '-' ? -1 : 1);
+        } else {
+            return EventTimeParser.UNKNOWN_TIME;
+        }
+
+        long epochDay = daysFromCivil(year, month, day);
+        return ((epochDay * 86400 + hour * 3600L + minute * 60L + second) - offsetSeconds) * 1000L + millis;
+    }
+
+    /**
+     * Return days from 1970-01-01 of a date of proleptic gregorian calendar.
+     * */
+    private static long daysFromCivil(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+
+    private int indexOfSpace(int from) {
+        return from >= end ? -1 : buf.indexOf(from, end, (byte) ' ');
+    }
+
+    private boolean isNil(int start, int stop) {
+        return stop - start == 1 && buf.getByte(start) == '-';
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private int digit(int index) {
+        byte b = buf.getByte(index);
+        return isDigit(b) ? b - '0' : -100;
+    }
+
+    /**
+     * Return two digits at index as a number, or negative if they are not digits.
+     * */
+    private int number(int index) {
+        return digit(index) * 10 + digit(index + 1);
+    }
+
+    /**
+     * Small cache of strings by their bytes. An entry is replaced by a newer string of the same hash slot.
+     * */
+    private static class StringCache {
+        private static final int SIZE = 256;
+        private final byte[][] keys = new byte[SIZE][];
+        private final String[] values = new String[SIZE];
+
+        private String get(ByteBuf buf, int start, int stop) {
+            int hash = 1;
+            for(int i = start; i < stop; i++) {
+                hash = 31 * hash + buf.getByte(i);
+            }
+            int slot = (hash ^ (hash >>> 16)) & (SIZE - 1);
+
+            byte[] key = keys[slot];
+            if(key != null && key.length == stop - start) {
+                boolean same = true;
+                for(int i = 0; i < key.length && same; i++) {
+                    same = key[i] == buf.getByte(start + i);
+                }
+                if(same) {
+                    return values[slot];
+                }
+            }
+
+            key = new byte[stop - start];
+            buf.getBytes(start, key);
+            keys[slot] = key;
+            values[slot] = new String(key, StandardCharsets.UTF_8);
+            return values[slot];
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.leo.logChoco.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for one batch that is emitted by bufferTimeout and processed by a stage.
+ * */
+@Name("logChoco.Batch")
+@Label("Batch")
+@Category({"logChoco", "Pipeline"})
+@Description("Processing of one buffered batch of logs")
+public class BatchEvent extends Event {
+
+    @Label("Stage")
+    public String stage;
+
+    @Label("Batch Size")
+    public int size;
+}
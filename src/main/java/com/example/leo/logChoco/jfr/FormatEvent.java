@@ -0,0 +1,28 @@
+package com.example.leo.logChoco.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * JFR event for rendering one log into outbound format.
+ * */
+@Name("logChoco.Format")
+@Label("Format")
+@Category({"logChoco", "Pipeline"})
+@Description("Rendering of one log into LEEF, CEF or JSON")
+@Threshold("1 ms")
+public class FormatEvent extends Event {
+
+    @Label("Log Format")
+    public String logFormat;
+
+    @Label("Event Id")
+    public String eventId;
+
+    @Label("Output Length")
+    public int length;
+}
@@ -0,0 +1,29 @@
+package com.example.leo.logChoco.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for matching one log against formats.
+ * Only sampled logs are recorded, see PatternInfoService.
+ * */
+@Name("logChoco.MatchAttempt")
+@Label("Match Attempt")
+@Category({"logChoco", "Pipeline"})
+@Description("Sampled search of a matching format for one log")
+public class MatchAttemptEvent extends Event {
+
+    @Label("Matched Format Index")
+    @Description("-1 if no format is matched")
+    public int formatIndex;
+
+    @Label("Attempts")
+    @Description("Number of formats tested")
+    public int attempts;
+
+    @Label("Log Length")
+    public int logLength;
+}
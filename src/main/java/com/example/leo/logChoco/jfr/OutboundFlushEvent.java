@@ -0,0 +1,23 @@
+package com.example.leo.logChoco.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for sending one batch of formatted logs to a target server.
+ * */
+@Name("logChoco.OutboundFlush")
+@Label("Outbound Flush")
+@Category({"logChoco", "Outbound"})
+@Description("Write of one batch of formatted logs to a target server")
+public class OutboundFlushEvent extends Event {
+
+    @Label("Target")
+    public String target;
+
+    @Label("Log Count")
+    public int count;
+}
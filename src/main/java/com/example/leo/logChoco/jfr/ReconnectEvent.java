@@ -0,0 +1,30 @@
+package com.example.leo.logChoco.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for reconnecting to a target server after disconnection.
+ * Duration covers every retry until connected or given up.
+ * */
+@Name("logChoco.Reconnect")
+@Label("Reconnect")
+@Category({"logChoco", "Outbound"})
+@Description("Reconnection to a target server")
+public class ReconnectEvent extends Event {
+
+    @Label("Target")
+    public String target;
+
+    @Label("Protocol")
+    public String protocol;
+
+    @Label("Failed Attempts")
+    public int failedAttempts;
+
+    @Label("Connected")
+    public boolean connected;
+}
@@ -0,0 +1,100 @@
+package com.example.leo.logChoco.processing;
+
+import com.example.leo.logChoco.config.entity.BatchingInfo;
+import lombok.Getter;
+
+/**
+ * Class that decides size and linger time of batches of a lane from what the lane has seen.
+ * Batch size grows step by step while latency of batches is under target, and is halved when it is over.
+ * While batches queue up for the lane thread, it grows instead, because the lane needs throughput more than small batches.
+ * Linger time is the time to fill a batch at observed arrival rate, but never longer than
+ * what is left of target after the expected service time of the batch.
+ * It is updated by the lane thread only, and read by any thread.
+ * */
+public class BatchController {
+
+    // weight of the newest batch in averages.
+    private final double SMOOTHING = 0.3;
+    private final double DECREASE_FACTOR = 0.5;
+    private final long MIN_LINGER_NANOS = 1_000_000L;
+
+    private final long targetLatencyNanos;
+    private final int minBatchSize;
+    private final int maxBatchSize;
+    private final long maxLingerNanos;
+    private final int increaseStep;
+
+    @Getter
+    private volatile int batchSize;
+    @Getter
+    private volatile long lingerNanos;
+
+    // logs per second while batches are filled.
+    @Getter
+    private volatile double arrivalRate = 0;
+    // time to handle a log in a batch.
+    @Getter
+    private volatile double serviceNanosPerLog = 0;
+    // time from arrival of the first log of last batch to the end of handling it.
+    @Getter
+    private volatile long lastLatencyNanos = 0;
+
+    public BatchController(BatchingInfo batchingInfo) {
+        targetLatencyNanos = Math.max(batchingInfo.getTargetLatencyMillis(), 1) * 1_000_000L;
+        minBatchSize = Math.max(batchingInfo.getMinBatchSize(), 1);
+        maxBatchSize = Math.max(batchingInfo.getMaxBatchSize(), minBatchSize);
+        maxLingerNanos = Math.max(batchingInfo.getMaxLingerMillis() * 1_000_000L, MIN_LINGER_NANOS);
+        increaseStep = Math.max(minBatchSize, maxBatchSize / 64);
+
+        batchSize = minBatchSize;
+        lingerNanos = Math.min(targetLatencyNanos / 2, maxLingerNanos);
+    }
+
+    /**
+     * Update batch size and linger time with a handled batch.
+     * @param size number of logs in the batch
+     * @param fillNanos time from arrival of the first log to the batch being closed
+     * @param waitNanos time from arrival of the first log to the start of handling the batch
+     * @param serviceNanos time to handle the batch
+     * */
+    public void record(int size, long fillNanos, long waitNanos, long serviceNanos) {
+        if(size <= 0) {
+            return;
+        }
+        boolean full = size >= batchSize;
+
+        // a batch closed by linger tells arrival rate. a full batch only tells that rate is at least this.
+        double rate = size * 1_000_000_000.0 / Math.max(fillNanos, 1);
+        arrivalRate = arrivalRate == 0 ? rate : average(arrivalRate, rate);
+        double perLog = (double) serviceNanos / size;
+        serviceNanosPerLog = serviceNanosPerLog == 0 ? perLog : average(serviceNanosPerLog, perLog);
+
+        lastLatencyNanos = waitNanos + serviceNanos;
+        // batch that waited longer for the lane thread than it took to handle means batches are piling up.
+        boolean backlogged = waitNanos - fillNanos > serviceNanos;
+
+        int nextSize = batchSize;
+        if(backlogged) {
+            // smaller batches only add cost for each batch, so grow to drain the queue.
+            nextSize = Math.min(nextSize + increaseStep, maxBatchSize);
+        } else if(fillNanos + serviceNanos > targetLatencyNanos) {
+            nextSize = Math.max((int) (nextSize * DECREASE_FACTOR), minBatchSize);
+        } else if(full) {
+            // growing is only useful when batches are limited by size.
+            nextSize = Math.min(nextSize + increaseStep, maxBatchSize);
+        }
+        batchSize = nextSize;
+        lingerNanos = decideLinger(nextSize);
+    }
+
+    private long decideLinger(int size) {
+        long budget = targetLatencyNanos - (long) (serviceNanosPerLog * size);
+        long fill = arrivalRate > 0 ? (long) (size * 1_000_000_000.0 / arrivalRate) : budget;
+        long linger = Math.min(fill, budget);
+        return Math.min(Math.max(linger, MIN_LINGER_NANOS), maxLingerNanos);
+    }
+
+    private double average(double old, double value) {
+        return old + (value - old) * SMOOTHING;
+    }
+}
@@ -0,0 +1,255 @@
+package com.example.leo.logChoco.processing;
+
+import com.example.leo.logChoco.config.entity.OutboundLogInfo;
+import com.example.leo.logChoco.entity.FormatSnapshot;
+import com.example.leo.logChoco.entity.ProcessingOrder;
+import com.example.leo.logChoco.entity.ReadFieldInfo;
+import com.example.leo.logChoco.entity.log.LogBatch;
+import com.example.leo.logChoco.format.AbstractFormatter;
+import com.example.leo.logChoco.jfr.FormatEvent;
+import com.example.leo.logChoco.jfr.MatchAttemptEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * Class that matches and formats every line of a batch.
+ * With parallelism more than 1, a batch is divided into chunks that are handled on a bounded worker pool.
+ * Handled lines are given to LineConsumer in order of ProcessingOrder.
+ * */
+public class BatchProcessor {
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
+    // one of (mask + 1) match attempts is recorded as JFR event.
+    private final int MATCH_EVENT_SAMPLE_MASK = 0x3F;
+
+    private final int parallelism;
+    private final int minChunkSize;
+    private final ProcessingOrder order;
+    // null if parallelism is 1.
+    private final ForkJoinPool workerPool;
+
+    private final ThreadLocal<BatchWorkspace> workspaces = ThreadLocal.withInitial(BatchWorkspace::new);
+    // lines of different chunks are given to consumer one chunk at a time.
+    private final Object consumerLock = new Object();
+
+    /**
+     * Called for each handled line. format index, event id and formatted log of the line are set in batch.
+     * Formatted log is null for a line that is dropped by a drop rule.
+     * */
+    public interface LineConsumer {
+        void accept(LogBatch batch, int line);
+    }
+
+    public BatchProcessor(int parallelism, int minChunkSize, ProcessingOrder order) {
+        this.parallelism = Math.max(parallelism, 1);
+        this.minChunkSize = Math.max(minChunkSize, 1);
+        this.order = order == null ? ProcessingOrder.SOURCE : order;
+        this.workerPool = this.parallelism > 1
+                ? new ForkJoinPool(this.parallelism, pool -> {
+                    ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                    thread.setName("batch-worker-" + thread.getPoolIndex());
+                    return thread;
+                }, null, false)
+                : null;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Match and format every line of batch, and give each line to consumer.
+     * It returns after every line is given.
+     * */
+    public void process(LogBatch batch, FormatSnapshot snapshot, OutboundLogInfo outboundLogInfo, LineConsumer consumer) {
+        List<ReadFieldInfo> fieldInfoList = snapshot.getFieldInfoList();
+        batch.reserveFields(fieldInfoList.stream().mapToInt(f -> f.getColumns().size()).max().orElse(0));
+
+        int size = batch.getSize();
+        int chunkCount = workerPool == null ? 1 : Math.min(parallelism, (size + minChunkSize - 1) / minChunkSize);
+        if(chunkCount <= 1) {
+            handleLines(batch, null, 0, size, snapshot, outboundLogInfo);
+            consumeLines(batch, null, 0, size, consumer);
+            return;
+        }
+
+        if(order == ProcessingOrder.GLOBAL) {
+            processInOrder(batch, chunkCount, snapshot, outboundLogInfo);
+            consumeLines(batch, null, 0, size, consumer);
+        } else {
+            processBySource(batch, chunkCount, snapshot, outboundLogInfo, consumer);
+        }
+    }
+
+    /**
+     * Divide batch into continuous chunks and wait until every chunk is handled.
+     * */
+    private void processInOrder(LogBatch batch, int chunkCount, FormatSnapshot snapshot, OutboundLogInfo outboundLogInfo) {
+        int size = batch.getSize();
+        int chunkSize = (size + chunkCount - 1) / chunkCount;
+
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(chunkCount);
+        for(int start = 0; start < size; start += chunkSize) {
+            int from = start;
+            int to = Math.min(start + chunkSize, size);
+            tasks.add(workerPool.submit(() -> handleLines(batch, null, from, to, snapshot, outboundLogInfo)));
+        }
+        tasks.forEach(ForkJoinTask::join);
+    }
+
+    /**
+     * Divide batch by hash of address, so logs from one address are in one chunk in order.
+     * Each chunk is given to consumer as soon as it is handled.
+     * */
+    private void processBySource(LogBatch batch, int chunkCount, FormatSnapshot snapshot, OutboundLogInfo outboundLogInfo, LineConsumer consumer) {
+        int size = batch.getSize();
+        int[] chunkSizes = new int[chunkCount];
+        int[] chunkOf = new int[size];
+        for(int line = 0; line < size; line++) {
+            int chunk = (batch.getIp(line).hashCode() & Integer.MAX_VALUE) % chunkCount;
+            chunkOf[line] = chunk;
+            chunkSizes[chunk]++;
+        }
+
+        int[][] chunkLines = new int[chunkCount][];
+        int[] filled = new int[chunkCount];
+        for(int chunk = 0; chunk < chunkCount; chunk++) {
+            chunkLines[chunk] = new int[chunkSizes[chunk]];
+        }
+        for(int line = 0; line < size; line++) {
+            chunkLines[chunkOf[line]][filled[chunkOf[line]]++] = line;
+        }
+
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(chunkCount);
+        for(int[] lines : chunkLines) {
+            if(lines.length == 0) {
+                continue;
+            }
+            tasks.add(workerPool.submit(() -> {
+                handleLines(batch, lines, 0, lines.length, snapshot, outboundLogInfo);
+                consumeLines(batch, lines, 0, lines.length, consumer);
+            }));
+        }
+        tasks.forEach(ForkJoinTask::join);
+    }
+
+    private void consumeLines(LogBatch batch, int[] lines, int from, int to, LineConsumer consumer) {
+        synchronized(consumerLock) {
+            for(int i = from; i < to; i++) {
+                consumer.accept(batch, lines == null ? i : lines[i]);
+            }
+        }
+    }
+
+    /**
+     * Match and format lines[from] ~ lines[to - 1], or line from ~ to - 1 if lines is null.
+     * */
+    private void handleLines(LogBatch batch, int[] lines, int from, int to, FormatSnapshot snapshot, OutboundLogInfo outboundLogInfo) {
+        BatchWorkspace workspace = workspaces.get();
+        workspace.prepare(snapshot, outboundLogInfo);
+        workspace.lineView = batch.getTextView(workspace.lineView);
+        List<ReadFieldInfo> fieldInfoList = snapshot.getFieldInfoList();
+
+        for(int i = from; i < to; i++) {
+            int line = lines == null ? i : lines[i];
+            int formatIndex = findMatchedFormatIndex(batch, line, snapshot, workspace);
+            batch.setFormatIndex(line, formatIndex);
+
+            if(formatIndex < 0) {
+                continue;
+            }
+
+            ReadFieldInfo fieldInfo = fieldInfoList.get(formatIndex);
+            batch.splitFields(line, fieldInfo);
+
+            // dropped before formatting, so they cost nothing after matching.
+            if(fieldInfo.isDropped(batch, line)) {
+                batch.setDropped(line, true);
+                continue;
+            }
+
+            FormatEvent formatEvent = new FormatEvent();
+            formatEvent.begin();
+
+            AbstractFormatter formatter = workspace.getFormatter(formatIndex);
+            String formattedLog = formatter.getFormattedLog(batch, line);
+            batch.setFormattedLog(line, formatter.getEventId(), formattedLog);
+
+            formatEvent.end();
+            if(formatEvent.shouldCommit()) {
+                formatEvent.logFormat = String.valueOf(fieldInfo.getLogFormat());
+                formatEvent.eventId = formatter.getEventId();
+                formatEvent.length = formattedLog.length();
+                formatEvent.commit();
+            }
+            logger.debug("formatted : {}", formattedLog);
+        }
+    }
+
+    /**
+     * Return index of format in fieldInfoList that matches a line of batch.
+     * Only formats bound to receive-server of the line are tried, and then the others if fallback is set.
+     * Formats are always tried in order, so the first format in setting file that matches wins.
+     * Return -1 if no format matches.
+     * */
+    private int findMatchedFormatIndex(LogBatch batch, int line, FormatSnapshot snapshot, BatchWorkspace workspace) {
+        MatchAttemptEvent event = null;
+        if((++workspace.matchAttemptCount & MATCH_EVENT_SAMPLE_MASK) == 0) {
+            event = new MatchAttemptEvent();
+            event.begin();
+        }
+
+        List<ReadFieldInfo> fieldInfoList = snapshot.getFieldInfoList();
+        CharSequence logText = batch.getLineView(line, workspace.lineView);
+        int receiver = batch.getReceiverIndex(line);
+        int matchedIndex = -1;
+        int attempts = 0;
+
+        int[] formats = snapshot.getFormatsOf(receiver);
+        for(int k = 0; matchedIndex < 0 && k < formats.length; k++) {
+            int i = formats[k];
+            attempts++;
+            if(fieldInfoList.get(i).checkIfMatchLogRegex(logText, workspace.getMatcher(i))) {
+                matchedIndex = i;
+            }
+        }
+        if(matchedIndex < 0 && snapshot.isFallback(receiver)) {
+            for(int i = 0; matchedIndex < 0 && i < fieldInfoList.size(); i++) {
+                if(snapshot.isBound(receiver, i)) {
+                    continue;
+                }
+                attempts++;
+                if(fieldInfoList.get(i).checkIfMatchLogRegex(logText, workspace.getMatcher(i))) {
+                    matchedIndex = i;
+                }
+            }
+        }
+
+        if(event != null) {
+            event.end();
+            if(event.shouldCommit()) {
+                event.formatIndex = matchedIndex;
+                event.attempts = attempts;
+                event.logLength = logText.length();
+                event.commit();
+            }
+        }
+        return matchedIndex;
+    }
+
+    /**
+     * Stop worker threads.
+     * */
+    public void shutdown() {
+        if(workerPool != null) {
+            workerPool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.leo.logChoco.processing;
+
+import com.example.leo.logChoco.config.entity.OutboundLogInfo;
+import com.example.leo.logChoco.entity.FormatSnapshot;
+import com.example.leo.logChoco.entity.ReadFieldInfo;
+import com.example.leo.logChoco.format.AbstractFormatter;
+import com.example.leo.logChoco.format.LogFormatterFactory;
+
+import java.nio.CharBuffer;
+import java.util.List;
+import java.util.regex.Matcher;
+
+/**
+ * Class that has matcher and formatter of each format for one thread.
+ * They are built again only when formats are reloaded.
+ * */
+class BatchWorkspace {
+
+    private FormatSnapshot preparedSnapshot;
+    private OutboundLogInfo preparedOutboundLogInfo;
+    private Matcher[] matchers = new Matcher[0];
+    private AbstractFormatter[] formatters = new AbstractFormatter[0];
+
+    // view that is moved to each line of batch.
+    CharBuffer lineView;
+    // count of match attempts to sample JFR events.
+    int matchAttemptCount = 0;
+
+    void prepare(FormatSnapshot snapshot, OutboundLogInfo outboundLogInfo) {
+        if(snapshot == preparedSnapshot && outboundLogInfo == preparedOutboundLogInfo) {
+            return;
+        }
+
+        List<ReadFieldInfo> fieldInfoList = snapshot.getFieldInfoList();
+        matchers = new Matcher[fieldInfoList.size()];
+        formatters = new AbstractFormatter[fieldInfoList.size()];
+        for(int i = 0; i < fieldInfoList.size(); i++) {
+            matchers[i] = fieldInfoList.get(i).getPattern().matcher("");
+            formatters[i] = LogFormatterFactory.getFormatter(outboundLogInfo, fieldInfoList.get(i));
+        }
+
+        preparedSnapshot = snapshot;
+        preparedOutboundLogInfo = outboundLogInfo;
+    }
+
+    Matcher getMatcher(int formatIndex) {
+        return matchers[formatIndex];
+    }
+
+    AbstractFormatter getFormatter(int formatIndex) {
+        return formatters[formatIndex];
+    }
+}
@@ -0,0 +1,263 @@
+package com.example.leo.logChoco.processing;
+
+import com.example.leo.logChoco.entity.ReadFieldInfo;
+import com.example.leo.logChoco.entity.log.LogBatch;
+import com.example.leo.logChoco.regex.scanner.EventTimeParser;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Class that collapses repeats of a log with the same key in a window into one entry.
+ * The first log of a key opens the window and is sent at once by caller. Only logs after it in the window are collapsed.
+ * Key is format, target set and values of dedupColumns of the format. Entries are in a bounded hash table
+ * that is divided into shards by hash of key, and each shard has a lock of its own.
+ * Windows end on a timer wheel of each shard, so expiring costs only entries of ticks that are passed.
+ * A repeated log is found by comparing its fields in batch with key of entry, so it creates nothing.
+ * */
+public class DedupTable {
+
+    // slots of timer wheel. a window longer than this many ticks goes around the wheel more than once.
+    private final int WHEEL_SIZE = 512;
+
+    private final long tickMillis;
+    private final int capacityPerShard;
+    private final Shard[] shards;
+    private final int shardBits;
+
+    // logs that are collapsed into an entry of an earlier log.
+    private final LongAdder suppressed = new LongAdder();
+    // entries that are expired with repeats.
+    private final LongAdder aggregated = new LongAdder();
+    // logs that are sent as they are because shard is full.
+    private final LongAdder overflow = new LongAdder();
+
+    public DedupTable(int maxEntries, int shardCount, long tickMillis, long now) {
+        this.tickMillis = Math.max(tickMillis, 1);
+        int bits = 0;
+        while((1 << bits) < Math.max(shardCount, 1) && bits < 16) {
+            bits++;
+        }
+        this.shardBits = bits;
+        this.shards = new Shard[1 << bits];
+        this.capacityPerShard = Math.max((Math.max(maxEntries, 1) + shards.length - 1) / shards.length, 1);
+        for(int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard(capacityPerShard, now / this.tickMillis);
+        }
+    }
+
+    /**
+     * Collapse a matched and formatted log into the entry of its key, and return true. caller must not send it then.
+     * Return false if it is the first log of its key in window, or its shard is full. caller must send it as it is then.
+     * @param targets target set of log. it is compared by reference.
+     * */
+    public boolean offer(ReadFieldInfo fieldInfo, LogBatch batch, int line, String[] targets, String formattedLog, long now) {
+        int[] fields = fieldInfo.getDedupFields();
+        int hash = System.identityHashCode(fieldInfo) * 31 + System.identityHashCode(targets);
+        for(int field : fields) {
+            hash = hash * 31 + batch.fieldHash(line, field);
+        }
+        hash ^= hash >>> 16;
+
+        long eventTime = batch.getEventTime(line);
+        long time = eventTime == EventTimeParser.UNKNOWN_TIME ? now : eventTime;
+
+        Shard shard = shards[shardBits == 0 ? 0 : (hash * 0x9E3779B9) >>> (32 - shardBits)];
+        synchronized (shard) {
+            for(Entry entry = shard.buckets[hash & shard.bucketMask]; entry != null; entry = entry.bucketNext) {
+                if(entry.matches(hash, fieldInfo, targets, batch, line)) {
+                    entry.firstTime = entry.count == 0 ? time : Math.min(entry.firstTime, time);
+                    entry.lastTime = entry.count == 0 ? time : Math.max(entry.lastTime, time);
+                    entry.count++;
+                    suppressed.increment();
+                    return true;
+                }
+            }
+            if(shard.size >= capacityPerShard) {
+                overflow.increment();
+                return false;
+            }
+
+            String[] keys = new String[fields.length];
+            for(int i = 0; i < fields.length; i++) {
+                keys[i] = batch.getField(line, fields[i]);
+            }
+            Entry entry = new Entry(hash, fieldInfo, targets, keys, formattedLog);
+            entry.deadlineTick = Math.max((now + fieldInfo.getDedupWindowMillis()) / tickMillis, shard.currentTick + 1);
+            shard.add(entry);
+            return false;
+        }
+    }
+
+    /**
+     * Remove entries whose window ends by now, and give those with repeats to consumer, outside of locks.
+     * */
+    public void expire(long now, Consumer<Entry> consumer) {
+        long tick = now / tickMillis;
+        List<Entry> expired = new ArrayList<>();
+        for(Shard shard : shards) {
+            synchronized (shard) {
+                shard.advance(tick, expired);
+            }
+        }
+        expired.forEach(entry -> {
+            if(entry.count > 0) {
+                aggregated.increment();
+                consumer.accept(entry);
+            }
+        });
+    }
+
+    /**
+     * Remove every entry and give those with repeats to consumer, whether its window ends or not.
+     * */
+    public void expireAll(Consumer<Entry> consumer) {
+        expire(Long.MAX_VALUE, consumer);
+    }
+
+    public int getSize() {
+        int size = 0;
+        for(Shard shard : shards) {
+            synchronized (shard) {
+                size += shard.size;
+            }
+        }
+        return size;
+    }
+
+    public long getSuppressedCount() {
+        return suppressed.sum();
+    }
+
+    public long getAggregatedCount() {
+        return aggregated.sum();
+    }
+
+    public long getOverflowCount() {
+        return overflow.sum();
+    }
+
+    /**
+     * Repeats of a log in its window. it has the formatted log of the first log, which is already sent.
+     * */
+    public static class Entry {
+        private final int hash;
+        @Getter
+        private final ReadFieldInfo fieldInfo;
+        @Getter
+        private final String[] targets;
+        private final String[] keys;
+        @Getter
+        private final String formattedLog;
+        // logs collapsed after the first log.
+        @Getter
+        private long count = 0;
+        // event time of repeats, or time they arrived if they have no event time.
+        @Getter
+        private long firstTime;
+        @Getter
+        private long lastTime;
+
+        private long deadlineTick;
+        private Entry bucketNext;
+        private Entry wheelNext;
+
+        private Entry(int hash, ReadFieldInfo fieldInfo, String[] targets, String[] keys, String formattedLog) {
+            this.hash = hash;
+            this.fieldInfo = fieldInfo;
+            this.targets = targets;
+            this.keys = keys;
+            this.formattedLog = formattedLog;
+        }
+
+        private boolean matches(int hash, ReadFieldInfo fieldInfo, String[] targets, LogBatch batch, int line) {
+            if(this.hash != hash || this.fieldInfo != fieldInfo || this.targets != targets) {
+                return false;
+            }
+            int[] fields = fieldInfo.getDedupFields();
+            for(int i = 0; i < fields.length; i++) {
+                if(!batch.fieldEquals(line, fields[i], keys[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private class Shard {
+        private final Entry[] buckets;
+        private final int bucketMask;
+        private final Entry[] wheel = new Entry[WHEEL_SIZE];
+        private long currentTick;
+        private int size;
+
+        private Shard(int capacity, long currentTick) {
+            int bucketCount = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+            this.buckets = new Entry[bucketCount];
+            this.bucketMask = bucketCount - 1;
+            this.currentTick = currentTick;
+        }
+
+        private void add(Entry entry) {
+            int bucket = entry.hash & bucketMask;
+            entry.bucketNext = buckets[bucket];
+            buckets[bucket] = entry;
+
+            int slot = (int) (entry.deadlineTick & (WHEEL_SIZE - 1));
+            entry.wheelNext = wheel[slot];
+            wheel[slot] = entry;
+            size++;
+        }
+
+        /**
+         * Move wheel to tick and remove entries of slots that are passed if their deadline is reached.
+         * Every slot is visited once at most, so a long pause costs no more than one round of wheel.
+         * */
+        private void advance(long tick, List<Entry> expired) {
+            if(tick <= currentTick || size == 0) {
+                currentTick = Math.max(currentTick, tick);
+                return;
+            }
+            long slots = Math.min(tick - currentTick, WHEEL_SIZE);
+            for(long i = 1; i <= slots; i++) {
+                int slot = (int) ((currentTick + i) & (WHEEL_SIZE - 1));
+                Entry previous = null;
+                Entry entry = wheel[slot];
+                while(entry != null) {
+                    Entry next = entry.wheelNext;
+                    if(entry.deadlineTick <= tick) {
+                        if(previous == null) {
+                            wheel[slot] = next;
+                        } else {
+                            previous.wheelNext = next;
+                        }
+                        removeFromBucket(entry);
+                        expired.add(entry);
+                        size--;
+                    } else {
+                        previous = entry;
+                    }
+                    entry = next;
+                }
+            }
+            currentTick = tick;
+        }
+
+        private void removeFromBucket(Entry entry) {
+            int bucket = entry.hash & bucketMask;
+            if(buckets[bucket] == entry) {
+                buckets[bucket] = entry.bucketNext;
+                return;
+            }
+            for(Entry e = buckets[bucket]; e != null; e = e.bucketNext) {
+                if(e.bucketNext == entry) {
+                    e.bucketNext = entry.bucketNext;
+                    return;
+                }
+            }
+        }
+    }
+}
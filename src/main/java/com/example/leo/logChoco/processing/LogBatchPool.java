@@ -0,0 +1,55 @@
+package com.example.leo.logChoco.processing;
+
+import com.example.leo.logChoco.entity.log.LogBatch;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class that keeps released batches to reuse their buffers.
+ * Batch that grew too big on a burst is dropped instead of being kept.
+ * Each pipeline lane has its own pool.
+ * */
+public class LogBatchPool {
+
+    private final int MAX_POOLED_BATCHES = 2;
+    // batch whose text buffer is bigger than this is not kept. (chars)
+    private final int MAX_POOLED_TEXT_CAPACITY = 8 * 1024 * 1024;
+
+    private final BlockingQueue<LogBatch> pool = new ArrayBlockingQueue<>(MAX_POOLED_BATCHES);
+
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong reusedCount = new AtomicLong();
+
+    /**
+     * Return empty batch.
+     * */
+    public LogBatch acquire() {
+        LogBatch batch = pool.poll();
+        if(batch != null) {
+            reusedCount.incrementAndGet();
+            return batch;
+        }
+        createdCount.incrementAndGet();
+        return new LogBatch();
+    }
+
+    /**
+     * Give back a batch that is not used anymore.
+     * */
+    public void release(LogBatch batch) {
+        batch.clear();
+        if(batch.getTextCapacity() <= MAX_POOLED_TEXT_CAPACITY) {
+            pool.offer(batch);
+        }
+    }
+
+    public long getCreatedCount() {
+        return createdCount.get();
+    }
+
+    public long getReusedCount() {
+        return reusedCount.get();
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.leo.logChoco.processing;
+
+import com.example.leo.logChoco.config.entity.BatchingInfo;
+import com.example.leo.logChoco.entity.LaneInfo;
+import com.example.leo.logChoco.entity.log.LogInfo;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.scheduler.Scheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Class that is one independent path of inbound logs.
+ * It has its own queue, thread, batch pool and processor, so lanes share nothing while handling logs.
+ * Logs are given to a lane by hash of source address, so logs from one address keep their order.
+ * A batch is closed when it reaches the batch size of controller, or when linger time has passed since its first log.
+ * Closed batches are handled in the order they are closed, because one thread runs them.
+ * */
+public class PipelineLane {
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final long DRAIN_TIMEOUT_MILLIS = 5000;
+
+    @Getter
+    private final int index;
+    @Getter
+    private final BatchProcessor batchProcessor;
+    @Getter
+    private final LogBatchPool logBatchPool = new LogBatchPool();
+
+    @Getter
+    private final BatchController batchController;
+    private final Scheduler scheduler;
+    private Consumer<List<LogInfo>> consumer;
+
+    // batch that is being filled. guarded by this.
+    private List<LogInfo> pending;
+    private long pendingSince;
+    // increased for each batch, so linger timer of a batch closed by size does nothing.
+    private long pendingGeneration = 0;
+
+    private final AtomicLong receivedCount = new AtomicLong();
+    private final AtomicLong processedCount = new AtomicLong();
+    private final AtomicLong batchCount = new AtomicLong();
+    private volatile int lastBatchSize = 0;
+
+    /**
+     * @param scheduler scheduler that runs tasks one by one in order. it is disposed with this lane.
+     * */
+    public PipelineLane(int index, BatchProcessor batchProcessor, BatchingInfo batchingInfo, Scheduler scheduler) {
+        this.index = index;
+        this.batchProcessor = batchProcessor;
+        this.batchController = new BatchController(batchingInfo);
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Start handling batches of logs on the thread of this lane.
+     * */
+    public void start(Consumer<List<LogInfo>> consumer) {
+        this.consumer = consumer;
+    }
+
+    /**
+     * Put a log into batch of this lane.
+     * Connections on different threads can share a lane, so emitting is serialized.
+     * */
+    public synchronized void emit(LogInfo log) {
+        receivedCount.incrementAndGet();
+        if(pending == null) {
+            pending = new ArrayList<>(batchController.getBatchSize());
+            pendingSince = System.nanoTime();
+            long generation = ++pendingGeneration;
+            scheduler.schedule(() -> closeByLinger(generation), batchController.getLingerNanos(), TimeUnit.NANOSECONDS);
+        }
+        pending.add(log);
+
+        if(pending.size() >= batchController.getBatchSize()) {
+            closeBatch();
+        }
+    }
+
+    private synchronized void closeByLinger(long generation) {
+        if(pending != null && generation == pendingGeneration) {
+            closeBatch();
+        }
+    }
+
+    /**
+     * Give filled batch to the thread of this lane. It is scheduled while holding lock, so batches keep their order.
+     * */
+    private void closeBatch() {
+        List<LogInfo> logs = pending;
+        long since = pendingSince;
+        long closed = System.nanoTime();
+        pending = null;
+        scheduler.schedule(() -> handle(logs, since, closed));
+    }
+
+    private void handle(List<LogInfo> logs, long since, long closed) {
+        long start = System.nanoTime();
+        try {
+            consumer.accept(logs);
+        } catch (Exception e) {
+            logger.error("Failed to handle a batch of {} logs in lane {}", logs.size(), index, e);
+        }
+        batchController.record(logs.size(), closed - since, start - since, System.nanoTime() - start);
+
+        processedCount.addAndGet(logs.size());
+        batchCount.incrementAndGet();
+        lastBatchSize = logs.size();
+    }
+
+    /**
+     * Return number of logs given to this lane so far. A log is handled when processed count reaches the count right after it is given,
+     * because batches are handled in the order logs are given.
+     * */
+    public long getReceivedCount() {
+        return receivedCount.get();
+    }
+
+    public long getProcessedCount() {
+        return processedCount.get();
+    }
+
+    public long getQueuedCount() {
+        return receivedCount.get() - processedCount.get();
+    }
+
+    public LaneInfo getLaneInfo() {
+        LaneInfo info = new LaneInfo();
+        info.setLane(index);
+        info.setReceived(receivedCount.get());
+        info.setProcessed(processedCount.get());
+        info.setQueued(info.getReceived() - info.getProcessed());
+        info.setBatches(batchCount.get());
+        info.setLastBatchSize(lastBatchSize);
+        info.setBatchSize(batchController.getBatchSize());
+        info.setLingerMillis(batchController.getLingerNanos() / 1_000_000.0);
+        info.setArrivalRate(batchController.getArrivalRate());
+        info.setServiceNanosPerLog(batchController.getServiceNanosPerLog());
+        info.setLastLatencyMillis(batchController.getLastLatencyNanos() / 1_000_000.0);
+        return info;
+    }
+
+    /**
+     * Handle the batch being filled and batches in queue, then stop the lane.
+     * Logs that are not handled in DRAIN_TIMEOUT_MILLIS are dropped.
+     * */
+    public void shutdown() {
+        synchronized (this) {
+            if(pending != null) {
+                closeBatch();
+            }
+        }
+        CountDownLatch drained = new CountDownLatch(1);
+        scheduler.schedule(drained::countDown);
+        try {
+            if(!drained.await(DRAIN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                logger.warn("Lane {} is stopped with {} log(s) not handled", index, receivedCount.get() - processedCount.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        batchProcessor.shutdown();
+        scheduler.dispose();
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.leo.logChoco.regex;
+
+/**
+ * How inbound log is checked against a format.
+ * */
+public enum MatchMode {
+    // whole log is matched with compiled regex.
+    REGEX,
+    // log is split by delimiter and each field is checked by scanner without regex.
+    SCANNER,
+    // log is key and value pairs in any order. keys are mapped onto columns, and values are checked by scanner.
+    KEY_VALUE,
+    // like SCANNER, but a field in quotes can have delimiter in it.
+    QUOTED
+}
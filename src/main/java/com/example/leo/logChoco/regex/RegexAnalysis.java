@@ -0,0 +1,21 @@
+package com.example.leo.logChoco.regex;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Class that has regex of a log format after analysis and warnings found on it.
+ * */
+@Getter
+public class RegexAnalysis {
+
+    // regex rewritten into possessive form where it is safe.
+    private final String regex;
+    private final List<String> warnings;
+
+    public RegexAnalysis(String regex, List<String> warnings) {
+        this.regex = regex;
+        this.warnings = warnings;
+    }
+}
@@ -0,0 +1,565 @@
+package com.example.leo.logChoco.regex;
+
+import com.example.leo.logChoco.exception.InvalidLogFormatException;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Class that finds parts of format regex that make lines which almost match take very long,
+ * and rewrites them where it doesn't change which lines match.
+ *
+ * 1. Wildcard field that is not the last one can swallow delimiters. It is limited to non-delimiter characters.
+ * 2. Quantifier whose characters can't be matched by what follows it never needs to give characters back,
+ *    so it is made possessive.
+ * 3. Unbounded quantifier repeated inside another unbounded quantifier can take exponential time. It is rejected.
+ * 4. Two or more unbounded quantifiers that still overlap with what follows them are warned.
+ * */
+public class RegexComplexityAnalyzer {
+
+    // characters that are tried to find out if a character set reaches outside of Latin-1.
+    private static final char[] OTHER_CHARS = {'\u0400', '\u4E00', '\uFFFD'};
+    // escapes after backslash that can match characters outside of Latin-1 which none of OTHER_CHARS is, like Hangul in p{IsHangul}.
+    private static final String OTHER_ESCAPES = "uxpPNhvR";
+    // bit for any character outside of Latin-1. two sets that both have it are taken as overlapping.
+    private static final int OTHER = 256;
+    // bit for end of input.
+    private static final int END = OTHER + 1;
+
+    private final Map<String, BitSet> charSetCache = new HashMap<>();
+
+    /**
+     * Join regex of each field with delimiter and analyze it.
+     * Throw exception if it can take exponential time.
+     * */
+    public RegexAnalysis analyze(List<String> fieldRegexList, String delimiter) throws InvalidLogFormatException {
+        List<String> warnings = new ArrayList<>();
+        List<String> fields = new ArrayList<>(fieldRegexList);
+
+        for(int i = 0; i < fields.size() - 1; i++) {
+            if(!isWildcard(fields.get(i))) {
+                continue;
+            }
+            if(delimiter.length() == 1) {
+                // only '.' is replaced, so quantifier and capture group of the field are kept as written.
+                fields.set(i, fields.get(i).replace(".", "[^" + escapeInClass(delimiter.charAt(0)) + "]"));
+            } else {
+                warnings.add("Field " + i + " " + fields.get(i) + " can swallow delimiter " + delimiter
+                        + ". Lines that almost match are tried at every position of the delimiter");
+            }
+        }
+
+        String regex = String.join(delimiter, fields);
+        Node root;
+        try {
+            root = new Parser(regex).parse();
+        } catch (UnsupportedRegexException e) {
+            warnings.add("Regex is not analyzed. " + e.getMessage());
+            return new RegexAnalysis(regex, warnings);
+        }
+
+        BitSet follow = new BitSet();
+        follow.set(END);
+        List<Repeat> overlaps = new ArrayList<>();
+        possessify(root, follow, overlaps);
+
+        checkNestedQuantifier(root, null);
+
+        if(overlaps.size() > 1) {
+            warnings.add(overlaps.size() + " quantifiers can give back characters that the rest of regex also matches : "
+                    + overlaps.stream().map(Node::toRegex).collect(Collectors.joining(", "))
+                    + ". Lines that almost match can take O(n^" + overlaps.size() + ") steps");
+        }
+
+        return new RegexAnalysis(root.toRegex(), warnings);
+    }
+
+    private boolean isWildcard(String fieldRegex) {
+        String value = fieldRegex.endsWith("?") ? fieldRegex.substring(0, fieldRegex.length() - 1) : fieldRegex;
+        return value.equals("(.*)") || value.equals("(.+)") || value.equals(".*") || value.equals(".+");
+    }
+
+    private String escapeInClass(char c) {
+        return "\\^-[]&".indexOf(c) >= 0 ? "\\" + c : String.valueOf(c);
+    }
+
+    /**
+     * Make quantifier possessive if characters it matches can't be matched by what follows.
+     * follow is set of characters that can come right after the node.
+     * */
+    private void possessify(Node node, BitSet follow, List<Repeat> overlaps) {
+        if(node instanceof Seq) {
+            List<Node> children = ((Seq) node).children;
+            BitSet after = follow;
+            for(int i = children.size() - 1; i >= 0; i--) {
+                Node child = children.get(i);
+                possessify(child, after, overlaps);
+
+                BitSet next = first(child);
+                if(child.isNullable()) {
+                    next.or(after);
+                }
+                after = next;
+            }
+        } else if(node instanceof Alt) {
+            ((Alt) node).branches.forEach(branch -> possessify(branch, follow, overlaps));
+        } else if(node instanceof Group) {
+            Group group = (Group) node;
+            if(!group.isLookaround) {
+                possessify(group.inner, follow, overlaps);
+            }
+        } else if(node instanceof Repeat) {
+            Repeat repeat = (Repeat) node;
+            BitSet bodyFollow = (BitSet) follow.clone();
+            if(repeat.max != 1) {
+                bodyFollow.or(first(repeat.body));
+            }
+            possessify(repeat.body, bodyFollow, overlaps);
+
+            if(repeat.lazy || repeat.possessive || repeat.max == repeat.min || !isSingleChar(repeat.body)) {
+                return;
+            }
+            if(!first(repeat.body).intersects(follow)) {
+                repeat.possessive = true;
+            } else if(repeat.max < 0) {
+                overlaps.add(repeat);
+            }
+        }
+    }
+
+    /**
+     * Reject unbounded quantifier inside another unbounded quantifier like (a+)+
+     * */
+    private void checkNestedQuantifier(Node node, Repeat outer) throws InvalidLogFormatException {
+        if(node instanceof Seq) {
+            for(Node child : ((Seq) node).children) {
+                checkNestedQuantifier(child, outer);
+            }
+        } else if(node instanceof Alt) {
+            for(Node branch : ((Alt) node).branches) {
+                checkNestedQuantifier(branch, outer);
+            }
+        } else if(node instanceof Group) {
+            checkNestedQuantifier(((Group) node).inner, outer);
+        } else if(node instanceof Repeat) {
+            Repeat repeat = (Repeat) node;
+            boolean isBacktracking = repeat.max < 0 && !repeat.possessive;
+
+            if(outer != null && isBacktracking) {
+                throw new InvalidLogFormatException("Quantifier " + repeat.toRegex() + " is repeated inside " + outer.toRegex()
+                        + ". A line that almost matches can take exponential time. Rewrite it so that the text can be split only one way");
+            }
+            checkNestedQuantifier(repeat.body, isBacktracking ? repeat : outer);
+        }
+    }
+
+    private boolean isSingleChar(Node node) {
+        if(node instanceof Atom) {
+            return !((Atom) node).isZeroWidth;
+        }
+        if(node instanceof Group && !((Group) node).isLookaround) {
+            return isSingleChar(((Group) node).inner);
+        }
+        if(node instanceof Seq && ((Seq) node).children.size() == 1) {
+            return isSingleChar(((Seq) node).children.get(0));
+        }
+        return false;
+    }
+
+    /**
+     * Return set of characters that the node can start with.
+     * */
+    private BitSet first(Node node) {
+        BitSet result = new BitSet();
+
+        if(node instanceof Atom) {
+            Atom atom = (Atom) node;
+            if(!atom.isZeroWidth) {
+                result.or(charSet(atom.text));
+            }
+        } else if(node instanceof Seq) {
+            for(Node child : ((Seq) node).children) {
+                result.or(first(child));
+                if(!child.isNullable()) {
+                    break;
+                }
+            }
+        } else if(node instanceof Alt) {
+            ((Alt) node).branches.forEach(branch -> result.or(first(branch)));
+        } else if(node instanceof Group) {
+            Group group = (Group) node;
+            if(!group.isLookaround) {
+                result.or(first(group.inner));
+            }
+        } else if(node instanceof Repeat) {
+            result.or(first(((Repeat) node).body));
+        }
+        return result;
+    }
+
+    /**
+     * Return set of Latin-1 characters the atom matches, with OTHER bit if it can match any character outside of Latin-1.
+     * Characters outside of Latin-1 are too many to try, so they are not told apart. e.g. [가-힣] and 힣 overlap.
+     * */
+    private BitSet charSet(String atomText) {
+        return charSetCache.computeIfAbsent(atomText, text -> {
+            Pattern pattern = Pattern.compile(text);
+            BitSet set = new BitSet(END);
+            for(int i = 0; i < 256; i++) {
+                if(pattern.matcher(String.valueOf((char) i)).matches()) {
+                    set.set(i);
+                }
+            }
+            if(canMatchOther(text, pattern)) {
+                set.set(OTHER);
+            }
+            return set;
+        });
+    }
+
+    private boolean canMatchOther(String atomText, Pattern pattern) {
+        for(char c : OTHER_CHARS) {
+            if(pattern.matcher(String.valueOf(c)).matches()) {
+                return true;
+            }
+        }
+        for(int i = 0; i < atomText.length(); i++) {
+            char c = atomText.charAt(i);
+            if(c >= 256) {
+                return true;
+            }
+            if(c == '\\' && i + 1 < atomText.length()) {
+                if(OTHER_ESCAPES.indexOf(atomText.charAt(i + 1)) >= 0) {
+                    return true;
+                }
+                i++;
+            }
+        }
+        return false;
+    }
+
+    private static abstract class Node {
+        abstract boolean isNullable();
+        abstract String toRegex();
+    }
+
+    private static class Atom extends Node {
+        private final String text;
+        // anchors like ^, $, \b match no character.
+        private final boolean isZeroWidth;
+
+        private Atom(String text, boolean isZeroWidth) {
+            this.text = text;
+            this.isZeroWidth = isZeroWidth;
+        }
+
+        boolean isNullable() {
+            return isZeroWidth;
+        }
+
+        String toRegex() {
+            return text;
+        }
+    }
+
+    private static class Seq extends Node {
+        private final List<Node> children;
+
+        private Seq(List<Node> children) {
+            this.children = children;
+        }
+
+        boolean isNullable() {
+            return children.stream().allMatch(Node::isNullable);
+        }
+
+        String toRegex() {
+            return children.stream().map(Node::toRegex).collect(Collectors.joining());
+        }
+    }
+
+    private static class Alt extends Node {
+        private final List<Node> branches;
+
+        private Alt(List<Node> branches) {
+            this.branches = branches;
+        }
+
+        boolean isNullable() {
+            return branches.stream().anyMatch(Node::isNullable);
+        }
+
+        String toRegex() {
+            return branches.stream().map(Node::toRegex).collect(Collectors.joining("|"));
+        }
+    }
+
+    private static class Group extends Node {
+        // text after '(' such as "?:", "?>", "?=". empty for capturing group.
+        private final String prefix;
+        private final Node inner;
+        private final boolean isLookaround;
+
+        private Group(String prefix, Node inner, boolean isLookaround) {
+            this.prefix = prefix;
+            this.inner = inner;
+            this.isLookaround = isLookaround;
+        }
+
+        boolean isNullable() {
+            return isLookaround || inner.isNullable();
+        }
+
+        String toRegex() {
+            return "(" + prefix + inner.toRegex() + ")";
+        }
+    }
+
+    private static class Repeat extends Node {
+        private final Node body;
+        private final int min;
+        // -1 if unbounded.
+        private final int max;
+        // quantifier as written, such as "*" or "{1,5}".
+        private final String quantifier;
+        private final boolean lazy;
+        private boolean possessive;
+
+        private Repeat(Node body, int min, int max, String quantifier, boolean lazy, boolean possessive) {
+            this.body = body;
+            this.min = min;
+            this.max = max;
+            this.quantifier = quantifier;
+            this.lazy = lazy;
+            this.possessive = possessive;
+        }
+
+        boolean isNullable() {
+            return min == 0 || body.isNullable();
+        }
+
+        String toRegex() {
+            return body.toRegex() + quantifier + (lazy ? "?" : "") + (possessive ? "+" : "");
+        }
+    }
+
+    private static class UnsupportedRegexException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        private UnsupportedRegexException(String msg) {
+            super(msg);
+        }
+    }
+
+    /**
+     * Parser for the subset of java regex that format builders create.
+     * */
+    private static class Parser {
+        private final String regex;
+        private int pos = 0;
+
+        private Parser(String regex) {
+            this.regex = regex;
+        }
+
+        private Node parse() throws UnsupportedRegexException {
+            Node node = parseAlt();
+            if(pos != regex.length()) {
+                throw new UnsupportedRegexException("Unexpected '" + regex.charAt(pos) + "' at " + pos);
+            }
+            return node;
+        }
+
+        private Node parseAlt() throws UnsupportedRegexException {
+            List<Node> branches = new ArrayList<>();
+            branches.add(parseSeq());
+            while(pos < regex.length() && regex.charAt(pos) == '|') {
+                pos++;
+                branches.add(parseSeq());
+            }
+            return branches.size() == 1 ? branches.get(0) : new Alt(branches);
+        }
+
+        private Node parseSeq() throws UnsupportedRegexException {
+            List<Node> children = new ArrayList<>();
+            while(pos < regex.length() && regex.charAt(pos) != '|' && regex.charAt(pos) != ')') {
+                children.add(parseQuantified());
+            }
+            return new Seq(children);
+        }
+
+        private Node parseQuantified() throws UnsupportedRegexException {
+            Node atom = parseAtom();
+            if(pos >= regex.length()) {
+                return atom;
+            }
+
+            int start = pos;
+            int min, max;
+            char c = regex.charAt(pos);
+            if(c == '?') {
+                min = 0; max = 1; pos++;
+            } else if(c == '*') {
+                min = 0; max = -1; pos++;
+            } else if(c == '+') {
+                min = 1; max = -1; pos++;
+            } else if(c == '{') {
+                int end = regex.indexOf('}', pos);
+                if(end < 0) {
+                    throw new UnsupportedRegexException("Unclosed '{' at " + pos);
+                }
+                String[] bounds = regex.substring(pos + 1, end).split(",", -1);
+                try {
+                    min = Integer.parseInt(bounds[0]);
+                    max = bounds.length == 1 ? min : bounds[1].isEmpty() ? -1 : Integer.parseInt(bounds[1]);
+                } catch (NumberFormatException e) {
+                    throw new UnsupportedRegexException("Wrong quantifier at " + pos);
+                }
+                pos = end + 1;
+            } else {
+                return atom;
+            }
+            String quantifier = regex.substring(start, pos);
+
+            boolean lazy = false, possessive = false;
+            if(pos < regex.length() && regex.charAt(pos) == '?') {
+                lazy = true;
+                pos++;
+            } else if(pos < regex.length() && regex.charAt(pos) == '+') {
+                possessive = true;
+                pos++;
+            }
+            return new Repeat(atom, min, max, quantifier, lazy, possessive);
+        }
+
+        private Node parseAtom() throws UnsupportedRegexException {
+            char c = regex.charAt(pos);
+
+            return switch(c) {
+                case '(' -> parseGroup();
+                case '[' -> new Atom(readClass(), false);
+                case '\\' -> parseEscape();
+                case '^', '$' -> {
+                    pos++;
+                    yield new Atom(String.valueOf(c), true);
+                }
+                case '*', '+', '?', '{' -> throw new UnsupportedRegexException("Dangling '" + c + "' at " + pos);
+                default -> {
+                    pos++;
+                    yield new Atom(String.valueOf(c), false);
+                }
+            };
+        }
+
+        private Node parseGroup() throws UnsupportedRegexException {
+            pos++;
+            String prefix = "";
+            boolean isLookaround = false;
+
+            if(regex.startsWith("?", pos)) {
+                if(regex.startsWith("?:", pos) || regex.startsWith("?>", pos)) {
+                    prefix = regex.substring(pos, pos + 2);
+                } else if(regex.startsWith("?=", pos) || regex.startsWith("?!", pos)) {
+                    prefix = regex.substring(pos, pos + 2);
+                    isLookaround = true;
+                } else if(regex.startsWith("?<=", pos) || regex.startsWith("?<!", pos)) {
+                    prefix = regex.substring(pos, pos + 3);
+                    isLookaround = true;
+                } else if(regex.startsWith("?<", pos) && regex.indexOf('>', pos) > 0) {
+                    prefix = regex.substring(pos, regex.indexOf('>', pos) + 1);
+                } else {
+                    throw new UnsupportedRegexException("Inline flags are not supported at " + pos);
+                }
+                pos += prefix.length();
+            }
+
+            Node inner = parseAlt();
+            if(pos >= regex.length() || regex.charAt(pos) != ')') {
+                throw new UnsupportedRegexException("Unclosed group");
+            }
+            pos++;
+            return new Group(prefix, inner, isLookaround);
+        }
+
+        private String readClass() throws UnsupportedRegexException {
+            int start = pos;
+            int i = pos + 1;
+            if(i < regex.length() && regex.charAt(i) == '^') {
+                i++;
+            }
+            // ']' right after '[' or '[^' is a literal.
+            if(i < regex.length() && regex.charAt(i) == ']') {
+                i++;
+            }
+
+            int depth = 1;
+            while(depth > 0) {
+                if(i >= regex.length()) {
+                    throw new UnsupportedRegexException("Unclosed character class at " + start);
+                }
+                char c = regex.charAt(i);
+                if(c == '\\') {
+                    i += 2;
+                    continue;
+                }
+                if(c == '[') {
+                    depth++;
+                } else if(c == ']') {
+                    depth--;
+                }
+                i++;
+            }
+            pos = i;
+            return regex.substring(start, i);
+        }
+
+        private Node parseEscape() throws UnsupportedRegexException {
+            int start = pos;
+            if(pos + 1 >= regex.length()) {
+                throw new UnsupportedRegexException("Regex ends with '\\'");
+            }
+            char c = regex.charAt(pos + 1);
+
+            if("bBAzZG".indexOf(c) >= 0) {
+                pos += 2;
+                return new Atom(regex.substring(start, pos), true);
+            }
+            if((c >= '1' && c <= '9') || c == 'k' || c == 'Q' || c == 'X') {
+                throw new UnsupportedRegexException("\\" + c + " is not supported at " + pos);
+            }
+
+            if((c == 'p' || c == 'P' || c == 'x') && regex.startsWith("{", pos + 2)) {
+                int end = regex.indexOf('}', pos);
+                if(end < 0) {
+                    throw new UnsupportedRegexException("Unclosed '{' at " + pos);
+                }
+                pos = end + 1;
+            } else if(c == 'p' || c == 'P') {
+                pos += 3;
+            } else if(c == 'u') {
+                pos += 6;
+            } else if(c == 'x') {
+                pos += 4;
+            } else if(c == 'c') {
+                pos += 3;
+            } else if(c == '0') {
+                pos += 2;
+                for(int n = 0; n < 3 && pos < regex.length() && regex.charAt(pos) >= '0' && regex.charAt(pos) <= '7'; n++) {
+                    pos++;
+                }
+            } else {
+                pos += 2;
+            }
+
+            if(pos > regex.length()) {
+                throw new UnsupportedRegexException("Incomplete escape at " + start);
+            }
+            return new Atom(regex.substring(start, pos), false);
+        }
+    }
+}
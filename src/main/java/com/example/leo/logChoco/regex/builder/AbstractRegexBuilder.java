@@ -24,6 +24,19 @@ abstract public class AbstractRegexBuilder {
     }
 
     public void addRegexOptions(Map<String, String> options) {
+        // regex of user takes place of regex of the type, so only EMPTY is added to it.
+        String userRegex = options.entrySet().stream()
+                .filter(entry -> FieldOption.REGEX.name().equalsIgnoreCase(entry.getKey()))
+                .map(Map.Entry::getValue)
+                .findFirst().orElse(null);
+        if(userRegex != null) {
+            setValue("(" + userRegex + ")");
+            options.entrySet().stream()
+                    .filter(entry -> FieldOption.EMPTY.name().equalsIgnoreCase(entry.getKey()))
+                    .forEach(entry -> this.addRegexOption(entry.getKey(), entry.getValue()));
+            return;
+        }
+
         options.entrySet().stream().forEach(entry -> {
             this.addRegexOption(entry.getKey(), entry.getValue());
         });
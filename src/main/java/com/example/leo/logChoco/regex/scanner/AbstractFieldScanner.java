@@ -0,0 +1,119 @@
+package com.example.leo.logChoco.regex.scanner;
+
+import com.example.leo.logChoco.regex.builder.FieldOption;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Base class for checking a field by reading its characters one by one, without regex.
+ * Each field is given as a range of the log text so no string is created for it.
+ * Typed value of a field is returned as long. see each scanner for how it is encoded.
+ * */
+abstract public class AbstractFieldScanner {
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
+    // field can be omitted.
+    @Getter
+    private boolean emptyAllowed = false;
+    // regex that field must also match. null if it is not set.
+    @Getter
+    private Pattern userPattern;
+    // scanner is shared by threads, so each thread has its own matcher.
+    private ThreadLocal<Matcher> userMatchers;
+
+    public void addScanOptions(Map<String, String> options) {
+        options.forEach(this::addScanOption);
+    }
+
+    public void addScanOption(String key, String optionValue) {
+        try {
+            FieldOption option = FieldOption.valueOf(key.toUpperCase());
+
+            if(FieldOption.EMPTY.equals(option)) {
+                this.emptyAllowed = Boolean.parseBoolean(optionValue);
+            } else if(FieldOption.LENGTH.equals(option)) {
+                this.setExactLengthIfSupported(Integer.parseInt(optionValue));
+            } else if(FieldOption.MAXLENGTH.equals(option)) {
+                this.setMaxLengthIfSupported(Integer.parseInt(optionValue));
+            } else if(FieldOption.MINLENGTH.equals(option)) {
+                this.setMinLengthIfSupported(Integer.parseInt(optionValue));
+            } else if(FieldOption.DATEFORMAT.equals(option)) {
+                this.setDateFormat(optionValue);
+            } else if(FieldOption.REGEX.equals(option)) {
+                this.userPattern = Pattern.compile(optionValue);
+                this.userMatchers = ThreadLocal.withInitial(() -> userPattern.matcher(""));
+            }
+        } catch(PatternSyntaxException e) {
+            throw e;
+        } catch(IllegalArgumentException e) {
+            logger.error("option {} is not supported.", key);
+        }
+    }
+
+    /**
+     * Check if text between start and end is valid for the field.
+     * */
+    public boolean isValid(CharSequence text, int start, int end) {
+        if(start == end) {
+            return emptyAllowed;
+        }
+        if(userPattern != null && !userMatchers.get().reset(text).region(start, end).matches()) {
+            return false;
+        }
+        return scan(text, start, end);
+    }
+
+    /**
+     * Check non-empty text between start and end.
+     * */
+    abstract protected boolean scan(CharSequence text, int start, int end);
+
+    /**
+     * Return typed value of valid text between start and end.
+     * */
+    abstract public long parse(CharSequence text, int start, int end);
+
+    /**
+     * Return typed value as object to show it. e.g. double for float field.
+     * */
+    public Object toObject(long value) {
+        return value;
+    }
+
+    /**
+     * Return true if parse returns a value that means something.
+     * */
+    public boolean isTyped() {
+        return true;
+    }
+
+    protected void setExactLengthIfSupported(int length) {
+    }
+
+    protected void setMaxLengthIfSupported(int length) {
+    }
+
+    protected void setMinLengthIfSupported(int length) {
+    }
+
+    protected void setDateFormat(String format) {
+    }
+
+    /**
+     * Set time zone that typed value of date is read in.
+     * */
+    public void setTimeZone(ZoneId zone) {
+    }
+
+    protected static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
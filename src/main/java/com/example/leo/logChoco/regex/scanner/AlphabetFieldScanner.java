@@ -0,0 +1,66 @@
+package com.example.leo.logChoco.regex.scanner;
+
+/**
+ * Scanner for alphabet. It has no typed value.
+ * */
+public class AlphabetFieldScanner extends AbstractFieldScanner {
+
+    // same with regex of alphabet, which is one character unless length is set.
+    private int minLength = 1;
+    private int maxLength = 1;
+    private boolean isMaxLengthSet = false;
+    private boolean isExactLength = false;
+
+    @Override
+    protected boolean scan(CharSequence text, int start, int end) {
+        int length = end - start;
+        if(length < minLength || length > maxLength) {
+            return false;
+        }
+        for(int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if(!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public long parse(CharSequence text, int start, int end) {
+        return 0;
+    }
+
+    @Override
+    public boolean isTyped() {
+        return false;
+    }
+
+    // same with regex builder, exact length is removed when min or max length is set.
+    @Override
+    protected void setExactLengthIfSupported(int length) {
+        minLength = length;
+        maxLength = length;
+        isExactLength = true;
+        isMaxLengthSet = false;
+    }
+
+    @Override
+    protected void setMaxLengthIfSupported(int length) {
+        if(isExactLength) {
+            minLength = 1;
+            isExactLength = false;
+        }
+        maxLength = length;
+        isMaxLengthSet = true;
+    }
+
+    @Override
+    protected void setMinLengthIfSupported(int length) {
+        if(isExactLength || !isMaxLengthSet) {
+            maxLength = Integer.MAX_VALUE;
+            isExactLength = false;
+        }
+        minLength = length;
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.leo.logChoco.regex.scanner;
+
+/**
+ * Scanner that accepts any text. It has no typed value.
+ * */
+public class AnythingFieldScanner extends AbstractFieldScanner {
+
+    public AnythingFieldScanner() {
+        // same with regex of anything, which matches empty text.
+        addScanOption("EMPTY", "true");
+    }
+
+    @Override
+    protected boolean scan(CharSequence text, int start, int end) {
+        return true;
+    }
+
+    @Override
+    public long parse(CharSequence text, int start, int end) {
+        return 0;
+    }
+
+    @Override
+    public boolean isTyped() {
+        return false;
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.leo.logChoco.regex.scanner;
+
+/**
+ * Scanner for boolean. Value is 1 for true and 0 for false.
+ * */
+public class BooleanFieldScanner extends AbstractFieldScanner {
+
+    @Override
+    protected boolean scan(CharSequence text, int start, int end) {
+        return toValue(text, start, end) >= 0;
+    }
+
+    @Override
+    public long parse(CharSequence text, int start, int end) {
+        return toValue(text, start, end);
+    }
+
+    /**
+     * Same with regex, accepts true, false, 0, 1 in lower, upper or capitalized case.
+     * Return -1 if not valid.
+     * */
+    private int toValue(CharSequence text, int start, int end) {
+        int length = end - start;
+        if(length == 1) {
+            char c = text.charAt(start);
+            return c == '1' ? 1 : c == '0' ? 0 : -1;
+        }
+        if(length == 4 && (regionMatches(text, start, "true") || regionMatches(text, start, "TRUE") || regionMatches(text, start, "True"))) {
+            return 1;
+        }
+        if(length == 5 && (regionMatches(text, start, "false") || regionMatches(text, start, "FALSE") || regionMatches(text, start, "False"))) {
+            return 0;
+        }
+        return -1;
+    }
+
+    private boolean regionMatches(CharSequence text, int start, String word) {
+        for(int i = 0; i < word.length(); i++) {
+            if(text.charAt(start + i) != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Object toObject(long value) {
+        return value == 1;
+    }
+}
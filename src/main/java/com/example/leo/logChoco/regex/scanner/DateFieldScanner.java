@@ -0,0 +1,151 @@
+package com.example.leo.logChoco.regex.scanner;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Scanner for date driven by DATEFORMAT option, e.g. yyyy/MM/dd HH:mm:ss.SSS
+ * Supports same letters with regex of date. yyyy, MM, dd, HH, hh, mm, ss, S. other characters are literal.
+ * Value is epoch milliseconds in time zone of the format.
+ * */
+public class DateFieldScanner extends AbstractFieldScanner {
+
+    static final char YEAR = 'y';
+    static final char MONTH = 'M';
+    static final char DAY = 'd';
+    static final char HOUR_24 = 'H';
+    static final char HOUR_12 = 'h';
+    static final char MINUTE = 'm';
+    static final char SECOND = 's';
+    static final char FRACTION = 'S';
+    static final char LITERAL = 0;
+
+    // kind of each token and character of literal token.
+    private char[] kinds = new char[0];
+    private char[] literals = new char[0];
+    private String dateFormat = "";
+    private ZoneId zone = ZoneId.systemDefault();
+    private EventTimeParser parser = new EventTimeParser(dateFormat, kinds, literals, zone);
+
+    @Override
+    protected void setDateFormat(String format) {
+        List<Character> kindList = new ArrayList<>();
+        List<Character> literalList = new ArrayList<>();
+
+        int i = 0;
+        while(i < format.length()) {
+            char kind = tokenAt(format, i);
+            kindList.add(kind);
+            literalList.add(kind == LITERAL ? format.charAt(i) : LITERAL);
+            i += tokenLength(kind);
+        }
+
+        kinds = new char[kindList.size()];
+        literals = new char[literalList.size()];
+        for(int k = 0; k < kinds.length; k++) {
+            kinds[k] = kindList.get(k);
+            literals[k] = literalList.get(k);
+        }
+        dateFormat = format;
+        parser = new EventTimeParser(dateFormat, kinds, literals, zone);
+    }
+
+    @Override
+    public void setTimeZone(ZoneId zone) {
+        this.zone = zone;
+        parser = new EventTimeParser(dateFormat, kinds, literals, zone);
+    }
+
+    private char tokenAt(String format, int i) {
+        if(format.startsWith("yyyy", i)) {
+            return YEAR;
+        }
+        for(char kind : new char[]{MONTH, DAY, HOUR_24, HOUR_12, MINUTE, SECOND}) {
+            if(format.startsWith("" + kind + kind, i)) {
+                return kind;
+            }
+        }
+        return format.charAt(i) == FRACTION ? FRACTION : LITERAL;
+    }
+
+    static int tokenLength(char kind) {
+        return switch(kind) {
+            case YEAR -> 4;
+            case LITERAL, FRACTION -> 1;
+            default -> 2;
+        };
+    }
+
+    @Override
+    protected boolean scan(CharSequence text, int start, int end) {
+        int i = start;
+
+        for(int k = 0; k < kinds.length; k++) {
+            char kind = kinds[k];
+
+            if(kind == LITERAL) {
+                if(i >= end || text.charAt(i) != literals[k]) {
+                    return false;
+                }
+                i++;
+                continue;
+            }
+
+            int digits = kind == YEAR ? 4 : kind == FRACTION ? 1 : 2;
+            // hour of day can be one digit like regex of date.
+            if(kind == HOUR_24 && (i + 1 >= end || !isDigit(text.charAt(i + 1)) || number(text, i, 2) > 23)) {
+                digits = 1;
+            }
+            if(i + digits > end) {
+                return false;
+            }
+            int value = number(text, i, digits);
+            if(value < 0 || !isInRange(kind, value)) {
+                return false;
+            }
+            i += digits;
+        }
+
+        return i == end;
+    }
+
+    private boolean isInRange(char kind, int value) {
+        return switch(kind) {
+            case MONTH, HOUR_12 -> value >= 1 && value <= 12;
+            case DAY -> value >= 1 && value <= 31;
+            case HOUR_24 -> value <= 23;
+            case MINUTE, SECOND -> value <= 59;
+            default -> true;
+        };
+    }
+
+    /**
+     * Return number of given digits, or -1 if any of them is not digit.
+     * */
+    private int number(CharSequence text, int start, int digits) {
+        int value = 0;
+        for(int i = start; i < start + digits; i++) {
+            char c = text.charAt(i);
+            if(!isDigit(c)) {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Return epoch milliseconds, or EventTimeParser.UNKNOWN_TIME if date can't be resolved.
+     * */
+    @Override
+    public long parse(CharSequence text, int start, int end) {
+        return parser.parse(text, start, end);
+    }
+
+    @Override
+    public Object toObject(long value) {
+        return value == EventTimeParser.UNKNOWN_TIME ? null : Instant.ofEpochMilli(value).toString();
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.leo.logChoco.regex.scanner;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.Year;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
+import java.time.temporal.TemporalQueries;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Class that converts date text into epoch milliseconds in a time zone.
+ * Formatter is immutable and cached per DATEFORMAT, so formats with same DATEFORMAT share it.
+ * Consecutive logs almost always have same date and hour, so the prefix before minute is cached
+ * and only minute, second and fraction are read when prefix is the same with previous one.
+ * */
+public class EventTimeParser {
+
+    public static final long UNKNOWN_TIME = -1;
+
+    private static final Map<String, DateTimeFormatter> FORMATTER_CACHE = new ConcurrentHashMap<>();
+
+    private final DateTimeFormatter formatter;
+    private final ZoneId zone;
+
+    // token kinds and literals of DATEFORMAT. see DateFieldScanner.
+    private final char[] kinds;
+    private final char[] literals;
+    // index of first token of fixed width tail, e.g. "mm:ss.SSS". -1 if there is no such tail.
+    private final int tailToken;
+    private final int tailWidth;
+
+    // replaced as a whole, so it is safe to be read and written by many threads.
+    private volatile CachedPrefix cachedPrefix;
+
+    EventTimeParser(String dateFormat, char[] kinds, char[] literals, ZoneId zone) {
+        this.formatter = FORMATTER_CACHE.computeIfAbsent(dateFormat, key -> createFormatter(kinds, literals));
+        this.zone = zone;
+        this.kinds = kinds;
+        this.literals = literals;
+
+        int token = -1;
+        int width = 0;
+        for(int k = kinds.length - 1; k >= 0; k--) {
+            char kind = kinds[k];
+            if(kind != DateFieldScanner.MINUTE && kind != DateFieldScanner.SECOND
+                    && kind != DateFieldScanner.FRACTION && kind != DateFieldScanner.LITERAL) {
+                break;
+            }
+            width += DateFieldScanner.tokenLength(kind);
+            if(kind == DateFieldScanner.MINUTE) {
+                token = k;
+                break;
+            }
+        }
+        this.tailToken = token;
+        this.tailWidth = token < 0 ? 0 : width;
+    }
+
+    /**
+     * Return epoch milliseconds of valid date text between start and end, or UNKNOWN_TIME if it can't be resolved.
+     * */
+    public long parse(CharSequence text, int start, int end) {
+        if(tailToken < 0) {
+            return parseFully(text, start, end);
+        }
+
+        int prefixEnd = end - tailWidth;
+        CachedPrefix prefix = cachedPrefix;
+        if(prefix != null && prefix.isSame(text, start, prefixEnd)) {
+            return prefix.baseMillis + readTail(text, prefixEnd);
+        }
+
+        long millis = parseFully(text, start, end);
+        if(millis != UNKNOWN_TIME) {
+            cachedPrefix = new CachedPrefix(text.subSequence(start, prefixEnd).toString(), millis - readTail(text, prefixEnd));
+        }
+        return millis;
+    }
+
+    private long parseFully(CharSequence text, int start, int end) {
+        try {
+            TemporalAccessor parsed = formatter.parse(text.subSequence(start, end));
+
+            LocalDate date = parsed.query(TemporalQueries.localDate());
+            if(date == null) {
+                // date without year is regarded as date of this year.
+                date = LocalDate.of(Year.now(zone).getValue(),
+                        parsed.get(ChronoField.MONTH_OF_YEAR), parsed.get(ChronoField.DAY_OF_MONTH));
+            }
+            LocalTime time = parsed.query(TemporalQueries.localTime());
+            return ZonedDateTime.of(date, time, zone).toInstant().toEpochMilli();
+        } catch (DateTimeException e) {
+            return UNKNOWN_TIME;
+        }
+    }
+
+    /**
+     * Return milliseconds of minute, second and fraction in tail that starts at given index.
+     * */
+    private long readTail(CharSequence text, int start) {
+        int i = start;
+        long millis = 0;
+        int fractionDigits = 0;
+        int fraction = 0;
+
+        for(int k = tailToken; k < kinds.length; k++) {
+            char kind = kinds[k];
+            if(kind == DateFieldScanner.MINUTE) {
+                millis += twoDigits(text, i) * 60_000L;
+            } else if(kind == DateFieldScanner.SECOND) {
+                millis += twoDigits(text, i) * 1000L;
+            } else if(kind == DateFieldScanner.FRACTION && fractionDigits < 3) {
+                fraction = fraction * 10 + (text.charAt(i) - '0');
+                fractionDigits++;
+            }
+            i += DateFieldScanner.tokenLength(kind);
+        }
+
+        for(; fractionDigits > 0 && fractionDigits < 3; fractionDigits++) {
+            fraction *= 10;
+        }
+        return millis + fraction;
+    }
+
+    private int twoDigits(CharSequence text, int i) {
+        return (text.charAt(i) - '0') * 10 + (text.charAt(i + 1) - '0');
+    }
+
+    /**
+     * Convert DATEFORMAT into DateTimeFormatter. Characters that are not date letters are quoted as literal.
+     * */
+    private static DateTimeFormatter createFormatter(char[] kinds, char[] literals) {
+        StringBuilder pattern = new StringBuilder();
+        boolean hasHour = false;
+        boolean hasHour12 = false;
+
+        for(int k = 0; k < kinds.length; k++) {
+            switch(kinds[k]) {
+                case DateFieldScanner.YEAR -> pattern.append("uuuu");
+                case DateFieldScanner.MONTH -> pattern.append("MM");
+                case DateFieldScanner.DAY -> pattern.append("dd");
+                // hour of day can be one digit like regex of date.
+                case DateFieldScanner.HOUR_24 -> { pattern.append("H"); hasHour = true; }
+                case DateFieldScanner.HOUR_12 -> { pattern.append("hh"); hasHour = true; hasHour12 = true; }
+                case DateFieldScanner.MINUTE -> pattern.append("mm");
+                case DateFieldScanner.SECOND -> pattern.append("ss");
+                case DateFieldScanner.FRACTION -> pattern.append("S");
+                default -> pattern.append('\'').append(literals[k] == '\'' ? "''" : String.valueOf(literals[k])).append('\'');
+            }
+        }
+
+        DateTimeFormatterBuilder builder = new DateTimeFormatterBuilder()
+                .appendPattern(pattern.toString())
+                .parseDefaulting(ChronoField.MONTH_OF_YEAR, 1)
+                .parseDefaulting(ChronoField.DAY_OF_MONTH, 1)
+                .parseDefaulting(ChronoField.MINUTE_OF_HOUR, 0)
+                .parseDefaulting(ChronoField.SECOND_OF_MINUTE, 0);
+        if(!hasHour) {
+            builder.parseDefaulting(ChronoField.HOUR_OF_DAY, 0);
+        }
+        if(hasHour12) {
+            // DATEFORMAT has no am/pm marker.
+            builder.parseDefaulting(ChronoField.AMPM_OF_DAY, 0);
+        }
+        return builder.toFormatter();
+    }
+
+    private static class CachedPrefix {
+        private final String text;
+        // epoch milliseconds of the prefix with zero minute, second and fraction.
+        private final long baseMillis;
+
+        private CachedPrefix(String text, long baseMillis) {
+            this.text = text;
+            this.baseMillis = baseMillis;
+        }
+
+        private boolean isSame(CharSequence other, int start, int end) {
+            if(end - start != text.length()) {
+                return false;
+            }
+            for(int i = 0; i < text.length(); i++) {
+                if(text.charAt(i) != other.charAt(start + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
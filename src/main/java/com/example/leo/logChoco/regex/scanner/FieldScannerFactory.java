@@ -0,0 +1,22 @@
+package com.example.leo.logChoco.regex.scanner;
+
+import com.example.leo.logChoco.regex.FieldType;
+
+public class FieldScannerFactory {
+
+    public static AbstractFieldScanner getFieldScanner(FieldType type) {
+
+        AbstractFieldScanner scanner = switch(type) {
+            case INTEGER -> new IntegerFieldScanner();
+            case IPV4 -> new IPv4FieldScanner();
+            case BOOLEAN -> new BooleanFieldScanner();
+            case DATE -> new DateFieldScanner();
+            case ALPHABET -> new AlphabetFieldScanner();
+            case FLOAT -> new FloatFieldScanner();
+            case ANYTHING -> new AnythingFieldScanner();
+            default -> new AnythingFieldScanner();
+        };
+
+        return scanner;
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.leo.logChoco.regex.scanner;
+
+/**
+ * Base class for splitting a log into columns when fields are not simply divided by delimiter.
+ * Each column is found as a range of the log text in one pass, so no string is created for it.
+ * It has no state, so many threads can use it at once.
+ * */
+abstract public class FieldTokenizer {
+
+    protected final String delimiter;
+    protected final char quote;
+
+    protected FieldTokenizer(String delimiter, char quote) {
+        this.delimiter = delimiter;
+        this.quote = quote;
+    }
+
+    /**
+     * Find range of each column in text between from and to, and save it at base + column of starts and ends.
+     * Quotes around a value are not in its range. Column that is not found is an empty range.
+     * @return false if text can't be split in this way
+     * */
+    abstract public boolean split(CharSequence text, int from, int to, int[] starts, int[] ends, int base);
+
+    /**
+     * Return index of quote that closes a value starting at from, or -1 if there is none.
+     * Quote after backslash and doubled quote are part of the value.
+     * */
+    protected int indexOfClosingQuote(CharSequence text, int from, int to) {
+        for(int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if(c == '\\') {
+                i++;
+            } else if(c == quote) {
+                if(i + 1 < to && text.charAt(i + 1) == quote) {
+                    i++;
+                } else {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Return true if word is at index of text.
+     * */
+    protected static boolean startsWith(CharSequence text, int index, int to, String word) {
+        if(text.charAt(index) != word.charAt(0) || index + word.length() > to) {
+            return false;
+        }
+        for(int k = 1; k < word.length(); k++) {
+            if(text.charAt(index + k) != word.charAt(k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return index of word between from and to of text, or -1 if there is none.
+     * */
+    protected static int indexOf(CharSequence text, int from, int to, String word) {
+        for(int i = from; i < to; i++) {
+            if(startsWith(text, i, to, word)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
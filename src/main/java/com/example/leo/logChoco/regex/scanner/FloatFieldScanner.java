@@ -0,0 +1,75 @@
+package com.example.leo.logChoco.regex.scanner;
+
+/**
+ * Scanner for float with exactly one '.'. Value is bits of double, see Double.longBitsToDouble
+ * */
+public class FloatFieldScanner extends AbstractFieldScanner {
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9,
+            1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18
+    };
+
+    @Override
+    protected boolean scan(CharSequence text, int start, int end) {
+        int i = start;
+        if(text.charAt(i) == '+' || text.charAt(i) == '-') {
+            i++;
+        }
+
+        boolean hasDot = false;
+        int fractionDigits = 0;
+        for(; i < end; i++) {
+            char c = text.charAt(i);
+            if(c == '.' && !hasDot) {
+                hasDot = true;
+            } else if(!isDigit(c)) {
+                return false;
+            } else if(hasDot) {
+                fractionDigits++;
+            }
+        }
+        return hasDot && fractionDigits > 0;
+    }
+
+    @Override
+    public long parse(CharSequence text, int start, int end) {
+        int i = start;
+        boolean isNegative = text.charAt(i) == '-';
+        if(text.charAt(i) == '+' || text.charAt(i) == '-') {
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean afterDot = false;
+        boolean isExact = true;
+
+        for(; i < end; i++) {
+            char c = text.charAt(i);
+            if(c == '.') {
+                afterDot = true;
+                continue;
+            }
+            if(digits >= POWERS_OF_TEN.length - 1) {
+                isExact = false;
+                break;
+            }
+            mantissa = mantissa * 10 + (c - '0');
+            digits++;
+            if(afterDot) {
+                scale++;
+            }
+        }
+
+        double value = isExact ? mantissa / POWERS_OF_TEN[scale]
+                : Double.parseDouble(text.subSequence(start, end).toString());
+        return Double.doubleToRawLongBits(isNegative && isExact ? -value : value);
+    }
+
+    @Override
+    public Object toObject(long value) {
+        return Double.longBitsToDouble(value);
+    }
+}
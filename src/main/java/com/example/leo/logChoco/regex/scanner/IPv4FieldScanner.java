@@ -0,0 +1,54 @@
+package com.example.leo.logChoco.regex.scanner;
+
+/**
+ * Scanner for IPv4 address. Value is the address as int, e.g. 10.0.0.1 -> 0x0A000001
+ * */
+public class IPv4FieldScanner extends AbstractFieldScanner {
+
+    @Override
+    protected boolean scan(CharSequence text, int start, int end) {
+        return toInt(text, start, end) != -1L;
+    }
+
+    @Override
+    public long parse(CharSequence text, int start, int end) {
+        return toInt(text, start, end);
+    }
+
+    /**
+     * Return address as unsigned int, or -1 if not valid.
+     * */
+    private long toInt(CharSequence text, int start, int end) {
+        long address = 0;
+        int octets = 0;
+        int i = start;
+
+        while(octets < 4) {
+            int value = 0;
+            int digits = 0;
+            while(i < end && isDigit(text.charAt(i)) && digits < 3) {
+                value = value * 10 + (text.charAt(i) - '0');
+                digits++;
+                i++;
+            }
+            if(digits == 0 || value > 255) {
+                return -1L;
+            }
+            address = (address << 8) | value;
+            octets++;
+
+            if(octets < 4) {
+                if(i >= end || text.charAt(i) != '.') {
+                    return -1L;
+                }
+                i++;
+            }
+        }
+        return i == end ? address : -1L;
+    }
+
+    @Override
+    public Object toObject(long value) {
+        return (value >>> 24 & 0xFF) + "." + (value >>> 16 & 0xFF) + "." + (value >>> 8 & 0xFF) + "." + (value & 0xFF);
+    }
+}
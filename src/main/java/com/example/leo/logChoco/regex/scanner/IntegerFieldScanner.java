@@ -0,0 +1,82 @@
+package com.example.leo.logChoco.regex.scanner;
+
+/**
+ * Scanner for integer. Value is the number itself.
+ * Length options limit the number of digits, not counting sign.
+ * */
+public class IntegerFieldScanner extends AbstractFieldScanner {
+
+    // max number of digits that always fits in long.
+    private final int MAX_SAFE_DIGITS = 18;
+
+    private int minLength = 1;
+    private int maxLength = Integer.MAX_VALUE;
+    private boolean isExactLength = false;
+
+    @Override
+    protected boolean scan(CharSequence text, int start, int end) {
+        int i = skipSign(text, start, end);
+        int digits = end - i;
+
+        if(digits < minLength || digits > maxLength) {
+            return false;
+        }
+        for(; i < end; i++) {
+            if(!isDigit(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public long parse(CharSequence text, int start, int end) {
+        int i = skipSign(text, start, end);
+        boolean isNegative = i > start;
+
+        if(end - i > MAX_SAFE_DIGITS) {
+            return isNegative ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+
+        long value = 0;
+        for(; i < end; i++) {
+            value = value * 10 + (text.charAt(i) - '0');
+        }
+        return isNegative ? -value : value;
+    }
+
+    // same with regex of integer, which allows one or more '-'.
+    private int skipSign(CharSequence text, int start, int end) {
+        int i = start;
+        while(i < end && text.charAt(i) == '-') {
+            i++;
+        }
+        return i;
+    }
+
+    // same with regex builder, exact length is removed when min or max length is set.
+    @Override
+    protected void setExactLengthIfSupported(int length) {
+        minLength = length;
+        maxLength = length;
+        isExactLength = true;
+    }
+
+    @Override
+    protected void setMaxLengthIfSupported(int length) {
+        if(isExactLength) {
+            minLength = 1;
+            isExactLength = false;
+        }
+        maxLength = length;
+    }
+
+    @Override
+    protected void setMinLengthIfSupported(int length) {
+        if(isExactLength) {
+            maxLength = Integer.MAX_VALUE;
+            isExactLength = false;
+        }
+        minLength = length;
+    }
+}
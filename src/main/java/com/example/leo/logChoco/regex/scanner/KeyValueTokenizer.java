@@ -0,0 +1,125 @@
+package com.example.leo.logChoco.regex.scanner;
+
+import java.util.List;
+
+/**
+ * Tokenizer of key and value pairs in any order, e.g. src=10.0.0.1 dst=10.0.0.2 msg="login failed".
+ * Pairs are divided by delimiter, and a value in quotes can have delimiter in it.
+ * Each key is mapped onto column of the same name. Keys that are not columns are skipped.
+ * */
+public class KeyValueTokenizer extends FieldTokenizer {
+
+    private final String separator;
+    private final int columnCount;
+
+    // open addressing table of column names. hash of a key is made while it is read, so no string is created for it.
+    private final String[] keys;
+    private final int[] columnIndexes;
+    private final int mask;
+
+    public KeyValueTokenizer(String delimiter, String separator, char quote, List<String> columns) {
+        super(delimiter, quote);
+        this.separator = separator;
+        this.columnCount = columns.size();
+
+        int capacity = Integer.highestOneBit(Math.max(columnCount, 1) * 2) * 2;
+        this.keys = new String[capacity];
+        this.columnIndexes = new int[capacity];
+        this.mask = capacity - 1;
+        for(int i = 0; i < columnCount; i++) {
+            String column = columns.get(i);
+            int slot = spread(column.hashCode()) & mask;
+            while(keys[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = column;
+            columnIndexes[slot] = i;
+        }
+    }
+
+    @Override
+    public boolean split(CharSequence text, int from, int to, int[] starts, int[] ends, int base) {
+        for(int i = 0; i < columnCount; i++) {
+            starts[base + i] = to;
+            ends[base + i] = to;
+        }
+
+        int position = from;
+        while(position < to) {
+            if(startsWith(text, position, to, delimiter)) {
+                position += delimiter.length();
+                continue;
+            }
+
+            // read key until separator. a token without separator is not a pair.
+            int keyEnd = -1;
+            int hash = 0;
+            for(int i = position; i < to; i++) {
+                if(startsWith(text, i, to, separator)) {
+                    keyEnd = i;
+                    break;
+                }
+                if(startsWith(text, i, to, delimiter)) {
+                    return false;
+                }
+                hash = 31 * hash + text.charAt(i);
+            }
+            if(keyEnd < 0) {
+                return false;
+            }
+            int column = findColumn(text, position, keyEnd, hash);
+
+            int valueStart = keyEnd + separator.length();
+            int valueEnd;
+            if(valueStart < to && text.charAt(valueStart) == quote) {
+                int closing = indexOfClosingQuote(text, valueStart + 1, to);
+                if(closing < 0 || (closing + 1 < to && !startsWith(text, closing + 1, to, delimiter))) {
+                    return false;
+                }
+                valueStart++;
+                valueEnd = closing;
+                position = closing + 1;
+            } else {
+                valueEnd = indexOf(text, valueStart, to, delimiter);
+                if(valueEnd < 0) {
+                    valueEnd = to;
+                }
+                position = valueEnd;
+            }
+
+            if(column >= 0) {
+                starts[base + column] = valueStart;
+                ends[base + column] = valueEnd;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return index of column whose name is text between start and end, or -1 if there is none.
+     * */
+    private int findColumn(CharSequence text, int start, int end, int hash) {
+        int slot = spread(hash) & mask;
+        String key;
+        while((key = keys[slot]) != null) {
+            if(key.hashCode() == hash && key.length() == end - start && equals(key, text, start)) {
+                return columnIndexes[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private static boolean equals(String key, CharSequence text, int start) {
+        for(int i = 0; i < key.length(); i++) {
+            if(key.charAt(i) != text.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
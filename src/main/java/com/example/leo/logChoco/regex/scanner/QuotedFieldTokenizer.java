@@ -0,0 +1,46 @@
+package com.example.leo.logChoco.regex.scanner;
+
+/**
+ * Tokenizer of positional fields divided by delimiter, like CSV. A field in quotes can have delimiter in it.
+ * Last field takes the rest of log like SCANNER mode.
+ * */
+public class QuotedFieldTokenizer extends FieldTokenizer {
+
+    private final int fieldCount;
+
+    public QuotedFieldTokenizer(String delimiter, char quote, int fieldCount) {
+        super(delimiter, quote);
+        this.fieldCount = fieldCount;
+    }
+
+    @Override
+    public boolean split(CharSequence text, int from, int to, int[] starts, int[] ends, int base) {
+        int start = from;
+        for(int i = 0; i < fieldCount; i++) {
+            boolean isLast = i == fieldCount - 1;
+
+            if(start < to && text.charAt(start) == quote) {
+                int closing = indexOfClosingQuote(text, start + 1, to);
+                int next = closing + 1;
+                if(closing >= 0 && (isLast ? next == to : next < to && startsWith(text, next, to, delimiter))) {
+                    starts[base + i] = start + 1;
+                    ends[base + i] = closing;
+                    start = next + delimiter.length();
+                    continue;
+                }
+                if(!isLast) {
+                    return false;
+                }
+            }
+
+            int end = isLast ? to : indexOf(text, start, to, delimiter);
+            if(end < 0) {
+                return false;
+            }
+            starts[base + i] = start;
+            ends[base + i] = end;
+            start = end + delimiter.length();
+        }
+        return true;
+    }
+}
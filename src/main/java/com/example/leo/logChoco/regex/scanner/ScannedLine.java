@@ -0,0 +1,48 @@
+package com.example.leo.logChoco.regex.scanner;
+
+import lombok.Getter;
+
+/**
+ * Class that has position and typed value of each field of one log.
+ * It is reused for many logs to avoid allocation, so values are valid until next scan.
+ * */
+@Getter
+public class ScannedLine {
+
+    private int fieldCount;
+    // start and end index of each field in log text.
+    private int[] starts;
+    private int[] ends;
+    // typed value of each field. see each scanner for how it is encoded.
+    private long[] values;
+    // false if field is empty or has no typed value.
+    private boolean[] hasValues;
+
+    public ScannedLine(int capacity) {
+        ensureCapacity(capacity);
+    }
+
+    /**
+     * Clear and prepare for a log with given number of fields.
+     * */
+    public void reset(int fieldCount) {
+        ensureCapacity(fieldCount);
+        this.fieldCount = fieldCount;
+    }
+
+    public void set(int index, int start, int end, long value, boolean hasValue) {
+        starts[index] = start;
+        ends[index] = end;
+        values[index] = value;
+        hasValues[index] = hasValue;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if(starts == null || starts.length < capacity) {
+            starts = new int[capacity];
+            ends = new int[capacity];
+            values = new long[capacity];
+            hasValues = new boolean[capacity];
+        }
+    }
+}
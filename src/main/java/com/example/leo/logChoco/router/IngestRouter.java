@@ -0,0 +1,31 @@
+package com.example.leo.logChoco.router;
+
+import com.example.leo.logChoco.entity.log.LogInfo;
+import com.example.leo.logChoco.router.handler.IngestHandler;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import java.util.function.Consumer;
+
+/**
+ * Routes for inbound logs over HTTP.
+ * They are served on port of each HTTP receive-server, not on port of web server, so they are not a bean.
+ * */
+@Component
+@RequiredArgsConstructor
+public class IngestRouter {
+
+    private final IngestHandler ingestHandler;
+
+    /**
+     * @param next gives each log to pipeline as log of the receive-server
+     * */
+    public RouterFunction<ServerResponse> ingestRouterInfo(Consumer<LogInfo> next) {
+        return RouterFunctions.route()
+                .POST("/ingest", request -> ingestHandler.ingest(request, next))
+                .build();
+    }
+}
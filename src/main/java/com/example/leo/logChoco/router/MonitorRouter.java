@@ -14,6 +14,12 @@ public class MonitorRouter {
     public RouterFunction<ServerResponse> monitorRouterInfo(MonitorHandler monitorHandler) {
         return RouterFunctions.route()
                 .GET("/monitor/inbound/log", request -> monitorHandler.getInboundMonitor(request))
+                .GET("/monitor/format/profile", request -> monitorHandler.getFormatProfile(request))
+                .GET("/monitor/format/reload", request -> monitorHandler.getFormatReload(request))
+                .GET("/monitor/tail", request -> monitorHandler.getLiveTail(request))
+                .GET("/monitor/lanes", request -> monitorHandler.getLanes(request))
+                .GET("/monitor/routes", request -> monitorHandler.getRoutes(request))
+                .GET("/monitor/dedup", request -> monitorHandler.getDedup(request))
                 .build();
     }
 }
@@ -15,6 +15,10 @@ public class SettingRouter {
     public RouterFunction<ServerResponse> settingRouterInfo(SettingHandler settingHandler) {
         return RouterFunctions.route()
                 .GET("/setting/log/file", request -> settingHandler.getFileList(request))
+                .GET("/setting/log/file/staged", request -> settingHandler.getStagedFile(request))
+                .PUT("/setting/log/file/staged", request -> settingHandler.stageFile(request))
+                .POST("/setting/log/file/apply", request -> settingHandler.applyStagedFile(request))
+                .POST("/setting/format/test", request -> settingHandler.testFormat(request))
                 .build();
     }
 }
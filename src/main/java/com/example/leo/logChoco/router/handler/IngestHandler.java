@@ -0,0 +1,89 @@
+package com.example.leo.logChoco.router.handler;
+
+import com.example.leo.logChoco.entity.log.LogInfo;
+import com.example.leo.logChoco.inbound.LineSplitter;
+import com.example.leo.logChoco.service.PatternInfoService;
+import io.netty.handler.codec.compression.DecompressionException;
+import io.netty.handler.codec.compression.ZlibWrapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyExtractors;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.function.Consumer;
+
+@Component
+@RequiredArgsConstructor
+public class IngestHandler {
+    private final PatternInfoService patternInfoService;
+
+    // reading body waits while the lane of source has more logs than this in queue.
+    private final long MAX_QUEUED_LOGS = 100_000;
+    private final Duration BACKLOG_CHECK_INTERVAL = Duration.ofMillis(10);
+
+    /**
+     * Give each line of request body to pipeline as inbound log, and return accepted and rejected count.
+     * Body is read buffer by buffer, and next buffer is not read while the lane is backed up.
+     * Content-Encoding can be gzip or deflate. For application/x-ndjson, log is read from field in query parameter. (default : log)
+     * */
+    public Mono<ServerResponse> ingest(ServerRequest request, Consumer<LogInfo> next) {
+
+        ZlibWrapper wrapper;
+        String encoding = request.headers().firstHeader(HttpHeaders.CONTENT_ENCODING);
+        if(encoding == null || encoding.equalsIgnoreCase("identity")) {
+            wrapper = null;
+        } else if(encoding.equalsIgnoreCase("gzip") || encoding.equalsIgnoreCase("x-gzip")) {
+            wrapper = ZlibWrapper.GZIP;
+        } else if(encoding.equalsIgnoreCase("deflate")) {
+            wrapper = ZlibWrapper.ZLIB_OR_NONE;
+        } else {
+            return ServerResponse.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE).bodyValue("Content-Encoding " + encoding + " is not supported");
+        }
+
+        boolean isNdjson = request.headers().contentType()
+                .map(type -> type.isCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .orElse(false);
+        String jsonField = isNdjson ? request.queryParam("field").orElse("log") : null;
+
+        InetSocketAddress remote = request.remoteAddress().orElse(null);
+        byte[] address = remote == null || remote.getAddress() == null ? null : remote.getAddress().getAddress();
+        String ip = address == null ? "unknown" : remote.getAddress().getHostAddress();
+        int port = remote == null ? 0 : remote.getPort();
+
+        LineSplitter splitter = new LineSplitter(next, address, ip, port, wrapper, jsonField);
+
+        return request.body(BodyExtractors.toDataBuffers())
+                .concatMap(dataBuffer -> {
+                    try {
+                        splitter.write(NettyDataBufferFactory.toByteBuf(dataBuffer));
+                    } finally {
+                        DataBufferUtils.release(dataBuffer);
+                    }
+                    return waitForLane(ip);
+                })
+                .then(Mono.fromCallable(splitter::finish))
+                .flatMap(result -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(result))
+                .onErrorResume(DecompressionException.class,
+                        e -> ServerResponse.badRequest().bodyValue("Failed to decompress body. " + e.getMessage()))
+                .doFinally(signal -> splitter.release());
+    }
+
+    private Mono<Void> waitForLane(String ip) {
+        if(patternInfoService.getQueuedCount(ip) < MAX_QUEUED_LOGS) {
+            return Mono.empty();
+        }
+        return Flux.interval(BACKLOG_CHECK_INTERVAL)
+                .takeUntil(t -> patternInfoService.getQueuedCount(ip) < MAX_QUEUED_LOGS)
+                .then();
+    }
+}
@@ -1,7 +1,14 @@
 package com.example.leo.logChoco.router.handler;
 
+import com.example.leo.logChoco.entity.LaneInfo;
+import com.example.leo.logChoco.entity.RouteTable;
 import com.example.leo.logChoco.entity.MonitorInfo;
+import com.example.leo.logChoco.entity.TailEvent;
+import com.example.leo.logChoco.entity.TailFilter;
+import com.example.leo.logChoco.service.DedupService;
 import com.example.leo.logChoco.service.MonitorService;
+import com.example.leo.logChoco.service.PatternInfoService;
+import com.example.leo.logChoco.service.TailService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
@@ -11,12 +18,19 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 @Component
 @RequiredArgsConstructor
 public class MonitorHandler {
     private final MonitorService monitorService;
+    private final TailService tailService;
+    private final PatternInfoService patternInfoService;
+    private final DedupService dedupService;
 
     public Mono<ServerResponse> getInboundMonitor(ServerRequest request) {
 
@@ -25,4 +39,82 @@ public class MonitorHandler {
                     return monitorService.getInboundMonitorInfo();
                 }), Map.class);
     }
+
+    /**
+     * Return match count and cost of each format and sample of unmatched logs.
+     * */
+    public Mono<ServerResponse> getFormatProfile(ServerRequest request) {
+
+        return ServerResponse.ok().contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(monitorService.getFormatProfileInfo(patternInfoService.getFieldInfoList()));
+    }
+
+    /**
+     * Return result of reloading setting file for log format.
+     * */
+    public Mono<ServerResponse> getFormatReload(ServerRequest request) {
+
+        return ServerResponse.ok().contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(patternInfoService.getReloadInfo());
+    }
+
+    /**
+     * Stream inbound logs that pass the filter in query parameters.
+     * parameters : ip, format, eventId, regex, sample
+     * */
+    public Mono<ServerResponse> getLiveTail(ServerRequest request) {
+
+        TailFilter filter = new TailFilter();
+        try {
+            request.queryParam("ip").ifPresent(filter::setIp);
+            request.queryParam("format").map(Integer::parseInt).ifPresent(filter::setFormatIndex);
+            request.queryParam("eventId").ifPresent(filter::setEventId);
+            request.queryParam("regex").map(Pattern::compile).ifPresent(filter::setRawPattern);
+            request.queryParam("sample").map(Double::parseDouble).ifPresent(filter::setSampleRate);
+        } catch (NumberFormatException | PatternSyntaxException e) {
+            return ServerResponse.badRequest().bodyValue(e.getMessage());
+        }
+
+        return ServerResponse.ok().contentType(MediaType.TEXT_EVENT_STREAM)
+                .body(tailService.subscribe(filter), TailEvent.class);
+    }
+
+    /**
+     * Return count of each pipeline lane and skew between lanes.
+     * skew is received count of the busiest lane divided by average. 1.0 means logs are spread evenly.
+     * */
+    public Mono<ServerResponse> getLanes(ServerRequest request) {
+        List<LaneInfo> lanes = patternInfoService.getLaneInfoList();
+        long max = lanes.stream().mapToLong(LaneInfo::getReceived).max().orElse(0);
+        double average = lanes.stream().mapToLong(LaneInfo::getReceived).average().orElse(0);
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("lanes", lanes);
+        result.put("skew", average > 0 ? max / average : 1.0);
+
+        return ServerResponse.ok().contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(result);
+    }
+
+    /**
+     * Return hit count of each route and count of logs that match no route, since formats are loaded.
+     * */
+    public Mono<ServerResponse> getRoutes(ServerRequest request) {
+        RouteTable routeTable = patternInfoService.getSnapshot().getRouteTable();
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("routes", routeTable.getRoutes());
+        result.put("unrouted", routeTable.getUnroutedCount());
+
+        return ServerResponse.ok().contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(result);
+    }
+
+    /**
+     * Return how many logs are collapsed by dedupColumns of formats.
+     * */
+    public Mono<ServerResponse> getDedup(ServerRequest request) {
+        return ServerResponse.ok().contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(dedupService.getDedupStat());
+    }
 }
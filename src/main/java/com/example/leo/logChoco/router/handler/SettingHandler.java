@@ -1,23 +1,24 @@
 package com.example.leo.logChoco.router.handler;
 
-import com.example.leo.logChoco.config.LogChocoConfig;
+import com.example.leo.logChoco.entity.FormatSetting;
+import com.example.leo.logChoco.entity.FormatTestRequest;
+import com.example.leo.logChoco.exception.InvalidLogFormatException;
+import com.example.leo.logChoco.service.FormatTestService;
+import com.example.leo.logChoco.service.PatternInfoService;
 import com.example.leo.logChoco.service.SettingService;
 import lombok.RequiredArgsConstructor;
-import org.springframework.core.io.buffer.DataBuffer;
-import org.springframework.core.io.buffer.DataBufferUtils;
-import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.server.ServerRequest;
 import org.springframework.web.reactive.function.server.ServerResponse;
-import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
-import java.nio.channels.AsynchronousChannel;
-import java.nio.channels.AsynchronousFileChannel;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Component
@@ -25,12 +26,131 @@ import java.util.Map;
 public class SettingHandler {
 
     private final SettingService settingService;
+    private final PatternInfoService patternInfoService;
+    private final FormatTestService formatTestService;
 
+    /**
+     * Return setting that formats in use are compiled from. it is not the setting file if the file failed to reload.
+     * Return 304 if it is not changed since any ETag in If-None-Match header.
+     * */
     public Mono<ServerResponse> getFileList(ServerRequest request) {
 
-        String formatSetting = settingService.getFormatSetting();
+        return settingService.getActiveFormatSetting()
+                .flatMap(setting -> {
+                    String eTag = toETag(setting);
+                    List<String> hashes = toHashes(request.headers().asHttpHeaders(), HttpHeaders.IF_NONE_MATCH, true);
 
-        return ServerResponse.ok().contentType(MediaType.APPLICATION_JSON)
-                .body(Flux.just(formatSetting), Map.class);
+                    if(hashes == null || hashes.contains(setting.getHash())) {
+                        return ServerResponse.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+                    }
+                    return ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).eTag(eTag)
+                            .header("X-Format-Version", String.valueOf(setting.getVersion()))
+                            .bodyValue(setting.getContent());
+                })
+                .switchIfEmpty(ServerResponse.notFound().build());
+    }
+
+    /**
+     * Return formats that are staged but not applied yet.
+     * */
+    public Mono<ServerResponse> getStagedFile(ServerRequest request) {
+
+        return settingService.getStagedFormatSetting()
+                .flatMap(setting -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).eTag(toETag(setting))
+                        .bodyValue(setting.getContent()))
+                .switchIfEmpty(ServerResponse.notFound().build());
+    }
+
+    /**
+     * Validate formats in request body and stage them.
+     * Return 400 with reason if any format is not valid.
+     * */
+    public Mono<ServerResponse> stageFile(ServerRequest request) {
+
+        return request.bodyToMono(String.class)
+                .defaultIfEmpty("")
+                .flatMap(settingService::stageFormatSetting)
+                .flatMap(setting -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).eTag(toETag(setting))
+                        .bodyValue(toResult(setting)))
+                .onErrorResume(InvalidLogFormatException.class,
+                        e -> ServerResponse.badRequest().bodyValue(e.getMessage()));
+    }
+
+    /**
+     * Write staged formats to setting file and reload them.
+     * If-Match header can be given with ETag of setting file to prevent overwriting other changes.
+     * Return 500 with reload info if the file is written but formats failed to reload.
+     * */
+    public Mono<ServerResponse> applyStagedFile(ServerRequest request) {
+
+        HttpHeaders headers = request.headers().asHttpHeaders();
+        List<String> expectedHashes = headers.containsKey(HttpHeaders.IF_MATCH)
+                ? toHashes(headers, HttpHeaders.IF_MATCH, false) : null;
+
+        return settingService.applyStagedFormatSetting(expectedHashes)
+                .flatMap(setting -> Mono.fromCallable(patternInfoService::reloadRegexSetting)
+                        .subscribeOn(Schedulers.boundedElastic()))
+                .flatMap(isReloaded -> ServerResponse.status(isReloaded ? HttpStatus.OK : HttpStatus.INTERNAL_SERVER_ERROR)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(patternInfoService.getReloadInfo()))
+                .onErrorResume(InvalidLogFormatException.class,
+                        e -> ServerResponse.badRequest().bodyValue(e.getMessage()))
+                .onErrorResume(IllegalStateException.class,
+                        e -> ServerResponse.status(HttpStatus.PRECONDITION_FAILED).bodyValue(e.getMessage()));
+    }
+
+    /**
+     * Dry-run candidate format in request body against sample logs.
+     * Return which logs matched, throughput and inputs that cause backtracking.
+     * */
+    public Mono<ServerResponse> testFormat(ServerRequest request) {
+
+        return request.bodyToMono(FormatTestRequest.class)
+                .switchIfEmpty(Mono.error(new InvalidLogFormatException("Request body is empty")))
+                .flatMap(testRequest -> Mono.fromCallable(() -> formatTestService.test(testRequest))
+                        .subscribeOn(Schedulers.boundedElastic()))
+                .flatMap(result -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(result))
+                .onErrorResume(InvalidLogFormatException.class,
+                        e -> ServerResponse.badRequest().bodyValue(e.getMessage()));
+    }
+
+    private String toETag(FormatSetting setting) {
+        return "\"" + setting.getHash() + "\"";
+    }
+
+    /**
+     * Return hashes in entity tags of If-None-Match or If-Match header, which can be a list like W/"a", "b".
+     * Weak tags are compared only if weak is true, as If-Match needs strong comparison.
+     * Return null if header is "*" which matches any, and empty list if header is not given or can't be parsed.
+     * */
+    private List<String> toHashes(HttpHeaders headers, String headerName, boolean weak) {
+        List<String> eTags;
+        try {
+            eTags = headerName.equals(HttpHeaders.IF_MATCH) ? headers.getIfMatch() : headers.getIfNoneMatch();
+        } catch (IllegalArgumentException e) {
+            return List.of();
+        }
+
+        List<String> hashes = new ArrayList<>();
+        for(String eTag : eTags) {
+            if(eTag.equals("*")) {
+                return null;
+            }
+            if(eTag.startsWith("W/")) {
+                if(!weak) {
+                    continue;
+                }
+                eTag = eTag.substring(2);
+            }
+            hashes.add(eTag.replace("\"", ""));
+        }
+        return hashes;
+    }
+
+    private Map<String, Object> toResult(FormatSetting setting) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("hash", setting.getHash());
+        result.put("version", setting.getVersion());
+        return result;
     }
 }
@@ -0,0 +1,39 @@
+package com.example.leo.logChoco.rule;
+
+import com.example.leo.logChoco.entity.log.LogBatch;
+import lombok.Getter;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rule of a format that drops matched logs before they are formatted.
+ * */
+public class DropRule {
+
+    // as it is written in format.
+    @Getter
+    private final String expression;
+    private final FieldPredicate predicate;
+    // logs dropped by this rule since formats are loaded.
+    private final LongAdder hits = new LongAdder();
+
+    public DropRule(String expression, FieldPredicate predicate) {
+        this.expression = expression;
+        this.predicate = predicate;
+    }
+
+    /**
+     * Return true and count it if a line is dropped by this rule.
+     * */
+    public boolean drops(LogBatch batch, int line) {
+        if(predicate.test(batch, line)) {
+            hits.increment();
+            return true;
+        }
+        return false;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.leo.logChoco.rule;
+
+import com.example.leo.logChoco.entity.log.LogBatch;
+
+/**
+ * Condition on fields of a line of batch. Fields of the line must be split already.
+ * */
+@FunctionalInterface
+public interface FieldPredicate {
+
+    boolean test(LogBatch batch, int line);
+
+    default FieldPredicate and(FieldPredicate other) {
+        return (batch, line) -> test(batch, line) && other.test(batch, line);
+    }
+
+    default FieldPredicate or(FieldPredicate other) {
+        return (batch, line) -> test(batch, line) || other.test(batch, line);
+    }
+
+    default FieldPredicate negate() {
+        return (batch, line) -> !test(batch, line);
+    }
+}
@@ -0,0 +1,261 @@
+package com.example.leo.logChoco.rule;
+
+import com.example.leo.logChoco.entity.ReadFieldInfo;
+import com.example.leo.logChoco.exception.InvalidLogFormatException;
+import com.example.leo.logChoco.regex.scanner.AbstractFieldScanner;
+import com.example.leo.logChoco.regex.scanner.FloatFieldScanner;
+import com.example.leo.logChoco.regex.scanner.IPv4FieldScanner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Class that compiles an expression of a drop rule into predicates on fields of a format.
+ * Literals are read once by scanner of their column, so a log is checked by comparing typed values without parsing.
+ * <pre>
+ * expression := and ('or' and)*
+ * and        := not ('and' not)*
+ * not        := 'not' not | '(' expression ')' | comparison
+ * comparison := column ('==' | '!=' | '<' | '<=' | '>' | '>=') literal
+ *             | column 'in' '{' literal (',' literal)* '}'
+ *             | column 'in' address/prefix
+ * </pre>
+ * e.g. serverity < 3 and critical == false, dport in {53,123}, sip in 10.0.0.0/8
+ * Literal with space or symbols is written in quotes. Columns without typed value, like STRING, support only ==, != and in {}.
+ * A comparison on a field that has no typed value is false.
+ * It is made for one expression, and is not thread safe.
+ * */
+public class RuleCompiler {
+
+    private final String SYMBOLS = "(){},<>=!";
+
+    private final String expression;
+    private final ReadFieldInfo fieldInfo;
+    private final List<String> tokens;
+    // true for tokens that were in quotes, so they are never keywords.
+    private final List<Boolean> quoted = new ArrayList<>();
+    private int position = 0;
+
+    private RuleCompiler(String expression, ReadFieldInfo fieldInfo) throws InvalidLogFormatException {
+        this.expression = expression;
+        this.fieldInfo = fieldInfo;
+        this.tokens = tokenize(expression);
+    }
+
+    /**
+     * Compile expression into a drop rule for columns of format. Field scanners of format must be built already.
+     * */
+    public static DropRule compile(String expression, ReadFieldInfo fieldInfo) throws InvalidLogFormatException {
+        RuleCompiler compiler = new RuleCompiler(expression, fieldInfo);
+        FieldPredicate predicate = compiler.parseOr();
+        if(compiler.position < compiler.tokens.size()) {
+            throw compiler.error("Unexpected '" + compiler.tokens.get(compiler.position) + "'");
+        }
+        return new DropRule(expression, predicate);
+    }
+
+    private FieldPredicate parseOr() throws InvalidLogFormatException {
+        FieldPredicate predicate = parseAnd();
+        while(acceptKeyword("or")) {
+            predicate = predicate.or(parseAnd());
+        }
+        return predicate;
+    }
+
+    private FieldPredicate parseAnd() throws InvalidLogFormatException {
+        FieldPredicate predicate = parseNot();
+        while(acceptKeyword("and")) {
+            predicate = predicate.and(parseNot());
+        }
+        return predicate;
+    }
+
+    private FieldPredicate parseNot() throws InvalidLogFormatException {
+        if(acceptKeyword("not")) {
+            return parseNot().negate();
+        }
+        if(accept("(")) {
+            FieldPredicate predicate = parseOr();
+            expect(")");
+            return predicate;
+        }
+        return parseComparison();
+    }
+
+    private FieldPredicate parseComparison() throws InvalidLogFormatException {
+        String column = next("column");
+        int field = fieldInfo.getColumns().indexOf(column);
+        if(field < 0) {
+            throw error("Column " + column + " does not exist");
+        }
+        AbstractFieldScanner scanner = fieldInfo.getFieldScanners()[field];
+
+        if(acceptKeyword("in")) {
+            if(accept("{")) {
+                List<String> literals = new ArrayList<>();
+                do {
+                    literals.add(next("value"));
+                } while(accept(","));
+                expect("}");
+                return scanner.isTyped() ? inValues(field, scanner, literals) : inTexts(field, literals);
+            }
+            return inNetwork(field, scanner, next("address/prefix"));
+        }
+
+        String operator = next("operator");
+        if(!Arrays.asList("==", "!=", "<", "<=", ">", ">=").contains(operator)) {
+            throw error("Operator " + operator + " is not supported");
+        }
+        String literal = next("value");
+
+        if(!scanner.isTyped()) {
+            if(operator.equals("==")) {
+                return (batch, line) -> batch.fieldEquals(line, field, literal);
+            } else if(operator.equals("!=")) {
+                return (batch, line) -> !batch.fieldEquals(line, field, literal);
+            }
+            throw error("Column " + column + " has no typed value. only ==, != and in {} are supported");
+        }
+
+        long value = toValue(scanner, literal, column);
+        if(scanner instanceof FloatFieldScanner) {
+            double number = Double.longBitsToDouble(value);
+            return switch (operator) {
+                case "==" -> (batch, line) -> batch.hasFieldValue(line, field) && toDouble(batch.getFieldValue(line, field)) == number;
+                case "!=" -> (batch, line) -> batch.hasFieldValue(line, field) && toDouble(batch.getFieldValue(line, field)) != number;
+                case "<" -> (batch, line) -> batch.hasFieldValue(line, field) && toDouble(batch.getFieldValue(line, field)) < number;
+                case "<=" -> (batch, line) -> batch.hasFieldValue(line, field) && toDouble(batch.getFieldValue(line, field)) <= number;
+                case ">" -> (batch, line) -> batch.hasFieldValue(line, field) && toDouble(batch.getFieldValue(line, field)) > number;
+                default -> (batch, line) -> batch.hasFieldValue(line, field) && toDouble(batch.getFieldValue(line, field)) >= number;
+            };
+        }
+        return switch (operator) {
+            case "==" -> (batch, line) -> batch.hasFieldValue(line, field) && batch.getFieldValue(line, field) == value;
+            case "!=" -> (batch, line) -> batch.hasFieldValue(line, field) && batch.getFieldValue(line, field) != value;
+            case "<" -> (batch, line) -> batch.hasFieldValue(line, field) && batch.getFieldValue(line, field) < value;
+            case "<=" -> (batch, line) -> batch.hasFieldValue(line, field) && batch.getFieldValue(line, field) <= value;
+            case ">" -> (batch, line) -> batch.hasFieldValue(line, field) && batch.getFieldValue(line, field) > value;
+            default -> (batch, line) -> batch.hasFieldValue(line, field) && batch.getFieldValue(line, field) >= value;
+        };
+    }
+
+    private FieldPredicate inValues(int field, AbstractFieldScanner scanner, List<String> literals) throws InvalidLogFormatException {
+        long[] values = new long[literals.size()];
+        for(int i = 0; i < values.length; i++) {
+            values[i] = toValue(scanner, literals.get(i), fieldInfo.getColumns().get(field));
+        }
+        long[] sorted = Arrays.stream(values).sorted().distinct().toArray();
+        return (batch, line) -> batch.hasFieldValue(line, field) && Arrays.binarySearch(sorted, batch.getFieldValue(line, field)) >= 0;
+    }
+
+    private FieldPredicate inTexts(int field, List<String> literals) {
+        String[] texts = new LinkedHashSet<>(literals).toArray(new String[0]);
+        return (batch, line) -> {
+            for(String text : texts) {
+                if(batch.fieldEquals(line, field, text)) {
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+
+    private FieldPredicate inNetwork(int field, AbstractFieldScanner scanner, String network) throws InvalidLogFormatException {
+        if(!(scanner instanceof IPv4FieldScanner)) {
+            throw error("Column " + fieldInfo.getColumns().get(field) + " is not IPV4. use in {...} for values");
+        }
+        int slash = network.indexOf('/');
+        int prefix;
+        try {
+            prefix = slash < 0 ? 32 : Integer.parseInt(network.substring(slash + 1));
+        } catch (NumberFormatException e) {
+            prefix = -1;
+        }
+        if(prefix < 0 || prefix > 32) {
+            throw error("Network " + network + " is not valid");
+        }
+
+        long mask = prefix == 0 ? 0 : (0xFFFFFFFFL << (32 - prefix)) & 0xFFFFFFFFL;
+        long address = toValue(scanner, slash < 0 ? network : network.substring(0, slash), fieldInfo.getColumns().get(field)) & mask;
+        return (batch, line) -> batch.hasFieldValue(line, field) && (batch.getFieldValue(line, field) & mask) == address;
+    }
+
+    private long toValue(AbstractFieldScanner scanner, String literal, String column) throws InvalidLogFormatException {
+        if(literal.isEmpty() || !scanner.isValid(literal, 0, literal.length())) {
+            throw error("Value " + literal + " is not valid for column " + column);
+        }
+        return scanner.parse(literal, 0, literal.length());
+    }
+
+    private static double toDouble(long value) {
+        return Double.longBitsToDouble(value);
+    }
+
+    private boolean accept(String token) {
+        if(position < tokens.size() && !quoted.get(position) && tokens.get(position).equals(token)) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean acceptKeyword(String keyword) {
+        if(position < tokens.size() && !quoted.get(position) && tokens.get(position).equalsIgnoreCase(keyword)) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(String token) throws InvalidLogFormatException {
+        if(!accept(token)) {
+            throw error("'" + token + "' is expected");
+        }
+    }
+
+    private String next(String name) throws InvalidLogFormatException {
+        if(position >= tokens.size()) {
+            throw error(name + " is expected at the end");
+        }
+        return tokens.get(position++);
+    }
+
+    private List<String> tokenize(String text) throws InvalidLogFormatException {
+        List<String> result = new ArrayList<>();
+        int i = 0;
+        while(i < text.length()) {
+            char c = text.charAt(i);
+            if(Character.isWhitespace(c)) {
+                i++;
+            } else if(c == '\'' || c == '"') {
+                int closing = text.indexOf(c, i + 1);
+                if(closing < 0) {
+                    throw error("Quote is not closed");
+                }
+                result.add(text.substring(i + 1, closing));
+                quoted.add(true);
+                i = closing + 1;
+            } else if(SYMBOLS.indexOf(c) >= 0) {
+                boolean isTwoChars = i + 1 < text.length() && text.charAt(i + 1) == '=' && "<>=!".indexOf(c) >= 0;
+                result.add(text.substring(i, isTwoChars ? i + 2 : i + 1));
+                quoted.add(false);
+                i += isTwoChars ? 2 : 1;
+            } else {
+                int start = i;
+                while(i < text.length() && !Character.isWhitespace(text.charAt(i)) && SYMBOLS.indexOf(text.charAt(i)) < 0
+                        && text.charAt(i) != '\'' && text.charAt(i) != '"') {
+                    i++;
+                }
+                result.add(text.substring(start, i));
+                quoted.add(false);
+            }
+        }
+        return result;
+    }
+
+    private InvalidLogFormatException error(String message) {
+        return new InvalidLogFormatException("Drop rule [" + expression + "] is not valid. " + message);
+    }
+}
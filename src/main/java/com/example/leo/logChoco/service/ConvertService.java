@@ -0,0 +1,360 @@
+package com.example.leo.logChoco.service;
+
+import com.example.leo.logChoco.config.LogChocoConfig;
+import com.example.leo.logChoco.config.entity.ConvertInfo;
+import com.example.leo.logChoco.config.entity.OutboundLogInfo;
+import com.example.leo.logChoco.entity.ConvertReport;
+import com.example.leo.logChoco.entity.FormatSnapshot;
+import com.example.leo.logChoco.entity.ProcessingOrder;
+import com.example.leo.logChoco.entity.log.LogBatch;
+import com.example.leo.logChoco.processing.BatchProcessor;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Class that converts log files offline with the same formats and formatters as inbound logs.
+ * Input files are mapped into memory and split into chunks at line breaks, and chunks are converted in parallel.
+ * Converted chunks are written in order of input, so output keeps order of lines.
+ * */
+@Service
+@RequiredArgsConstructor
+public class ConvertService {
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final LogChocoConfig logChocoConfig;
+    private final PatternInfoService patternInfoService;
+    private final OutboundLogService outboundLogService;
+    private final ApplicationContext applicationContext;
+
+    private final int LINES_PER_BATCH = 8 * 1024;
+    // bytes read at once to find a line break at the end of a chunk.
+    private final int BOUNDARY_SCAN_BYTES = 64 * 1024;
+    // chunks that are converted or waiting to be written, for each thread.
+    private final int CHUNKS_IN_FLIGHT_PER_THREAD = 2;
+    private final long CONNECT_TIMEOUT_MILLIS = 30_000;
+    private final int MAX_CHUNK_MEGABYTES = 1024;
+    // formatted logs are assumed to be at most this many times larger than input, to keep chunks in heap.
+    private final int OUTPUT_BYTES_PER_INPUT_BYTE = 2;
+    private final int INITIAL_OUTPUT_BYTES = 64 * 1024;
+
+    // reused by each converting thread.
+    private final ThreadLocal<LogBatch> batches = ThreadLocal.withInitial(LogBatch::new);
+    private final ThreadLocal<ChunkOutput> outputs = ThreadLocal.withInitial(() -> new ChunkOutput(INITIAL_OUTPUT_BYTES));
+    private final ThreadLocal<BatchProcessor> processors = ThreadLocal.withInitial(() -> new BatchProcessor(1, Integer.MAX_VALUE, ProcessingOrder.GLOBAL));
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void run() {
+        ConvertInfo convert = logChocoConfig.getConvert();
+        if(!convert.isEnabled()) {
+            return;
+        }
+
+        int exitCode = 0;
+        try {
+            ConvertReport report = convert(convert);
+            logger.info("#### Converted {} file(s). {} lines, {} matched, {} unmatched, {} dropped, {} MB in {} ms. {} MB/s, {} lines/s",
+                    report.getFiles(), report.getLines(), report.getMatched(), report.getUnmatched(), report.getDropped(),
+                    report.getBytes() / (1024 * 1024), report.getElapsedMillis(),
+                    String.format("%.1f", report.getMegabytesPerSecond()), String.format("%.0f", report.getLinesPerSecond()));
+        } catch (Exception e) {
+            logger.error("Failed to convert files. {}", e.getMessage(), e);
+            exitCode = 1;
+        }
+
+        if(convert.isExitOnFinish()) {
+            int code = exitCode;
+            System.exit(SpringApplication.exit(applicationContext, () -> code));
+        }
+    }
+
+    /**
+     * Convert every input file and return report of them.
+     * */
+    public ConvertReport convert(ConvertInfo convert) throws IOException, InterruptedException, ExecutionException {
+        List<Path> files = resolveInput(convert.getInput());
+        if(files.isEmpty()) {
+            throw new NoSuchFileException(String.join(", ", convert.getInput()));
+        }
+
+        boolean toFile = StringUtils.hasText(convert.getOutput());
+        if(!toFile) {
+            waitForTargets();
+        }
+
+        FormatSnapshot snapshot = patternInfoService.getSnapshot();
+        OutboundLogInfo outboundLogInfo = logChocoConfig.getOutboundLogInfo();
+        int parallelism = convert.getParallelism() > 0 ? convert.getParallelism() : Runtime.getRuntime().availableProcessors();
+        long chunkBytes = chunkBytes(convert.getChunkMegabytes(), parallelism);
+
+        ConvertReport report = new ConvertReport();
+        report.setFiles(files.size());
+        long start = System.nanoTime();
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread thread = new Thread(r, "convert-worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try (FileChannel output = toFile ? FileChannel.open(Paths.get(convert.getOutput()),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING) : null) {
+            Deque<Future<ChunkResult>> inFlight = new ArrayDeque<>();
+
+            for(Path file : files) {
+                try (FileChannel input = FileChannel.open(file, StandardOpenOption.READ)) {
+                    logger.info("Convert {} ({} MB)", file, input.size() / (1024 * 1024));
+                    report.setBytes(report.getBytes() + input.size());
+
+                    for(long[] chunk : splitChunks(input, chunkBytes)) {
+                        if(inFlight.size() >= parallelism * CHUNKS_IN_FLIGHT_PER_THREAD) {
+                            write(inFlight.poll().get(), output, report);
+                        }
+                        MappedByteBuffer mapped = input.map(FileChannel.MapMode.READ_ONLY, chunk[0], chunk[1] - chunk[0]);
+                        inFlight.add(workers.submit(() -> convertChunk(mapped, convert.getSource(), snapshot, outboundLogInfo)));
+                    }
+                    // mapped chunks stay valid after channel is closed.
+                }
+            }
+            while(!inFlight.isEmpty()) {
+                write(inFlight.poll().get(), output, report);
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+
+        long elapsedNanos = Math.max(System.nanoTime() - start, 1);
+        double seconds = elapsedNanos / 1_000_000_000.0;
+        report.setElapsedMillis(elapsedNanos / 1_000_000);
+        report.setMegabytesPerSecond(report.getBytes() / (1024.0 * 1024.0) / seconds);
+        report.setLinesPerSecond(report.getLines() / seconds);
+        return report;
+    }
+
+    /**
+     * Return files of given paths and glob patterns of file names, in order of name.
+     * */
+    private List<Path> resolveInput(List<String> input) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for(String pattern : input) {
+            Path path = Paths.get(pattern).toAbsolutePath();
+            if(Files.isRegularFile(path)) {
+                files.add(path);
+                continue;
+            }
+
+            PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + path.getFileName());
+            List<Path> matched = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(path.getParent())) {
+                stream.forEach(file -> {
+                    if(matcher.matches(file.getFileName()) && Files.isRegularFile(file)) {
+                        matched.add(file);
+                    }
+                });
+            }
+            Collections.sort(matched);
+            files.addAll(matched);
+        }
+        return files;
+    }
+
+    /**
+     * Return bytes of a chunk. A chunk is mapped at once, so it can not be larger than a buffer.
+     * Output of chunks in flight and output buffer of each thread must fit in half of heap, so chunk is made smaller if they don't.
+     * A chunk can be up to twice as large when its line break is found, which is counted too.
+     * */
+    private long chunkBytes(int chunkMegabytes, int parallelism) {
+        long megabytes = Math.min(Math.max(chunkMegabytes, 1), MAX_CHUNK_MEGABYTES);
+        long heapChunkBytes = Runtime.getRuntime().maxMemory() / 2
+                / ((long) parallelism * (CHUNKS_IN_FLIGHT_PER_THREAD + 1) * OUTPUT_BYTES_PER_INPUT_BYTE * 2);
+        long heapMegabytes = Math.max(heapChunkBytes / (1024 * 1024), 1);
+        if(heapMegabytes < megabytes) {
+            logger.warn("Chunk of {} MB doesn't fit in heap with {} thread(s). {} MB is used", megabytes, parallelism, heapMegabytes);
+            megabytes = heapMegabytes;
+        }
+        return megabytes * 1024L * 1024L;
+    }
+
+    /**
+     * Split a file into ranges of about chunkBytes. Each range but the last ends right after a line break.
+     * Line break is looked for up to chunkBytes more, and a line longer than that is split there.
+     * */
+    private List<long[]> splitChunks(FileChannel channel, long chunkBytes) throws IOException {
+        List<long[]> chunks = new ArrayList<>();
+        long size = channel.size();
+        ByteBuffer scan = ByteBuffer.allocate(BOUNDARY_SCAN_BYTES);
+
+        long start = 0;
+        while(start < size) {
+            long end = Math.min(start + chunkBytes, size);
+            long limit = Math.min(start + Math.min(chunkBytes * 2, Integer.MAX_VALUE), size);
+            // move end to the next line break, so no line is split.
+            while(end < limit) {
+                scan.clear();
+                scan.limit((int) Math.min(BOUNDARY_SCAN_BYTES, limit - end));
+                int read = channel.read(scan, end);
+                int lineBreak = -1;
+                for(int i = 0; i < read; i++) {
+                    if(scan.get(i) == '\n') {
+                        lineBreak = i;
+                        break;
+                    }
+                }
+                if(lineBreak >= 0) {
+                    end += lineBreak + 1;
+                    break;
+                }
+                end += Math.max(read, 0);
+                if(read <= 0) {
+                    end = limit;
+                }
+            }
+            chunks.add(new long[]{start, end});
+            start = end;
+        }
+        return chunks;
+    }
+
+    /**
+     * Match and format every line of a chunk in batches, and return converted logs of it as UTF-8.
+     * Logs are encoded into output buffer of the thread, and only the bytes of them are copied into result.
+     * */
+    private ChunkResult convertChunk(MappedByteBuffer mapped, String source, FormatSnapshot snapshot, OutboundLogInfo outboundLogInfo) {
+        LogBatch batch = batches.get();
+        BatchProcessor processor = processors.get();
+        ChunkResult result = new ChunkResult();
+        ChunkOutput converted = outputs.get();
+        converted.clear();
+
+        int length = mapped.limit();
+        int position = 0;
+        while(position < length) {
+            batch.clear();
+            while(batch.getSize() < LINES_PER_BATCH && position < length) {
+                int end = position;
+                while(end < length && mapped.get(end) != '\n') {
+                    end++;
+                }
+                int lineEnd = end > position && mapped.get(end - 1) == '\r' ? end - 1 : end;
+                if(lineEnd > position) {
+                    batch.add(source, 0, mapped, position, lineEnd - position);
+                }
+                position = end + 1;
+            }
+
+            result.lines += batch.getSize();
+            processor.process(batch, snapshot, outboundLogInfo, (b, line) -> {
+                if(b.getFormatIndex(line) >= 0) {
+                    result.matched++;
+                    if(b.isDropped(line)) {
+                        result.dropped++;
+                    } else {
+                        converted.write(b.getFormattedLog(line));
+                    }
+                }
+            });
+        }
+        result.bytes = converted.toByteArray();
+        batch.clear();
+        return result;
+    }
+
+    private void write(ChunkResult result, FileChannel output, ConvertReport report) throws IOException {
+        report.setLines(report.getLines() + result.lines);
+        report.setMatched(report.getMatched() + result.matched);
+        report.setDropped(report.getDropped() + result.dropped);
+        report.setUnmatched(report.getUnmatched() + result.lines - result.matched);
+        report.setOutputBytes(report.getOutputBytes() + result.bytes.length);
+        if(result.bytes.length == 0) {
+            return;
+        }
+
+        if(output != null) {
+            ByteBuffer buffer = ByteBuffer.wrap(result.bytes);
+            while(buffer.hasRemaining()) {
+                output.write(buffer);
+            }
+        } else if(outboundLogService.sendAndWait(result.bytes) == 0) {
+            throw new IOException("No target server is connected");
+        }
+    }
+
+    private void waitForTargets() throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT_MILLIS;
+        while(!outboundLogService.hasConnection()) {
+            if(System.currentTimeMillis() > deadline) {
+                throw new IOException("No target server is connected in " + CONNECT_TIMEOUT_MILLIS + " ms");
+            }
+            Thread.sleep(100);
+        }
+    }
+
+    private static class ChunkResult {
+        private long lines;
+        private long matched;
+        private long dropped;
+        private byte[] bytes;
+    }
+
+    /**
+     * Growing byte buffer that logs are encoded into as UTF-8 without making bytes of each log.
+     * */
+    private static class ChunkOutput {
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private ByteBuffer buffer;
+
+        private ChunkOutput(int capacity) {
+            buffer = ByteBuffer.allocate(capacity);
+        }
+
+        private void write(String log) {
+            CharBuffer chars = CharBuffer.wrap(log);
+            encoder.reset();
+            while(encoder.encode(chars, buffer, true).isOverflow()) {
+                grow(chars.remaining());
+            }
+            while(encoder.flush(buffer).isOverflow()) {
+                grow(chars.remaining());
+            }
+        }
+
+        private void grow(int remainingChars) {
+            long capacity = Math.max((long) buffer.capacity() * 2, (long) buffer.position() + remainingChars * 3L);
+            ByteBuffer larger = ByteBuffer.allocate((int) Math.min(capacity, Integer.MAX_VALUE - 8));
+            buffer.flip();
+            larger.put(buffer);
+            buffer = larger;
+        }
+
+        private void clear() {
+            buffer.clear();
+        }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(buffer.array(), buffer.position());
+        }
+    }
+}
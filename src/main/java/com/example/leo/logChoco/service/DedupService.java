@@ -0,0 +1,108 @@
+package com.example.leo.logChoco.service;
+
+import com.example.leo.logChoco.config.LogChocoConfig;
+import com.example.leo.logChoco.config.entity.DedupInfo;
+import com.example.leo.logChoco.entity.DedupStat;
+import com.example.leo.logChoco.entity.ReadFieldInfo;
+import com.example.leo.logChoco.entity.log.LogBatch;
+import com.example.leo.logChoco.format.RepeatFormatter;
+import com.example.leo.logChoco.processing.DedupTable;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Service that collapses repeated logs of formats with dedupColumns after they are matched and formatted.
+ * The first log of a key is sent at once in its order, and opens a window. Later logs of the key in the window are not sent,
+ * and one repeat log is sent when the window ends, with their count and first and last time.
+ * Nothing more is sent for a key that doesn't repeat in its window.
+ * */
+@Service
+@RequiredArgsConstructor
+public class DedupService {
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final LogChocoConfig logChocoConfig;
+    private final OutboundLogService outboundLogService;
+
+    private DedupTable table;
+    private RepeatFormatter repeatFormatter;
+    private Disposable ticker;
+
+    @PostConstruct
+    public void init() {
+        DedupInfo dedup = logChocoConfig.getProcessing().getDedup();
+        table = new DedupTable(dedup.getMaxEntries(), dedup.getShards(), dedup.getTickMillis(), System.currentTimeMillis());
+        repeatFormatter = new RepeatFormatter(logChocoConfig.getOutboundLogInfo());
+        ticker = Flux.interval(Duration.ofMillis(Math.max(dedup.getTickMillis(), 1)))
+                .onBackpressureDrop()
+                .subscribe(tick -> {
+                    try {
+                        flush(false);
+                    } catch (RuntimeException e) {
+                        logger.error("Failed to send collapsed logs. {}", e.getMessage(), e);
+                    }
+                });
+    }
+
+    /**
+     * Send repeat logs of windows that are open, so counts are not lost on shutdown.
+     * */
+    @PreDestroy
+    public void destroy() {
+        ticker.dispose();
+        flush(true);
+    }
+
+    /**
+     * Return true if a formatted log is a repeat that is collapsed, so it must not be sent.
+     * Return false if it must be sent now: it is the first log of its key in window, format of it has no dedupColumns, or table is full.
+     * */
+    public boolean offer(ReadFieldInfo fieldInfo, LogBatch batch, int line, String[] targets, String formattedLog) {
+        if(fieldInfo.getDedupFields().length == 0) {
+            return false;
+        }
+        return table.offer(fieldInfo, batch, line, targets, formattedLog, System.currentTimeMillis());
+    }
+
+    public DedupStat getDedupStat() {
+        DedupStat stat = new DedupStat();
+        stat.setEntries(table.getSize());
+        stat.setSuppressed(table.getSuppressedCount());
+        stat.setAggregated(table.getAggregatedCount());
+        stat.setOverflow(table.getOverflowCount());
+        return stat;
+    }
+
+    /**
+     * Send repeat logs of windows that end, once for each target set.
+     * */
+    private void flush(boolean all) {
+        // target sets are compared by reference like routes of pipeline lanes. null is every target.
+        Map<String[], List<String>> outboundLogs = new IdentityHashMap<>();
+        Consumer<DedupTable.Entry> consumer = entry -> {
+            String log = repeatFormatter.format(entry.getFormattedLog(), entry.getFieldInfo().getLogFormat(),
+                    entry.getCount(), entry.getFirstTime(), entry.getLastTime());
+            outboundLogs.computeIfAbsent(entry.getTargets(), targets -> new ArrayList<>()).add(log);
+        };
+        if(all) {
+            table.expireAll(consumer);
+        } else {
+            table.expire(System.currentTimeMillis(), consumer);
+        }
+        outboundLogs.forEach((targets, logs) -> outboundLogService.send(logs, targets));
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.leo.logChoco.service;
+
+import com.example.leo.logChoco.config.LogChocoConfig;
+import com.example.leo.logChoco.config.entity.ProcessingInfo;
+import com.example.leo.logChoco.entity.ExecutionEngine;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Class that gives threads to pipeline lanes and blocking stages by execution engine in setting.
+ * Blocking work like disk or file I/O must be run through it, never on event loops of netty.
+ * Virtual threads are looked up by reflection, so it runs on JDK older than 21 with reactor schedulers.
+ * */
+@Service
+@RequiredArgsConstructor
+public class ExecutionService {
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final LogChocoConfig logChocoConfig;
+
+    // engine in use. it is REACTOR if virtual threads are asked but not supported.
+    @Getter
+    private ExecutionEngine engine;
+    private ThreadFactory virtualThreadFactory;
+    private Scheduler blockingScheduler;
+    private Semaphore blockingPermits;
+
+    @PostConstruct
+    public void init() {
+        ProcessingInfo processing = logChocoConfig.getProcessing();
+        int concurrency = Math.max(processing.getBlockingConcurrency(), 1);
+
+        engine = processing.getEngine() == null ? ExecutionEngine.REACTOR : processing.getEngine();
+        if(engine == ExecutionEngine.VIRTUAL_THREAD) {
+            virtualThreadFactory = createVirtualThreadFactory("blocking-stage-");
+            if(virtualThreadFactory == null) {
+                logger.warn("Virtual threads are not supported on Java {}. use REACTOR engine instead", Runtime.version());
+                engine = ExecutionEngine.REACTOR;
+            }
+        }
+
+        if(engine == ExecutionEngine.VIRTUAL_THREAD) {
+            // a virtual thread for each task. permits bound how many run at once.
+            blockingScheduler = Schedulers.fromExecutorService(Executors.newCachedThreadPool(virtualThreadFactory), "blocking-stage");
+            blockingPermits = new Semaphore(concurrency);
+        } else {
+            blockingScheduler = Schedulers.newBoundedElastic(concurrency, Integer.MAX_VALUE, "blocking-stage");
+        }
+        logger.info("Run blocking stages on {} engine. concurrency : {}", engine, concurrency);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        blockingScheduler.dispose();
+    }
+
+    /**
+     * Return a scheduler that runs tasks one by one in order of scheduling, like a thread of a lane.
+     * */
+    public Scheduler newOrderedScheduler(String name) {
+        if(engine == ExecutionEngine.VIRTUAL_THREAD) {
+            ThreadFactory factory = createVirtualThreadFactory(name + "-");
+            // scheduled executor is needed for delayed tasks like linger of batches.
+            return Schedulers.fromExecutorService(new ScheduledThreadPoolExecutor(1, factory), name);
+        }
+        return Schedulers.newSingle(name);
+    }
+
+    /**
+     * Run blocking task off event loops, with no more than blocking concurrency tasks at once.
+     * */
+    public <T> Mono<T> blocking(Callable<T> task) {
+        if(blockingPermits == null) {
+            return Mono.fromCallable(task).subscribeOn(blockingScheduler);
+        }
+        return Mono.fromCallable(() -> {
+            // waiting for a permit only parks the virtual thread.
+            blockingPermits.acquire();
+            try {
+                return task.call();
+            } finally {
+                blockingPermits.release();
+            }
+        }).subscribeOn(blockingScheduler);
+    }
+
+    /**
+     * Return factory of virtual threads, or null if this JDK does not have them.
+     * */
+    private ThreadFactory createVirtualThreadFactory(String prefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // preview builds without --enable-preview throw UnsupportedOperationException.
+            return null;
+        }
+    }
+}
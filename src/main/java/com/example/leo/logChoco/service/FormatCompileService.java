@@ -0,0 +1,375 @@
+package com.example.leo.logChoco.service;
+
+import com.example.leo.logChoco.config.LogChocoConfig;
+import com.example.leo.logChoco.config.entity.RouteInfo;
+import com.example.leo.logChoco.config.entity.ServerInfo;
+import com.example.leo.logChoco.entity.FormatSnapshot;
+import com.example.leo.logChoco.entity.ReadFieldInfo;
+import com.example.leo.logChoco.entity.RouteTable;
+import com.example.leo.logChoco.exception.InvalidLogFormatException;
+import com.example.leo.logChoco.regex.FieldType;
+import com.example.leo.logChoco.regex.MatchMode;
+import com.example.leo.logChoco.regex.RegexAnalysis;
+import com.example.leo.logChoco.regex.RegexComplexityAnalyzer;
+import com.example.leo.logChoco.regex.builder.AbstractRegexBuilder;
+import com.example.leo.logChoco.regex.builder.FieldOption;
+import com.example.leo.logChoco.regex.builder.RegexBuilderFactory;
+import com.example.leo.logChoco.regex.scanner.AbstractFieldScanner;
+import com.example.leo.logChoco.regex.scanner.FieldScannerFactory;
+import com.example.leo.logChoco.regex.scanner.KeyValueTokenizer;
+import com.example.leo.logChoco.regex.scanner.QuotedFieldTokenizer;
+import com.example.leo.logChoco.rule.DropRule;
+import com.example.leo.logChoco.rule.RuleCompiler;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.time.DateTimeException;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Class that reads setting of log formats and compiles them into regex.
+ * It has no state, so it is safe to compile new formats while old ones are in use.
+ * */
+@Service
+public class FormatCompileService {
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    // Separater that divides key and value for each option.
+    private final String DEFAULT_OPTION_KEY_VALUE_SEPERATOR = ":";
+    // Separator that divides each option.
+    private final String DEFAULT_OPTION_SEPARATOR = ",";
+    // characters that make delimiter a regex rather than plain text.
+    private final String REGEX_META_CHARACTERS = "\\^$.|?*+()[]{}";
+
+    /**
+     * Read formats from json text and compile all of them.
+     * Throw exception if any of formats is not valid.
+     * */
+    public FormatSnapshot compile(String formatSetting, long version) throws InvalidLogFormatException {
+        return compile(formatSetting, version, null);
+    }
+
+    /**
+     * Read formats from json text and compile all of them, with formats of each receive-server and routes of formats.
+     * Throw exception if any of formats is not valid, or a receive-server or a route refers to a format that does not exist.
+     * */
+    public FormatSnapshot compile(String formatSetting, long version, LogChocoConfig config) throws InvalidLogFormatException {
+        List<ReadFieldInfo> fieldInfoList = readFieldInfoList(formatSetting);
+
+        Map<String, Integer> formatIndexes = new HashMap<>();
+        for(int i = 0; i < fieldInfoList.size(); i++) {
+            try {
+                setRegexFormat(fieldInfoList.get(i));
+            } catch (InvalidLogFormatException e) {
+                throw new InvalidLogFormatException("Format at index " + i + " is not valid. " + e.getMessage());
+            }
+
+            String id = fieldInfoList.get(i).getId();
+            if(id != null && formatIndexes.put(id, i) != null) {
+                throw new InvalidLogFormatException("Format id " + id + " is used more than once");
+            }
+        }
+
+        if(config == null) {
+            return new FormatSnapshot(fieldInfoList, version);
+        }
+
+        List<ServerInfo> receiveServers = config.getReceiveServer() == null ? List.of() : config.getReceiveServer();
+        int[][] receiverFormats = new int[receiveServers.size()][];
+        boolean[] receiverFallbacks = new boolean[receiveServers.size()];
+        for(int receiver = 0; receiver < receiveServers.size(); receiver++) {
+            ServerInfo server = receiveServers.get(receiver);
+            List<String> ids = server.getFormats();
+            if(ids == null || ids.isEmpty()) {
+                continue;
+            }
+
+            int[] formats = new int[ids.size()];
+            for(int k = 0; k < ids.size(); k++) {
+                Integer formatIndex = formatIndexes.get(ids.get(k));
+                if(formatIndex == null) {
+                    throw new InvalidLogFormatException("Format id " + ids.get(k) + " of receive-server at index " + receiver + " does not exist");
+                }
+                formats[k] = formatIndex;
+            }
+            receiverFormats[receiver] = Arrays.stream(formats).distinct().toArray();
+            receiverFallbacks[receiver] = server.isFormatFallback();
+        }
+        RouteTable routeTable = compileRoutes(config.getRoute(), config.getTargetServer(), formatIndexes, fieldInfoList.size());
+        return new FormatSnapshot(fieldInfoList, version, receiverFormats, receiverFallbacks, routeTable);
+    }
+
+    /**
+     * Make table of routes for formats. Routes with the same targets share a target set.
+     * */
+    private RouteTable compileRoutes(List<RouteInfo> routeInfoList, List<ServerInfo> targetServers, Map<String, Integer> formatIndexes,
+                                     int formatCount) throws InvalidLogFormatException {
+        if(routeInfoList == null || routeInfoList.isEmpty()) {
+            return RouteTable.EVERY_TARGET;
+        }
+
+        // target can be referred by name or by ip:port.
+        Map<String, String> targetKeys = new HashMap<>();
+        if(targetServers != null) {
+            targetServers.forEach(server -> {
+                String key = server.getIp() + ":" + server.getPort();
+                targetKeys.put(key, key);
+                if(StringUtils.hasText(server.getName())) {
+                    targetKeys.put(server.getName(), key);
+                }
+            });
+        }
+
+        List<RouteTable.Route> routes = new ArrayList<>();
+        List<List<String>> targetSets = new ArrayList<>();
+        List<List<RouteTable.Route>> routesByFormat = new ArrayList<>();
+        for(int i = 0; i < formatCount; i++) {
+            routesByFormat.add(new ArrayList<>());
+        }
+
+        for(int i = 0; i < routeInfoList.size(); i++) {
+            RouteInfo routeInfo = routeInfoList.get(i);
+
+            List<String> keys = new ArrayList<>();
+            for(String target : routeInfo.getTargets()) {
+                String key = targetKeys.get(target);
+                if(key == null) {
+                    throw new InvalidLogFormatException("Target " + target + " of route at index " + i + " does not exist in target-server");
+                }
+                if(!keys.contains(key)) {
+                    keys.add(key);
+                }
+            }
+            keys.sort(null);
+            int targetSet = targetSets.indexOf(keys);
+            if(targetSet < 0) {
+                targetSet = targetSets.size();
+                targetSets.add(keys);
+            }
+
+            RouteTable.Route route = new RouteTable.Route();
+            route.setIndex(i);
+            route.setFormats(routeInfo.getFormats());
+            route.setTargets(routeInfo.getTargets());
+            route.setEventIds(routeInfo.getEventIds().isEmpty() ? null : new HashSet<>(routeInfo.getEventIds()));
+            route.setMinSeverity(routeInfo.getMinSeverity());
+            route.setTargetSet(targetSet);
+            routes.add(route);
+
+            if(routeInfo.getFormats().isEmpty()) {
+                routesByFormat.forEach(list -> list.add(route));
+                continue;
+            }
+            for(String id : routeInfo.getFormats()) {
+                Integer formatIndex = formatIndexes.get(id);
+                if(formatIndex == null) {
+                    throw new InvalidLogFormatException("Format id " + id + " of route at index " + i + " does not exist");
+                }
+                if(!routesByFormat.get(formatIndex).contains(route)) {
+                    routesByFormat.get(formatIndex).add(route);
+                }
+            }
+        }
+
+        return new RouteTable(
+                routesByFormat.stream().map(list -> list.toArray(new RouteTable.Route[0])).toArray(RouteTable.Route[][]::new),
+                targetSets.stream().map(keys -> keys.toArray(new String[0])).toArray(String[][]::new),
+                routes);
+    }
+
+    private List<ReadFieldInfo> readFieldInfoList(String formatSetting) throws InvalidLogFormatException {
+        if(!StringUtils.hasText(formatSetting)) {
+            throw new InvalidLogFormatException("Setting file for log format is empty or can't be read");
+        }
+
+        try {
+            List<ReadFieldInfo> fieldInfoList = mapper.readValue(formatSetting, new TypeReference<List<ReadFieldInfo>>() {});
+            if(fieldInfoList == null) {
+                throw new InvalidLogFormatException("Setting file for log format has no format");
+            }
+            return fieldInfoList;
+        } catch (JsonProcessingException e) {
+            throw new InvalidLogFormatException("Setting file for log format is not valid json. " + e.getOriginalMessage());
+        }
+    }
+
+    /**
+     * Method that  create regex format
+     */
+    public void setRegexFormat(ReadFieldInfo fieldInfo) throws InvalidLogFormatException {
+
+        String separatorForValue = DEFAULT_OPTION_KEY_VALUE_SEPERATOR;
+        String separatorForOption = DEFAULT_OPTION_SEPARATOR;
+
+        String delimiter = fieldInfo.getDelimiter();
+        List<String> formatList = fieldInfo.getFormat();
+        List<String> columList = fieldInfo.getColumns();
+
+        if(formatList == null || columList == null || !StringUtils.hasLength(delimiter)) {
+            throw new InvalidLogFormatException("Check format, columns, delimiter in configuration file. One of them is missing");
+        }
+
+        if(formatList.size() < 1 || columList.size() < 1) {
+            throw new InvalidLogFormatException("Check format, columns, delimiter in configuration file. The length of 'format' or 'columns' separated by delimiter is less than 1");
+        }
+
+        if(formatList.size() != columList.size()) {
+            throw new InvalidLogFormatException("The length of format in configuration file should be same with the length of colums");
+        }
+
+        if(fieldInfo.getIdIndex() < 0 || fieldInfo.getIdIndex() >= columList.size()) {
+            throw new InvalidLogFormatException("idIndex " + fieldInfo.getIdIndex() + " is out of columns");
+        }
+
+        MatchMode matchMode = fieldInfo.getMatchMode() == null ? MatchMode.REGEX : fieldInfo.getMatchMode();
+        fieldInfo.setMatchMode(matchMode);
+        boolean isRegexDelimiter = delimiter.chars().anyMatch(c -> REGEX_META_CHARACTERS.indexOf(c) >= 0);
+        if(matchMode != MatchMode.REGEX && isRegexDelimiter) {
+            throw new InvalidLogFormatException("Delimiter " + delimiter + " must be plain text in " + matchMode + " mode");
+        }
+        // delimiter is joined into regex of line in REGEX mode, so fields are split by it as regex too.
+        try {
+            fieldInfo.setDelimiterPattern(isRegexDelimiter ? Pattern.compile(delimiter) : null);
+        } catch (PatternSyntaxException e) {
+            throw new InvalidLogFormatException("Delimiter " + delimiter + " can't be compiled. " + e.getDescription());
+        }
+        if(matchMode == MatchMode.KEY_VALUE) {
+            if(!StringUtils.hasLength(fieldInfo.getKeyValueSeparator())) {
+                throw new InvalidLogFormatException("keyValueSeparator is required in KEY_VALUE mode");
+            }
+            if(new HashSet<>(columList).size() != columList.size()) {
+                throw new InvalidLogFormatException("Columns must be unique in KEY_VALUE mode, because they are keys of log");
+            }
+        }
+
+        ZoneId zone;
+        try {
+            zone = fieldInfo.getTimeZone() == null ? ZoneId.systemDefault() : ZoneId.of(fieldInfo.getTimeZone());
+        } catch (DateTimeException e) {
+            throw new InvalidLogFormatException("Time zone " + fieldInfo.getTimeZone() + " is not valid");
+        }
+
+        List<String> fieldRegexList = new ArrayList<>();
+        int eventTimeIndex = -1;
+        AbstractFieldScanner[] fieldScanners = new AbstractFieldScanner[formatList.size()];
+        for(int i = 0; i < formatList.size(); i++) {
+            String format = formatList.get(i);
+            String type = format;
+            Map<String, String> optionMap = new HashMap<>();
+
+            // Save each option for each columns into map.
+            if(format.indexOf("(") > 0 && format.endsWith(")")) {
+                type = format.substring(0, format.indexOf("("));
+                String optionText = format.substring(format.indexOf("(") + 1, format.length() - 1);
+
+                // regex can have separators in it, so REGEX must be the last option and takes the rest.
+                int regexIndex = indexOfRegexOption(optionText);
+                if(regexIndex >= 0) {
+                    optionMap.put(FieldOption.REGEX.name(), optionText.substring(regexIndex + FieldOption.REGEX.name().length() + 1));
+                    optionText = optionText.substring(0, Math.max(regexIndex - 1, 0));
+                }
+                String[] options = optionText.isEmpty() ? new String[0] : optionText.split(separatorForOption);
+
+                Arrays.stream(options).forEach(option -> {
+                    String[] kv = option.split(separatorForValue,2 );
+
+                    if(kv.length != 2) {
+                        logger.warn("Wrong option for {}. each option must have key and value separated by {}", format, separatorForValue);
+                        return;
+                    }
+                    optionMap.put(kv[0], kv[1]);
+                });
+            }
+
+            // Get regex builder according to field type. and add option to it.
+            FieldType fieldType;
+            try {
+                fieldType = FieldType.valueOf(type);
+            } catch (IllegalArgumentException e) {
+                throw new InvalidLogFormatException("Field type " + format + " is not supported");
+            }
+            AbstractRegexBuilder builder = RegexBuilderFactory.getRegexBuilder(fieldType);
+            builder.addRegexOptions(optionMap);
+            fieldRegexList.add(builder.getValue());
+
+            // scanner takes same options, so both modes accept same fields.
+            fieldScanners[i] = FieldScannerFactory.getFieldScanner(fieldType);
+            try {
+                fieldScanners[i].addScanOptions(optionMap);
+            } catch (PatternSyntaxException e) {
+                throw new InvalidLogFormatException("Regex of " + format + " can't be compiled. " + e.getDescription());
+            }
+            fieldScanners[i].setTimeZone(zone);
+
+            if(fieldType == FieldType.DATE && eventTimeIndex < 0) {
+                eventTimeIndex = i;
+            }
+        }
+        fieldInfo.setFieldScanners(fieldScanners);
+        fieldInfo.setEventTimeIndex(eventTimeIndex);
+        DropRule[] dropRules = new DropRule[fieldInfo.getDropRules() == null ? 0 : fieldInfo.getDropRules().size()];
+        for(int i = 0; i < dropRules.length; i++) {
+            dropRules[i] = RuleCompiler.compile(fieldInfo.getDropRules().get(i), fieldInfo);
+        }
+        fieldInfo.setCompiledDropRules(dropRules);
+
+        List<String> dedupColumns = fieldInfo.getDedupColumns() == null ? List.of() : fieldInfo.getDedupColumns();
+        int[] dedupFields = new int[dedupColumns.size()];
+        for(int i = 0; i < dedupFields.length; i++) {
+            dedupFields[i] = fieldInfo.getColumns().indexOf(dedupColumns.get(i));
+            if(dedupFields[i] < 0) {
+                throw new InvalidLogFormatException("Dedup column " + dedupColumns.get(i) + " does not exist in columns");
+            }
+        }
+        if(dedupFields.length > 0 && fieldInfo.getDedupWindowMillis() <= 0) {
+            throw new InvalidLogFormatException("dedupWindowMillis must be more than 0");
+        }
+        fieldInfo.setDedupFields(dedupFields);
+        fieldInfo.setFieldTokenizer(switch (matchMode) {
+            case KEY_VALUE -> new KeyValueTokenizer(delimiter, fieldInfo.getKeyValueSeparator(), fieldInfo.getQuote(), columList);
+            case QUOTED -> new QuotedFieldTokenizer(delimiter, fieldInfo.getQuote(), columList.size());
+            default -> null;
+        });
+
+        // rewrite regex that can backtrack too much, or reject it.
+        RegexAnalysis analysis = new RegexComplexityAnalyzer().analyze(fieldRegexList, delimiter);
+        analysis.getWarnings().forEach(warning -> logger.warn("Format {} : {}", formatList, warning));
+        fieldInfo.setAnalysisWarnings(analysis.getWarnings());
+
+        try {
+            fieldInfo.setFormatInRegex(analysis.getRegex());
+        } catch (PatternSyntaxException e) {
+            throw new InvalidLogFormatException("Regex of format can't be compiled. " + e.getDescription());
+        }
+    }
+
+    /**
+     * Return index of REGEX option in text of options, or -1 if there is none.
+     * */
+    private int indexOfRegexOption(String optionText) {
+        String key = FieldOption.REGEX.name() + DEFAULT_OPTION_KEY_VALUE_SEPERATOR;
+        for(int i = 0; i + key.length() <= optionText.length(); i++) {
+            boolean isStartOfOption = i == 0 || optionText.startsWith(DEFAULT_OPTION_SEPARATOR, i - 1);
+            if(isStartOfOption && optionText.regionMatches(true, i, key, 0, key.length())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
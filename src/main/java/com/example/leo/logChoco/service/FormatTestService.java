@@ -0,0 +1,265 @@
+package com.example.leo.logChoco.service;
+
+import com.example.leo.logChoco.entity.FormatTestRequest;
+import com.example.leo.logChoco.entity.FormatTestResult;
+import com.example.leo.logChoco.entity.ReadFieldInfo;
+import com.example.leo.logChoco.exception.InvalidLogFormatException;
+import com.example.leo.logChoco.regex.scanner.AbstractFieldScanner;
+import com.example.leo.logChoco.regex.scanner.ScannedLine;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class that dry-runs a candidate format against sample logs.
+ * It never changes formats in use.
+ * */
+@Service
+@RequiredArgsConstructor
+public class FormatTestService {
+
+    private final FormatCompileService formatCompileService;
+
+    private final long MAX_DURATION_MILLIS = 5000;
+    // time limit of one match of a sample or near-miss input.
+    private final long BACKTRACKING_LIMIT_NANOS = 100_000_000L;
+    // near-miss match slower than base match by this ratio is reported.
+    private final long BACKTRACKING_RATIO = 100;
+    // near-miss match faster than this is never reported.
+    private final long BACKTRACKING_MIN_NANOS = 1_000_000L;
+    private final int MAX_BACKTRACKING_LINES = 20;
+
+    /**
+     * Compile candidate format and test it with sample logs.
+     * It takes about durationMillis of request, so it must not be called on event loop.
+     * */
+    public FormatTestResult test(FormatTestRequest request) throws InvalidLogFormatException {
+        ReadFieldInfo fieldInfo = request.getFormat();
+        List<String> lines = request.getLines();
+
+        if(fieldInfo == null || lines == null || lines.isEmpty()) {
+            throw new InvalidLogFormatException("Both format and lines are required");
+        }
+        formatCompileService.setRegexFormat(fieldInfo);
+
+        FormatTestResult result = new FormatTestResult();
+        result.setFormatInRegex(fieldInfo.getFormatInRegex());
+        result.setAnalysisWarnings(fieldInfo.getAnalysisWarnings());
+
+        // every match of candidate format is under time limit, and near-miss inputs are checked first.
+        // a format that hits the limit is not run in the throughput loop.
+        lines.stream().limit(MAX_BACKTRACKING_LINES).forEach(line -> checkBacktracking(fieldInfo, line, result));
+        lines.forEach(line -> result.getLines().add(matchLine(fieldInfo, line)));
+        result.setTimedOut(result.getBacktracking().stream().anyMatch(FormatTestResult.BacktrackingInfo::isTimedOut)
+                || result.getLines().stream().anyMatch(FormatTestResult.LineResult::isTimedOut));
+        if(!result.isTimedOut()) {
+            measureThroughput(fieldInfo, lines, Math.min(Math.max(request.getDurationMillis(), 1), MAX_DURATION_MILLIS), result);
+        }
+
+        return result;
+    }
+
+    private FormatTestResult.LineResult matchLine(ReadFieldInfo fieldInfo, String line) {
+        FormatTestResult.LineResult lineResult = new FormatTestResult.LineResult();
+        lineResult.setLine(line);
+
+        CharSequence guardedLine = new DeadlineCharSequence(line, System.nanoTime() + BACKTRACKING_LIMIT_NANOS);
+        try {
+            lineResult.setMatched(fieldInfo.matches(guardedLine));
+            if(!lineResult.isMatched()) {
+                return lineResult;
+            }
+
+            List<String> columns = fieldInfo.getColumns();
+            Map<String, String> fields = new LinkedHashMap<>();
+
+            if(fieldInfo.getFieldTokenizer() != null) {
+                // split by tokenizer in the same way with batches.
+                ScannedLine scannedLine = new ScannedLine(columns.size());
+                fieldInfo.scan(guardedLine, scannedLine);
+                for(int i = 0; i < columns.size(); i++) {
+                    fields.put(columns.get(i), line.substring(scannedLine.getStarts()[i], scannedLine.getEnds()[i]));
+                }
+            } else {
+                // split in the same way with formatters.
+                String[] values = line.split(fieldInfo.getDelimiter(), -1);
+                for(int i = 0; i < columns.size(); i++) {
+                    fields.put(columns.get(i), i < values.length ? values[i] : null);
+                }
+            }
+            lineResult.setFields(fields);
+            lineResult.setValues(readTypedValues(fieldInfo, guardedLine));
+        } catch (DeadlineExceededException | StackOverflowError e) {
+            lineResult.setMatched(false);
+            lineResult.setTimedOut(true);
+            lineResult.setFields(null);
+        }
+        return lineResult;
+    }
+
+    /**
+     * Return typed value of each column that scanner can read. Column which has no typed value is left out.
+     * */
+    private Map<String, Object> readTypedValues(ReadFieldInfo fieldInfo, CharSequence line) {
+        ScannedLine scannedLine = new ScannedLine(fieldInfo.getColumns().size());
+        Map<String, Object> values = new LinkedHashMap<>();
+
+        if(!fieldInfo.scan(line, scannedLine)) {
+            return values;
+        }
+
+        AbstractFieldScanner[] scanners = fieldInfo.getFieldScanners();
+        for(int i = 0; i < scannedLine.getFieldCount(); i++) {
+            if(scannedLine.getHasValues()[i]) {
+                values.put(fieldInfo.getColumns().get(i), scanners[i].toObject(scannedLine.getValues()[i]));
+            }
+        }
+        return values;
+    }
+
+    private void measureThroughput(ReadFieldInfo fieldInfo, List<String> lines, long durationMillis, FormatTestResult result) {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        long attempts = 0;
+        long matches = 0;
+        long startBytes = allocatedBytes(threadBean, threadId);
+        long start = System.nanoTime();
+        long end = start + durationMillis * 1_000_000L;
+        long now;
+
+        // made once, so they are not counted as allocation of attempts.
+        CharSequence[] guardedLines = lines.stream()
+                .map(line -> new DeadlineCharSequence(line, end + BACKTRACKING_LIMIT_NANOS))
+                .toArray(CharSequence[]::new);
+        try {
+            do {
+                for(CharSequence line : guardedLines) {
+                    if(fieldInfo.matches(line)) {
+                        matches++;
+                    }
+                    attempts++;
+                }
+                now = System.nanoTime();
+            } while(now < end);
+        } catch (DeadlineExceededException | StackOverflowError e) {
+            now = System.nanoTime();
+            result.setTimedOut(true);
+        }
+
+        long endBytes = allocatedBytes(threadBean, threadId);
+        double seconds = (now - start) / 1_000_000_000.0;
+
+        result.setAttempts(attempts);
+        result.setAttemptsPerSecond(attempts / seconds);
+        result.setMatchesPerSecond(matches / seconds);
+        result.setAllocatedBytesPerAttempt(startBytes < 0 || endBytes < 0 || attempts == 0 ? -1 : (double) (endBytes - startBytes) / attempts);
+    }
+
+    private long allocatedBytes(ThreadMXBean threadBean, long threadId) {
+        if(threadBean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(threadId);
+        }
+        return -1;
+    }
+
+    /**
+     * Match inputs that almost match the line, which makes regex try every way to split it.
+     * */
+    private void checkBacktracking(ReadFieldInfo fieldInfo, String line, FormatTestResult result) {
+        long baseNanos = timeMatch(fieldInfo, line);
+        if(baseNanos < 0) {
+            FormatTestResult.BacktrackingInfo info = new FormatTestResult.BacktrackingInfo();
+            info.setInput(line);
+            info.setBaseNanos(BACKTRACKING_LIMIT_NANOS);
+            info.setNearMissNanos(BACKTRACKING_LIMIT_NANOS);
+            info.setTimedOut(true);
+            result.getBacktracking().add(info);
+            return;
+        }
+
+        String[] nearMisses = {
+                line + "\u0000",
+                line.isEmpty() ? "\u0000" : line.substring(0, line.length() - 1) + "\u0000",
+                line + line
+        };
+
+        for(String input : nearMisses) {
+            long nanos = timeMatch(fieldInfo, input);
+            boolean timedOut = nanos < 0;
+
+            if(timedOut || (nanos > BACKTRACKING_MIN_NANOS && nanos > Math.max(baseNanos, 1) * BACKTRACKING_RATIO)) {
+                FormatTestResult.BacktrackingInfo info = new FormatTestResult.BacktrackingInfo();
+                info.setInput(input);
+                info.setBaseNanos(baseNanos);
+                info.setNearMissNanos(timedOut ? BACKTRACKING_LIMIT_NANOS : nanos);
+                info.setTimedOut(timedOut);
+                result.getBacktracking().add(info);
+            }
+        }
+    }
+
+    /**
+     * Return time of one match in nanoseconds, or -1 if it exceeds time limit.
+     * */
+    private long timeMatch(ReadFieldInfo fieldInfo, String input) {
+        long start = System.nanoTime();
+        try {
+            fieldInfo.matches(new DeadlineCharSequence(input, start + BACKTRACKING_LIMIT_NANOS));
+        } catch (DeadlineExceededException | StackOverflowError e) {
+            return -1;
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * CharSequence that stops regex engine when time limit is exceeded.
+     * */
+    private static class DeadlineCharSequence implements CharSequence {
+        private final CharSequence text;
+        private final long deadline;
+        private int count = 0;
+
+        private DeadlineCharSequence(CharSequence text, long deadline) {
+            this.text = text;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public char charAt(int index) {
+            // checking clock on every read is too slow.
+            if((++count & 0xFFF) == 0 && System.nanoTime() > deadline) {
+                throw new DeadlineExceededException();
+            }
+            return text.charAt(index);
+        }
+
+        @Override
+        public int length() {
+            return text.length();
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new DeadlineCharSequence(text.subSequence(start, end), deadline);
+        }
+
+        @Override
+        public String toString() {
+            return text.toString();
+        }
+    }
+
+    private static class DeadlineExceededException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private DeadlineExceededException() {
+            super(null, null, false, false);
+        }
+    }
+}
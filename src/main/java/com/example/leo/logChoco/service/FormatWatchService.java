@@ -0,0 +1,100 @@
+package com.example.leo.logChoco.service;
+
+import com.example.leo.logChoco.config.LogChocoConfig;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+
+/**
+ * Class that watches setting file for log format and reloads formats when it is changed.
+ * Watching and compiling run on its own thread, not on the threads handling logs.
+ * */
+@Service
+@RequiredArgsConstructor
+public class FormatWatchService {
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final LogChocoConfig logChocoConfig;
+    private final PatternInfoService patternInfoService;
+
+    // wait for editors to finish writing before reloading.
+    private final long RELOAD_DELAY_MILLIS = 300;
+
+    private WatchService watchService;
+
+    @PostConstruct
+    public void init() {
+        if(!logChocoConfig.isFormatFileWatch()) {
+            return;
+        }
+
+        Path file = Paths.get(logChocoConfig.getFilePath()).toAbsolutePath();
+        Path dir = file.getParent();
+
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            logger.error("Failed to watch setting file {}. formats will not be reloaded. {}", file, e.getMessage());
+            return;
+        }
+
+        Thread thread = new Thread(() -> watch(dir, file.getFileName()), "format-watcher");
+        thread.setDaemon(true);
+        thread.start();
+        logger.info("#### Watch {} for format changes", file);
+    }
+
+    @PreDestroy
+    public void destroy() throws IOException {
+        if(watchService != null) {
+            watchService.close();
+        }
+    }
+
+    private void watch(Path dir, Path fileName) {
+        try {
+            while(true) {
+                WatchKey key = watchService.take();
+                boolean isChanged = isFileChanged(key, fileName);
+
+                if(isChanged) {
+                    // collect events made while file is being written, then reload once.
+                    Thread.sleep(RELOAD_DELAY_MILLIS);
+                    WatchKey next;
+                    while((next = watchService.poll()) != null) {
+                        isFileChanged(next, fileName);
+                    }
+                    patternInfoService.reloadRegexSetting();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            logger.info("Stop watching setting file in {}", dir);
+        }
+    }
+
+    private boolean isFileChanged(WatchKey key, Path fileName) {
+        boolean isChanged = false;
+        for(WatchEvent<?> event : key.pollEvents()) {
+            if(fileName.equals(event.context())) {
+                isChanged = true;
+            }
+        }
+        key.reset();
+        return isChanged;
+    }
+}
@@ -4,21 +4,31 @@ import com.example.leo.logChoco.config.LogChocoConfig;
 import com.example.leo.logChoco.config.entity.ServerInfo;
 import com.example.leo.logChoco.entity.log.InboundLog;
 import com.example.leo.logChoco.entity.log.LogInfo;
+import com.example.leo.logChoco.entity.Compression;
+import com.example.leo.logChoco.entity.NetworkProtocol;
+import com.example.leo.logChoco.inbound.FileTailer;
 import com.example.leo.logChoco.inbound.InboundHandler;
+import com.example.leo.logChoco.router.IngestRouter;
 import io.netty.channel.ChannelOption;
 import io.netty.handler.codec.DelimiterBasedFrameDecoder;
 import io.netty.handler.codec.Delimiters;
+import io.netty.handler.codec.compression.ZlibCodecFactory;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.http.server.reactive.ReactorHttpHandlerAdapter;
 import org.springframework.util.StringUtils;
-import reactor.core.publisher.Sinks;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import reactor.netty.http.server.HttpServer;
 import reactor.netty.tcp.TcpServer;
 import reactor.netty.udp.UdpServer;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Class that has business logic for receiving log
@@ -32,41 +42,76 @@ public class InboundService {
 
     private final PatternInfoService patternInfoService;
     private final LogChocoConfig logChocoConfig;
+    private final ExecutionService executionService;
+    private final IngestRouter ingestRouter;
     private List<ServerInfo> servers;
-    private Sinks.Many<LogInfo> nextSink;
+    private Consumer<LogInfo> next;
+    private final List<FileTailer> fileTailers = new ArrayList<>();
 
     @PostConstruct
     public void init() {
         servers = logChocoConfig.getReceiveServer();
-        nextSink = patternInfoService.getSink();
+        next = patternInfoService::emit;
+        if(logChocoConfig.getConvert().isEnabled()) {
+            logger.info("Convert files instead of receiving logs. inbound servers are not run");
+            return;
+        }
         runServers();
     }
 
+    @PreDestroy
+    public void destroy() {
+        // offsets are saved when tailing stops.
+        fileTailers.forEach(FileTailer::stop);
+    }
+
     private void runServers() {
         servers.stream()
-                .filter(server -> server.getPort() > 0 && StringUtils.hasText(server.getProtocol().name()))
+                .filter(server -> server.getProtocol() == NetworkProtocol.FILE
+                        ? StringUtils.hasText(server.getPath())
+                        : server.getPort() > 0 && StringUtils.hasText(server.getProtocol().name()))
                 .forEach(server -> {
                     switch(server.getProtocol()) {
                         case TCP -> runTcpServer(server);
                         case UDP -> runUdpServer(server);
                         case TLS -> runTlsServer(server);
+                        case FILE -> runFileTail(server);
+                        case HTTP -> runHttpServer(server);
                         default -> logger.error("Failed to run servers for {}. Protocol is not supported");
                     }
                     
                 });
     }
 
+    /**
+     * Return consumer that marks logs with index of receive-server, so they are matched with formats of the receive-server.
+     * */
+    private Consumer<LogInfo> nextOf(ServerInfo server) {
+        int receiverIndex = servers.indexOf(server);
+        return log -> {
+            if(log instanceof InboundLog inboundLog) {
+                inboundLog.setReceiverIndex(receiverIndex);
+            }
+            next.accept(log);
+        };
+    }
+
     private void runTcpServer(ServerInfo server) {
+        Compression compression = server.getCompression() == null ? Compression.NONE : server.getCompression();
         TcpServer.create()
             .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 2000)
             .port(server.getPort())
             .handle((in, out) -> in.receive().then())
             .doOnChannelInit((observer, channel, remoteAddress) -> {
-                channel.pipeline().addFirst(new InboundHandler(nextSink));
+                channel.pipeline().addFirst(new InboundHandler(nextOf(server), server.getSyslogHeader()));
                 channel.pipeline().addFirst(new DelimiterBasedFrameDecoder(20 * 1024, Delimiters.lineDelimiter()));
+                if(compression != Compression.NONE) {
+                    // stream is decompressed before it is split into frames. inflater is kept for the connection.
+                    channel.pipeline().addFirst(ZlibCodecFactory.newZlibDecoder(compression.getDecoderWrapper()));
+                }
             })
             .bind().subscribe(con -> {
-                logger.info("#### Open TCP port {} for inbound logs", server.getPort());
+                logger.info("#### Open TCP port {} for inbound logs. compression : {}, syslog header : {}", server.getPort(), compression, server.getSyslogHeader());
             });
     }
 
@@ -81,6 +126,23 @@ public class InboundService {
                 });
     }
 
+    private void runHttpServer(ServerInfo server) {
+        ReactorHttpHandlerAdapter adapter = new ReactorHttpHandlerAdapter(RouterFunctions.toHttpHandler(ingestRouter.ingestRouterInfo(nextOf(server))));
+        HttpServer.create()
+                .port(server.getPort())
+                .handle(adapter)
+                .bind().subscribe(con -> {
+                    logger.info("#### Open HTTP port {} for inbound logs. POST /ingest", server.getPort());
+                });
+    }
+
+    private void runFileTail(ServerInfo server) {
+        FileTailer fileTailer = new FileTailer(server, nextOf(server), executionService, patternInfoService);
+        fileTailer.start();
+        fileTailers.add(fileTailer);
+        logger.info("#### Tail files {} for inbound logs", server.getPath());
+    }
+
     private void runTlsServer(ServerInfo server) {
 
     }
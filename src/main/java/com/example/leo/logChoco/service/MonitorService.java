@@ -1,64 +1,64 @@
 package com.example.leo.logChoco.service;
 
-import com.example.leo.logChoco.entity.log.InboundLog;
+import com.example.leo.logChoco.entity.FormatProfileInfo;
+import com.example.leo.logChoco.entity.MatchStat;
+import com.example.leo.logChoco.entity.ReadFieldInfo;
 import com.example.leo.logChoco.entity.MonitorInfo;
-import com.example.leo.logChoco.entity.log.LogInfo;
+import com.example.leo.logChoco.entity.log.LogBatch;
 import lombok.Getter;
 import org.springframework.stereotype.Service;
-import reactor.core.publisher.Flux;
-import reactor.core.publisher.Sinks;
 
-import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.function.Consumer;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 @Service
 public class MonitorService {
-    @Getter
-    private Sinks.Many<List<LogInfo>> inboundSink;
-
     @Getter
     private HashMap<String, MonitorInfo> inboundMonitorCache = new HashMap<>();
 
-    @PostConstruct
-    public void init() {
-        inboundSink = Sinks.many().unicast().onBackpressureBuffer();
-        Flux<List<LogInfo>> inboundFlux = inboundSink.asFlux();
-        inboundFlux.subscribe(consumeLog());
+    // max number of sampled logs that matched no format
+    private final int UNMATCHED_SAMPLE_SIZE = 100;
 
-    }
+    // reservoir of logs that matched no format
+    private final List<String> unmatchedSamples = new ArrayList<>();
+    private long unmatchedCount = 0;
 
-    private Consumer<List<LogInfo>> consumeLog() {
-        return list -> {
-            list.stream().forEach(logInfo -> {
-                if(logInfo instanceof InboundLog) {
-                    addInboundInfoToCache((InboundLog) logInfo);
-                } else {
-
-                }
-            });
-        };
+    /**
+     * Count inbound logs of batch by address.
+     * Logs from same connection come in a row, so count is added once for each run of same address.
+     * */
+    public synchronized void addInboundBatch(LogBatch batch) {
+        int runStart = 0;
+        for(int line = 1; line <= batch.getSize(); line++) {
+            if(line == batch.getSize() || !batch.getIp(line).equals(batch.getIp(runStart))) {
+                addInboundInfoToCache(batch.getIp(runStart), batch.getPort(runStart), line - runStart);
+                runStart = line;
+            }
+        }
     }
 
     /**
      * add inboundInfo To cache
      * */
-    private void addInboundInfoToCache(InboundLog inboundLog) {
-        String ip = inboundLog.getIp();
-
+    private void addInboundInfoToCache(String ip, int port, long count) {
         if(inboundMonitorCache.containsKey(ip)) {
             MonitorInfo info = inboundMonitorCache.get(ip);
-            long count = info.getCount();
-            info.setCount(++count);
-
+            info.setCount(info.getCount() + count);
 
         } else {
             MonitorInfo info = new MonitorInfo();
 
             info.setIp(ip);
-            info.setPort(inboundLog.getPort());
-            info.setCount(1);
+            info.setPort(port);
+            info.setCount(count);
             inboundMonitorCache.put(ip, info);
         }
 
@@ -68,15 +68,61 @@ public class MonitorService {
      * return inbound info that stored in cache.
      * and clear cache
      * */
-    public HashMap<String, MonitorInfo> getInboundMonitorInfo() {
+    public synchronized HashMap<String, MonitorInfo> getInboundMonitorInfo() {
         HashMap<String, MonitorInfo> info = (HashMap<String, MonitorInfo>) inboundMonitorCache.clone();
         inboundMonitorCache.clear();
         return info;
     }
 
+    /**
+     * Keep log that matched no format.
+     * Every unmatched log has the same chance to be kept in reservoir.
+     * */
+    public synchronized void addUnmatchedLog(LogBatch batch, int line) {
+        unmatchedCount++;
 
+        if(unmatchedSamples.size() < UNMATCHED_SAMPLE_SIZE) {
+            unmatchedSamples.add(batch.getLine(line));
+            return;
+        }
 
+        long index = ThreadLocalRandom.current().nextLong(unmatchedCount);
+        if(index < UNMATCHED_SAMPLE_SIZE) {
+            unmatchedSamples.set((int) index, batch.getLine(line));
+        }
+    }
 
-
-
+    /**
+     * return match count and cost of each format, sorted by cost.
+     * and logs that matched no format.
+     * */
+    public synchronized Map<String, Object> getFormatProfileInfo(List<ReadFieldInfo> fieldInfoList) {
+        List<FormatProfileInfo> profiles = IntStream.range(0, fieldInfoList.size())
+                .mapToObj(i -> {
+                    ReadFieldInfo fieldInfo = fieldInfoList.get(i);
+                    MatchStat stat = fieldInfo.getMatchStat();
+                    long attempts = stat.getMatched() + stat.getRejected();
+
+                    FormatProfileInfo info = new FormatProfileInfo();
+                    info.setFormatIndex(i);
+                    info.setFormatInRegex(fieldInfo.getFormatInRegex());
+                    info.setAnalysisWarnings(fieldInfo.getAnalysisWarnings());
+                    info.setMatched(stat.getMatched());
+                    info.setRejected(stat.getRejected());
+                    info.setElapsedNanos(stat.getElapsedNanos());
+                    info.setAvgNanosPerAttempt(attempts > 0 ? stat.getElapsedNanos() / attempts : 0);
+                    Map<String, Long> dropRuleHits = new LinkedHashMap<>();
+                    Arrays.stream(fieldInfo.getCompiledDropRules()).forEach(rule -> dropRuleHits.put(rule.getExpression(), rule.getHitCount()));
+                    info.setDropRuleHits(dropRuleHits);
+                    return info;
+                })
+                .sorted(Comparator.comparingLong(FormatProfileInfo::getElapsedNanos).reversed())
+                .collect(Collectors.toList());
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("formats", profiles);
+        result.put("unmatchedCount", unmatchedCount);
+        result.put("unmatchedSamples", new ArrayList<>(unmatchedSamples));
+        return result;
+    }
 }
@@ -2,17 +2,20 @@ package com.example.leo.logChoco.service;
 
 import com.example.leo.logChoco.config.LogChocoConfig;
 import com.example.leo.logChoco.config.entity.ServerInfo;
-import com.example.leo.logChoco.entity.BufferInfo;
+import com.example.leo.logChoco.entity.Compression;
 import com.example.leo.logChoco.entity.NetworkProtocol;
+import com.example.leo.logChoco.jfr.BatchEvent;
+import com.example.leo.logChoco.jfr.OutboundFlushEvent;
+import com.example.leo.logChoco.jfr.ReconnectEvent;
+import io.netty.handler.codec.compression.ZlibCodecFactory;
 import io.netty.util.CharsetUtil;
-import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import org.reactivestreams.Publisher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.publisher.Sinks;
 import reactor.netty.Connection;
 import reactor.netty.ConnectionObserver;
 import reactor.netty.http.client.HttpClient;
@@ -25,8 +28,8 @@ import java.time.Duration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 @RequiredArgsConstructor
@@ -35,14 +38,14 @@ public class OutboundLogService {
     private Logger logger = LoggerFactory.getLogger(getClass());
     private final LogChocoConfig logChocoConfig;
 
-    @Getter
-    protected Sinks.Many<String> sink;
-
     private Map<String, TcpClient> tcpClientMap = new HashMap<>();
     private Map<String, UdpClient> udpClientMap = new HashMap<>();
 
-    private Map<String, Connection> tcpConnMap = new HashMap<>();
-    private Map<String, Connection> udpConnMap = new HashMap<>();
+    // read by pipeline lanes while connections are replaced on reconnect.
+    private Map<String, Connection> tcpConnMap = new ConcurrentHashMap<>();
+    // keys of targets that take compressed stream.
+    private Set<String> compressedTargets = ConcurrentHashMap.newKeySet();
+    private Map<String, Connection> udpConnMap = new ConcurrentHashMap<>();
 
     private List<HttpClient> httpClient;
 
@@ -53,23 +56,92 @@ public class OutboundLogService {
     public void init() {
 
         createClient();
+    }
+
+    /**
+     * Send formatted logs of a batch to every connected target at once.
+     * Each pipeline lane calls it with its own batch, so logs of a lane are sent in order.
+     * */
+    public void send(List<String> logs) {
+        send(logs, null);
+    }
+
+    /**
+     * Send formatted logs of a batch to connected targets of a target set at once.
+     * @param targets keys of targets (ip:port). every target if it is null.
+     * */
+    public void send(List<String> logs, String[] targets) {
+        if(logs.isEmpty()) {
+            return;
+        }
 
-        sink = Sinks.many().unicast().onBackpressureBuffer();
-        Flux<List<String>> flux = sink.asFlux().bufferTimeout(BufferInfo.BUFFER_SIZE, BufferInfo.BUFFER_DURATION_SECOND);
-        flux.subscribe(logs -> {
+        BatchEvent batchEvent = new BatchEvent();
+        batchEvent.begin();
 
-            tcpConnMap.entrySet().stream().forEach(entry -> {
-                Connection conn = entry.getValue();
-                if(!conn.isDisposed()) {
-                    Flux<String> logFlux = Flux.fromStream(logs.stream());
+        // compressed targets get a batch in one write, because each write is compressed and flushed alone.
+        Mono<String> joinedLogs = Mono.fromSupplier(() -> String.join("", logs)).cache();
 
-                    logFlux.doOnComplete(() -> {
-                    }).subscribe(log -> {
-                        conn.outbound().sendString(Mono.just(log), CharsetUtil.UTF_8).then().subscribe();
-                    });
+        if(targets == null) {
+            tcpConnMap.forEach((key, conn) -> sendTo(key, conn, logs, joinedLogs));
+        } else {
+            for(String key : targets) {
+                Connection conn = tcpConnMap.get(key);
+                if(conn != null) {
+                    sendTo(key, conn, logs, joinedLogs);
                 }
-            });
-        });
+            }
+        }
+
+        batchEvent.end();
+        if(batchEvent.shouldCommit()) {
+            batchEvent.stage = "outbound";
+            batchEvent.size = logs.size();
+            batchEvent.commit();
+        }
+    }
+
+    private void sendTo(String key, Connection conn, List<String> logs, Mono<String> joinedLogs) {
+        if(conn.isDisposed()) {
+            return;
+        }
+
+        OutboundFlushEvent flushEvent = new OutboundFlushEvent();
+        flushEvent.begin();
+
+        Publisher<String> body = compressedTargets.contains(key) ? joinedLogs : Flux.fromIterable(logs);
+        conn.outbound().sendString(body, CharsetUtil.UTF_8).then()
+                .doOnTerminate(() -> {
+                    flushEvent.end();
+                    if(flushEvent.shouldCommit()) {
+                        flushEvent.target = key;
+                        flushEvent.count = logs.size();
+                        flushEvent.commit();
+                    }
+                })
+                .subscribe(null, err -> logger.error("Failed to send logs to {}. {}", key, err.getMessage()));
+    }
+
+    public boolean hasConnection() {
+        return tcpConnMap.values().stream().anyMatch(conn -> !conn.isDisposed());
+    }
+
+    /**
+     * Send bytes of formatted logs to every connected target, and return after they are written.
+     * It is for offline conversion, which must not read faster than targets take logs.
+     * @return number of targets that bytes are written to
+     * */
+    public int sendAndWait(byte[] bytes) {
+        return Flux.fromIterable(tcpConnMap.entrySet())
+                .filter(entry -> !entry.getValue().isDisposed())
+                .flatMap(entry -> entry.getValue().outbound().sendByteArray(Mono.just(bytes)).then()
+                        .thenReturn(1)
+                        .onErrorResume(err -> {
+                            logger.error("Failed to send logs to {}. {}", entry.getKey(), err.getMessage());
+                            return Mono.just(0);
+                        }))
+                .reduce(0, Integer::sum)
+                .blockOptional()
+                .orElse(0);
     }
 
     private void createClient() {
@@ -87,9 +159,20 @@ public class OutboundLogService {
 
         String key = getKey(ip, port);
 
+        Compression compression = serverInfo.getCompression() == null ? Compression.NONE : serverInfo.getCompression();
+        if(compression != Compression.NONE) {
+            compressedTargets.add(key);
+        }
+
         TcpClient tcpClient = TcpClient.create()
                 .host(serverInfo.getIp())
                 .port(serverInfo.getPort())
+                .doOnChannelInit((observer, channel, remoteAddress) -> {
+                    if(compression != Compression.NONE) {
+                        // first handler from socket, so every write is compressed. each write is flushed as a block that can be read at once.
+                        channel.pipeline().addFirst(ZlibCodecFactory.newZlibEncoder(compression.getEncoderWrapper()));
+                    }
+                })
                 .doOnConnect(conn -> logger.info("Trying to connect to {}:{}, via {}", ip, port, protocol))
                 .doOnConnected(conn -> logger.info("Connection made to {}:{}, via {}", ip, port, protocol))
                 .doOnDisconnected(conn -> {
@@ -125,11 +208,23 @@ public class OutboundLogService {
         return (conn, state) -> {
             if (state == ConnectionObserver.State.DISCONNECTING) {
                 if(NetworkProtocol.TCP.equals(protocol)) {
+                    ReconnectEvent event = new ReconnectEvent();
+                    event.begin();
+                    event.target = key;
+                    event.protocol = protocol.name();
+
                     TcpClient client = tcpClientMap.get(key);
                     client.connect()
-                            .doOnError(err -> logger.error("Failed to reconnect {}:{} via {}", ip, port, protocol))
+                            .doOnError(err -> {
+                                event.failedAttempts++;
+                                logger.error("Failed to reconnect {}:{} via {}", ip, port, protocol);
+                            })
                             .retryWhen(RetrySpec.fixedDelay(MAX_NUM_OF_RETRY, Duration.ofMillis(RETRY_INTERVAL_MILLS)))
-                            .subscribe(newConn -> addConnectionToMap(key, newConn, protocol));
+                            .subscribe(newConn -> {
+                                event.connected = true;
+                                event.commit();
+                                addConnectionToMap(key, newConn, protocol);
+                            }, err -> event.commit());
                 }
             }
         };
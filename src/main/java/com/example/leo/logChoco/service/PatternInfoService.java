@@ -1,38 +1,33 @@
 package com.example.leo.logChoco.service;
 
 import com.example.leo.logChoco.config.LogChocoConfig;
-import com.example.leo.logChoco.config.entity.OutboundLogInfo;
-import com.example.leo.logChoco.entity.BufferInfo;
-import com.example.leo.logChoco.entity.log.LogInfo;
-import com.example.leo.logChoco.regex.FieldType;
+import com.example.leo.logChoco.config.entity.ProcessingInfo;
+import com.example.leo.logChoco.entity.FormatSetting;
+import com.example.leo.logChoco.entity.FormatSnapshot;
+import com.example.leo.logChoco.entity.LaneInfo;
+import com.example.leo.logChoco.entity.ReloadInfo;
+import com.example.leo.logChoco.entity.RouteTable;
 import com.example.leo.logChoco.entity.log.InboundLog;
+import com.example.leo.logChoco.entity.log.LogBatch;
+import com.example.leo.logChoco.entity.log.LogInfo;
 import com.example.leo.logChoco.entity.ReadFieldInfo;
 import com.example.leo.logChoco.exception.InvalidLogFormatException;
-import com.example.leo.logChoco.format.LogFormatterFactory;
-import com.example.leo.logChoco.regex.builder.AbstractRegexBuilder;
-import com.example.leo.logChoco.regex.builder.RegexBuilderFactory;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.example.leo.logChoco.jfr.BatchEvent;
+import com.example.leo.logChoco.processing.BatchProcessor;
+import com.example.leo.logChoco.processing.PipelineLane;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
-import reactor.core.publisher.Flux;
-import reactor.core.publisher.Sinks;
 
 import javax.annotation.PostConstruct;
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import javax.annotation.PreDestroy;
 import java.util.*;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.stream.IntStream;
-import java.util.stream.Stream;
 
 // 설정파일에서 ${DATE}`${TIME_STAMP}`{NUMBER}`{BOOLEAN}
 @Service
@@ -45,165 +40,232 @@ public class PatternInfoService {
     private final OutboundLogService outboundLogService;
     private final SettingService settingService;
     private final MonitorService monitorService;
+    private final TailService tailService;
+    private final FormatCompileService formatCompileService;
+    private final ExecutionService executionService;
+    private final DedupService dedupService;
 
-    @Getter
-    protected Sinks.Many<LogInfo> sink;
+    // independent paths of inbound logs. a lane is chosen by hash of source address.
+    private PipelineLane[] lanes;
 
-    // 모든 로그 포맷 정보 담고있는 리스트.
-    @Getter
-    private List<ReadFieldInfo> fieldInfoList;
+    // snapshot of every log format in use. replaced as a whole when setting file is reloaded.
+    private volatile FormatSnapshot snapshot;
 
-    // Separater that divides key and value for each option.
-    private final String DEFAULT_OPTION_KEY_VALUE_SEPERATOR = ":";
-    // Separator that divides each option.
-    private final String DEFAULT_OPTION_SEPARATOR = ",";
+    @Getter
+    private final ReloadInfo reloadInfo = new ReloadInfo();
 
     @PostConstruct
     public void init() {
         initRegexSetting();
 
-        sink = Sinks.many().unicast().onBackpressureBuffer();
-        Flux<List<LogInfo>> flux = sink.asFlux().bufferTimeout(BufferInfo.BUFFER_SIZE, BufferInfo.BUFFER_DURATION_SECOND);
-        flux.subscribe(consumeLogs());
+        ProcessingInfo processing = logChocoConfig.getProcessing();
+        lanes = new PipelineLane[Math.max(processing.getLanes(), 1)];
+        for(int i = 0; i < lanes.length; i++) {
+            BatchProcessor batchProcessor = new BatchProcessor(processing.getParallelism(), processing.getMinChunkSize(), processing.getOrder());
+            lanes[i] = new PipelineLane(i, batchProcessor, processing.getBatching(),
+                    executionService.newOrderedScheduler("pipeline-lane-" + i));
+            lanes[i].start(consumeLogs(lanes[i]));
+        }
+        logger.info("Process logs in {} lane(s) with {} thread(s) each. order : {}, engine : {}",
+                lanes.length, processing.getParallelism(), processing.getOrder(), executionService.getEngine());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        Arrays.stream(lanes).forEach(PipelineLane::shutdown);
     }
 
     /**
-     * send signal to MonitorService to get data on inbound logs.
+     * Return formats in use. it is replaced as a whole when setting file is reloaded.
      * */
-    private void sendSignalToMonitor(List<LogInfo> logs) {
-        monitorService.getInboundSink().emitNext(logs, Sinks.EmitFailureHandler.FAIL_FAST);
+    public FormatSnapshot getSnapshot() {
+        return snapshot;
     }
 
     /**
-     * Consumer for inbound logs from inboundService.java
+     * Give inbound log to the lane of its source address.
      * */
-    private Consumer<List<LogInfo>> consumeLogs() {
-        return logs -> {
-            sendSignalToMonitor(logs);
-            getFormattedLogText(logs);
-        };
+    public void emit(LogInfo log) {
+        laneOf(log.getIp()).emit(log);
     }
 
     /**
-     * Receive log text as a parameter.
-     * Iterate fieldInfoList to check if the log matches any log pattern.
-     * If it matches, return formatted log.
+     * Return number of logs that are given to the lane of source address but not handled yet.
      * */
-    private void getFormattedLogText(List<LogInfo> inboundLogList) {
-
-
-        Flux<LogInfo> flux = Flux.fromStream(inboundLogList.stream());
-
-        flux.doOnComplete(() -> {
-            logger.debug("Change log format. size : {}", inboundLogList.size());
-        }).subscribe(inboundLog -> {
-            Optional<ReadFieldInfo> optional = fieldInfoList.stream()
-                    .filter(info -> info.checkIfMatchLogRegex(inboundLog.getLog()))
-                    .findFirst();
-
-            if(optional.isPresent()) {
-                ReadFieldInfo fieldInfo = optional.get();
-                OutboundLogInfo outboundLogInfo = logChocoConfig.getOutboundLogInfo();
-
-                String formattedLog = LogFormatterFactory.getFormatter(outboundLogInfo, fieldInfo, inboundLog).getFormattedLog();
-                System.out.println("formatted : " + formattedLog);
-//                outboundLogService.getSink().emitNext(formattedLog, Sinks.EmitFailureHandler.FAIL_FAST);
-            }
-        });
+    public long getQueuedCount(String ip) {
+        return laneOf(ip).getQueuedCount();
     }
 
-
     /**
-     * Read setting file and set regex cache
-     * when process starts
+     * Return number of logs given to the lane of source address so far, including logs of other addresses of the lane.
      * */
-    private void initRegexSetting() {
-        fieldInfoList = readPatternInfoFile();
-
-        fieldInfoList.stream().forEach(fieldInfo -> {
-            try {
-                setRegexFormat(fieldInfo);
-            } catch (InvalidLogFormatException e) {
-                e.printStackTrace();
-            }
-        });
+    public long getReceivedCount(String ip) {
+        return laneOf(ip).getReceivedCount();
     }
 
     /**
-     * Method that  create regex format
-     */
-    private void setRegexFormat(ReadFieldInfo fieldInfo) throws InvalidLogFormatException {
-
-        String separatorForValue = DEFAULT_OPTION_KEY_VALUE_SEPERATOR;
-        String separatorForOption = DEFAULT_OPTION_SEPARATOR;
+     * Return number of logs handled by the lane of source address so far.
+     * Every log given before received count was n is handled when this reaches n.
+     * */
+    public long getProcessedCount(String ip) {
+        return laneOf(ip).getProcessedCount();
+    }
 
-        String delimiter = fieldInfo.getDelimiter();
-        List<String> formatList = fieldInfo.getFormat();
-        String[] formats = formatList.toArray(new String[formatList.size()]);
-        List<String> columList = fieldInfo.getColumns();
+    private PipelineLane laneOf(String ip) {
+        return lanes[lanes.length == 1 || ip == null ? 0 : (ip.hashCode() & Integer.MAX_VALUE) % lanes.length];
+    }
 
+    /**
+     * Return received and handled count of each lane.
+     * */
+    public List<LaneInfo> getLaneInfoList() {
+        return Arrays.stream(lanes).map(PipelineLane::getLaneInfo).collect(Collectors.toList());
+    }
 
-        if(formatList.size() < 1 || columList.size() < 1) {
-            throw new InvalidLogFormatException("Check format, columns, delimiter in configuration file. The length of 'format' or 'columns' separated by delimiter is less than 1");
-        }
+    /**
+     * Consumer for inbound logs of a lane from inboundService.java
+     * Logs are copied into a columnar batch that is used by every stage and given back to pool of the lane at the end.
+     * Formatted logs are sent to outbound once for each batch.
+     * */
+    private Consumer<List<LogInfo>> consumeLogs(PipelineLane lane) {
+        return logs -> {
+            BatchEvent event = new BatchEvent();
+            event.begin();
 
-        if(formatList.size() != columList.size()) {
-            throw new InvalidLogFormatException("The length of format in configuration file should be same with the length of colums");
-        }
+            // every log in a batch is handled with the same formats even if setting file is reloaded meanwhile.
+            FormatSnapshot current = snapshot;
 
-        StringBuilder regexSb = new StringBuilder();
-        IntStream.range(0, formats.length).forEach(i -> {
-            String format = formats[i];
+            LogBatch batch = lane.getLogBatchPool().acquire();
+            // formatted logs of each target set of routes. sent once for each target set.
+            RouteTable routeTable = current.getRouteTable();
+            List<List<String>> outboundLogs = new ArrayList<>(Collections.nCopies(routeTable.getTargetSetCount(), null));
             try {
-                String type = format;
-                Map<String, String> optionMap = new HashMap<>();
-
-                // Save each option for each columns into map.
-                if(format.indexOf("(") > 0 && format.endsWith(")")) {
-                    type = format.substring(0, format.indexOf("("));
-                    String[] options = format.substring(format.indexOf("(") + 1, format.indexOf(")")).split(separatorForOption);
-
-                    Arrays.stream(options).forEach(option -> {
-                        String[] kv = option.split(separatorForValue,2 );
-
-                        if(kv.length != 2) {
-                            logger.warn("Wrong option for {}. each option must have key and value separated by {}", format, separatorForValue);
-                            return;
-                        }
-                        optionMap.put(kv[0], kv[1]);
-                    });
+                batch.addAll(logs);
+                monitorService.addInboundBatch(batch);
+                lane.getBatchProcessor().process(batch, current, logChocoConfig.getOutboundLogInfo(),
+                        (b, line) -> emitLine(b, line, current, outboundLogs));
+                logger.debug("Change log format. size : {}", batch.getSize());
+            } finally {
+                lane.getLogBatchPool().release(batch);
+                // logs are copied into batch, so pooled logs are not used any more.
+                logs.forEach(log -> {
+                    if(log instanceof InboundLog inboundLog) {
+                        inboundLog.recycle();
+                    }
+                });
+            }
+            for(int targetSet = 0; targetSet < outboundLogs.size(); targetSet++) {
+                if(outboundLogs.get(targetSet) != null) {
+                    outboundLogService.send(outboundLogs.get(targetSet), routeTable.getTargets(targetSet));
                 }
+            }
 
-                // Get regex builder according to field type. and add option to it.
-                AbstractRegexBuilder builder = RegexBuilderFactory.getRegexBuilder(FieldType.valueOf(type));
-                builder.addRegexOptions(optionMap);
+            event.end();
+            if(event.shouldCommit()) {
+                event.stage = "pattern";
+                event.size = logs.size();
+                event.commit();
+            }
+        };
+    }
 
-                regexSb.append(builder.getValue()).append(delimiter);
+    /**
+     * Called for each line of batch after it is matched and formatted, in order of processing order.
+     * */
+    private void emitLine(LogBatch batch, int line, FormatSnapshot current, List<List<String>> outboundLogs) {
+        int formatIndex = batch.getFormatIndex(line);
+        if(formatIndex >= 0 && batch.isDropped(line)) {
+            return;
+        }
+        if(formatIndex >= 0) {
+            if(tailService.isActive()) {
+                tailService.publish(batch, line, batch.getEventId(line), batch.getFormattedLog(line));
+            }
 
-            } catch (IllegalArgumentException e) {
-                logger.error("Field type {} is not supported.  ", format);
-                e.printStackTrace();
+            ReadFieldInfo fieldInfo = current.getFieldInfoList().get(formatIndex);
+            int targetSet = current.getRouteTable().route(batch, line, fieldInfo.getSeverityIndex());
+            if(targetSet >= 0) {
+                // repeats of a log that is already sent are counted by dedupService, and sent later as one log.
+                if(dedupService.offer(fieldInfo, batch, line, current.getRouteTable().getTargets(targetSet), batch.getFormattedLog(line))) {
+                    return;
+                }
+                if(outboundLogs.get(targetSet) == null) {
+                    outboundLogs.set(targetSet, new ArrayList<>(batch.getSize()));
+                }
+                outboundLogs.get(targetSet).add(batch.getFormattedLog(line));
             }
-        });
+        } else {
+            monitorService.addUnmatchedLog(batch, line);
 
-        regexSb.deleteCharAt(regexSb.lastIndexOf(delimiter));
-        fieldInfo.setFormatInRegex(regexSb.toString());
+            if(tailService.isActive()) {
+                tailService.publish(batch, line, null, null);
+            }
+        }
     }
 
+    /**
+     * Return formats in use.
+     * */
+    public List<ReadFieldInfo> getFieldInfoList() {
+        return snapshot.getFieldInfoList();
+    }
 
-    private List<ReadFieldInfo> readPatternInfoFile() {
-
+    /**
+     * Read setting file and set regex cache
+     * when process starts
+     * */
+    private void initRegexSetting() {
         String filePath = logChocoConfig.getFilePath();
         logger.info("Read configuration file -> {}", filePath);
-        ObjectMapper mapper = new ObjectMapper();
 
-        String formatSetting =  settingService.getFormatSetting();
+        FormatSetting setting = settingService.getFormatSettingSnapshot().blockOptional()
+                .orElseThrow(() -> new RuntimeException("Setting file for log format can't be read -> " + filePath));
         try {
-            return mapper.readValue(formatSetting, new TypeReference<List<ReadFieldInfo>>() {});
-        } catch (JsonProcessingException e) {
+            snapshot = formatCompileService.compile(setting.getContent(), 1, logChocoConfig);
+            settingService.setActiveFormatSetting(setting);
+        } catch (InvalidLogFormatException e) {
             throw new RuntimeException(e);
         }
+        reloadInfo.setVersion(snapshot.getVersion());
+        reloadInfo.setLastSuccessAt(snapshot.getLoadedAt());
+    }
+
+    /**
+     * Read setting file again and replace formats in use.
+     * Formats in use are kept if any of new formats is not valid.
+     * It blocks while reading setting file, so it must not be called on event loop.
+     * */
+    public synchronized boolean reloadRegexSetting() {
+        long start = System.nanoTime();
 
+        try {
+            FormatSetting setting = settingService.refreshFormatSetting().block();
+            FormatSetting active = settingService.getActiveFormatSetting().block();
+            if(active != null && setting.getHash().equals(active.getHash())) {
+                logger.debug("Setting file is not changed. skip reloading formats");
+                return true;
+            }
+
+            FormatSnapshot next = formatCompileService.compile(setting.getContent(), snapshot.getVersion() + 1, logChocoConfig);
+            snapshot = next;
+            settingService.setActiveFormatSetting(setting);
+
+            reloadInfo.setVersion(next.getVersion());
+            reloadInfo.setSuccessCount(reloadInfo.getSuccessCount() + 1);
+            reloadInfo.setLastSuccessAt(next.getLoadedAt());
+            reloadInfo.setLastReloadMillis((System.nanoTime() - start) / 1_000_000);
+            logger.info("Formats are reloaded. version : {}, formats : {}, took {} ms",
+                    next.getVersion(), next.getFieldInfoList().size(), reloadInfo.getLastReloadMillis());
+            return true;
+
+        } catch (InvalidLogFormatException | RuntimeException e) {
+            reloadInfo.setFailureCount(reloadInfo.getFailureCount() + 1);
+            reloadInfo.setLastFailureAt(System.currentTimeMillis());
+            reloadInfo.setLastReloadMillis((System.nanoTime() - start) / 1_000_000);
+            reloadInfo.setLastError(e.getMessage());
+            logger.error("Failed to reload formats. keep version {}. {}", snapshot.getVersion(), e.getMessage());
+            return false;
+        }
     }
 
     private boolean validatePattern(String input, String pattern) {
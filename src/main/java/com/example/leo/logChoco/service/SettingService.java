@@ -1,46 +1,195 @@
 package com.example.leo.logChoco.service;
 
 import com.example.leo.logChoco.config.LogChocoConfig;
-import com.example.leo.logChoco.entity.ReadFieldInfo;
-import com.fasterxml.jackson.core.type.TypeReference;
-import lombok.Getter;
+import com.example.leo.logChoco.entity.FormatSetting;
+import com.example.leo.logChoco.entity.FormatSnapshot;
+import com.example.leo.logChoco.exception.InvalidLogFormatException;
 import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
-import java.io.IOException;
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.Objects;
 
 /**
  * Class that is in charge of managing setting file.
+ * Content of setting file is cached and read again only when it is refreshed.
  * */
 @Service
 @RequiredArgsConstructor
 public class SettingService {
 
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
     private final LogChocoConfig logChocoConfig;
+    private final FormatCompileService formatCompileService;
+
+    private final int READ_BUFFER_SIZE = 8192;
+
+    // content of setting file that is read last.
+    private volatile FormatSetting formatSetting;
+    // content that is validated but not written to setting file yet.
+    private volatile FormatSetting stagedSetting;
+    // content that formats in use are compiled from. it differs from formatSetting while reloading fails.
+    private volatile FormatSetting activeSetting;
 
+    // held while setting file is compared with If-Match and written, so no other write comes between them.
+    private final Object fileLock = new Object();
+
+    @PostConstruct
+    public void init() {
+        // blocking is fine here. it runs once on main thread before any server starts.
+        refreshFormatSetting().onErrorResume(e -> {
+            logger.error("Failed to read setting file {}. {}", logChocoConfig.getFilePath(), e.getMessage());
+            return Mono.empty();
+        }).block();
+    }
 
     /**
-     * Read setting file for log format and return it.
+     * Return cached setting file for log format.
+     * Return null if setting file has never been read.
      * */
     public String getFormatSetting() {
-        String filePath = logChocoConfig.getFilePath();
+        FormatSetting setting = formatSetting;
+        return setting == null ? null : setting.getContent();
+    }
+
+    /**
+     * Return cached setting file with its version and hash.
+     * */
+    public Mono<FormatSetting> getFormatSettingSnapshot() {
+        return Mono.justOrEmpty(formatSetting);
+    }
+
+    /**
+     * Return setting that formats in use are compiled from.
+     * */
+    public Mono<FormatSetting> getActiveFormatSetting() {
+        return Mono.justOrEmpty(activeSetting);
+    }
+
+    /**
+     * Mark setting as the one formats in use are compiled from. called when formats are loaded.
+     * */
+    public void setActiveFormatSetting(FormatSetting setting) {
+        activeSetting = setting;
+    }
+
+    /**
+     * Read setting file with non-blocking I/O and update cache.
+     * Version is increased only if content is changed.
+     * */
+    public Mono<FormatSetting> refreshFormatSetting() {
+        Path path = Paths.get(logChocoConfig.getFilePath());
 
-        Path path = Paths.get(filePath);
+        return DataBufferUtils.join(DataBufferUtils.read(path, DefaultDataBufferFactory.sharedInstance, READ_BUFFER_SIZE))
+                .map(buffer -> {
+                    String content = buffer.toString(StandardCharsets.UTF_8);
+                    DataBufferUtils.release(buffer);
+                    return content;
+                })
+                .defaultIfEmpty("")
+                .map(this::updateFormatSetting);
+    }
+
+    private synchronized FormatSetting updateFormatSetting(String content) {
+        String hash = hash(content);
+        FormatSetting current = formatSetting;
 
-        try (Stream<String> lines = Files.lines(path)) {
-            String json = lines.collect(Collectors.joining());
-            return json;
-        } catch (IOException e) {
-            e.printStackTrace();
-            return null;
+        if(current != null && current.getHash().equals(hash)) {
+            return current;
         }
+
+        formatSetting = new FormatSetting(content, hash, current == null ? 1 : current.getVersion() + 1);
+        return formatSetting;
     }
 
+    /**
+     * Validate formats and keep them to write to setting file later.
+     * */
+    public Mono<FormatSetting> stageFormatSetting(String content) {
+        return Mono.fromCallable(() -> {
+                    FormatSnapshot snapshot = formatCompileService.compile(content, 0, logChocoConfig);
+                    logger.info("{} formats are staged", snapshot.getFieldInfoList().size());
+
+                    FormatSetting current = formatSetting;
+                    FormatSetting staged = new FormatSetting(content, hash(content), current == null ? 1 : current.getVersion() + 1);
+                    stagedSetting = staged;
+                    return staged;
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Return formats that are staged.
+     * */
+    public Mono<FormatSetting> getStagedFormatSetting() {
+        return Mono.justOrEmpty(stagedSetting);
+    }
 
+    /**
+     * Write staged formats to setting file.
+     * Fail if hash of setting file is none of expected hashes, unless expected hashes are null.
+     * Setting file is read, compared and written under one lock with blocking I/O, so nothing is written between them.
+     * File is replaced at once so the file watcher never reads half-written file.
+     * */
+    public Mono<FormatSetting> applyStagedFormatSetting(List<String> expectedHashes) {
+        Path path = Paths.get(logChocoConfig.getFilePath()).toAbsolutePath();
+        Path tempPath = path.resolveSibling(path.getFileName() + ".staged");
+
+        return Mono.fromCallable(() -> {
+                    synchronized (fileLock) {
+                        FormatSetting staged = stagedSetting;
+                        if(staged == null) {
+                            throw new InvalidLogFormatException("No format is staged");
+                        }
+
+                        // compare with setting file as it is now. cache can be behind if file is edited by hand.
+                        FormatSetting current = Files.exists(path)
+                                ? updateFormatSetting(Files.readString(path, StandardCharsets.UTF_8)) : formatSetting;
+                        if(expectedHashes != null && current != null && !expectedHashes.contains(current.getHash())) {
+                            throw new IllegalStateException("Setting file is changed. current hash is " + current.getHash());
+                        }
+
+                        Files.write(tempPath, staged.getContent().getBytes(StandardCharsets.UTF_8),
+                                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                        Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+                        synchronized (this) {
+                            if(Objects.equals(stagedSetting, staged)) {
+                                stagedSetting = null;
+                            }
+                        }
+                        return updateFormatSetting(staged.getContent());
+                    }
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private String hash(String content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for(byte b : digest) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 }
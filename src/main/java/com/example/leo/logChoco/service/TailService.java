@@ -0,0 +1,127 @@
+package com.example.leo.logChoco.service;
+
+import com.example.leo.logChoco.entity.TailEvent;
+import com.example.leo.logChoco.entity.TailFilter;
+import com.example.leo.logChoco.entity.log.LogBatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class that sends inbound logs to live tail clients.
+ * Logs are dropped when a client can't keep up, so tailing never slows down the pipeline.
+ * */
+@Service
+public class TailService {
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
+    // number of events that are kept for each client before dropping.
+    private final int TAIL_BUFFER_SIZE = 256;
+
+    private static final TailSubscriber[] EMPTY = new TailSubscriber[0];
+
+    // replaced as a whole when a client comes or goes, so the pipeline only needs a volatile read.
+    private volatile TailSubscriber[] subscribers = EMPTY;
+
+    /**
+     * Return true if any client is tailing logs.
+     * */
+    public boolean isActive() {
+        return subscribers.length > 0;
+    }
+
+    /**
+     * Register new client and return logs that pass the filter.
+     * */
+    public Flux<TailEvent> subscribe(TailFilter filter) {
+        Sinks.Many<TailEvent> sink = Sinks.many().unicast().onBackpressureBuffer(Queues.<TailEvent>get(TAIL_BUFFER_SIZE).get());
+        TailSubscriber subscriber = new TailSubscriber(filter, sink);
+
+        return sink.asFlux()
+                .doOnSubscribe(s -> addSubscriber(subscriber))
+                .doFinally(signal -> {
+                    removeSubscriber(subscriber);
+                    logger.info("Live tail is closed. dropped : {}", subscriber.dropped.get());
+                });
+    }
+
+    /**
+     * Send a log to every client whose filter accepts it.
+     * formattedLog and eventId are null when no format is matched.
+     * */
+    public void publish(LogBatch batch, int line, String eventId, String formattedLog) {
+        TailEvent event = null;
+        int formatIndex = batch.getFormatIndex(line);
+
+        for(TailSubscriber subscriber : subscribers) {
+            if(!isAccepted(subscriber.filter, batch, line, formatIndex, eventId)) {
+                continue;
+            }
+
+            if(event == null) {
+                event = new TailEvent();
+                event.setIp(batch.getIp(line));
+                event.setPort(batch.getPort(line));
+                event.setFormatIndex(formatIndex);
+                event.setEventId(eventId);
+                event.setEventTime(batch.getEventTime(line));
+                event.setPriority(batch.getPriority(line));
+                event.setAppName(batch.getAppName(line));
+                event.setRawLog(batch.getLine(line));
+                event.setFormattedLog(formattedLog);
+            }
+
+            if(subscriber.sink.tryEmitNext(event).isFailure()) {
+                subscriber.dropped.incrementAndGet();
+            }
+        }
+    }
+
+    private boolean isAccepted(TailFilter filter, LogBatch batch, int line, int formatIndex, String eventId) {
+        if(filter.getIp() != null && !filter.getIp().equals(batch.getIp(line))) {
+            return false;
+        }
+        if(filter.getFormatIndex() != null && filter.getFormatIndex() != formatIndex) {
+            return false;
+        }
+        if(filter.getEventId() != null && !filter.getEventId().equals(eventId)) {
+            return false;
+        }
+        if(filter.getSampleRate() < 1.0 && ThreadLocalRandom.current().nextDouble() >= filter.getSampleRate()) {
+            return false;
+        }
+        // regex is checked last because it is the most expensive one.
+        return filter.getRawPattern() == null || filter.getRawPattern().matcher(batch.getLine(line)).find();
+    }
+
+    private synchronized void addSubscriber(TailSubscriber subscriber) {
+        TailSubscriber[] next = Arrays.copyOf(subscribers, subscribers.length + 1);
+        next[next.length - 1] = subscriber;
+        subscribers = next;
+    }
+
+    private synchronized void removeSubscriber(TailSubscriber subscriber) {
+        subscribers = Arrays.stream(subscribers)
+                .filter(s -> s != subscriber)
+                .toArray(TailSubscriber[]::new);
+    }
+
+    private static class TailSubscriber {
+        private final TailFilter filter;
+        private final Sinks.Many<TailEvent> sink;
+        private final AtomicLong dropped = new AtomicLong();
+
+        private TailSubscriber(TailFilter filter, Sinks.Many<TailEvent> sink) {
+            this.filter = filter;
+            this.sink = sink;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.leo.logChoco.bench;
+
+import com.example.leo.logChoco.entity.Compression;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.compression.ZlibCodecFactory;
+import io.netty.util.CharsetUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmark of CPU cost and saved bytes of compressed TCP streams, with the same netty codecs as receive-server and target-server.
+ * Raw logs are compressed as a sender relays them, and formatted LEEF logs as logChoco sends a batch in one write.
+ * It is not a unit test. run it with main, e.g.
+ * java -cp target/classes:target/test-classes:(dependencies) com.example.leo.logChoco.bench.CompressionBench [logs] [logs per write]
+ * */
+public class CompressionBench {
+
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        int logCount = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int logsPerWrite = args.length > 1 ? Integer.parseInt(args[1]) : 1024;
+
+        Random random = new Random(7);
+        List<String> rawLogs = new ArrayList<>(logCount);
+        List<String> leefLogs = new ArrayList<>(logCount);
+        for(int i = 0; i < logCount; i++) {
+            String sip = "10." + random.nextInt(4) + "." + random.nextInt(256) + "." + random.nextInt(256);
+            String dip = "172.16." + random.nextInt(16) + "." + random.nextInt(256);
+            int sport = 1024 + random.nextInt(60000);
+            int dport = new int[]{22, 53, 80, 443, 3306, 8080}[random.nextInt(6)];
+            String time = String.format("2024/02/29 07:%02d:%02d.%03d", i / 60000 % 60, i / 1000 % 60, i % 1000);
+            String id = "EV" + random.nextInt(50);
+            int rx = random.nextInt(100000);
+            int tx = random.nextInt(100000);
+            boolean critical = random.nextInt(20) == 0;
+
+            rawLogs.add(time + "'" + id + "'" + sip + "'" + sport + "'" + dip + "'" + dport + "'" + random.nextInt(5)
+                    + "'" + rx + "'" + tx + "'" + critical + "\n");
+            leefLogs.add("Feb 29 07:05:09 10.0.0.1 LEEF:2.0|Leo|log-choco|1.0.0|" + id + "|,|date=" + time + ",id=" + id
+                    + ",sip=" + sip + ",sport=" + sport + ",dip=" + dip + ",dport=" + dport + ",serverity=" + random.nextInt(5)
+                    + ",rxbps=" + rx + ",txbps=" + tx + ",critical=" + critical + "\n");
+        }
+
+        System.out.printf("%d logs, %d logs per write%n", logCount, logsPerWrite);
+        System.out.printf("%-6s %-8s %8s %10s %8s %14s %14s%n", "logs", "codec", "writes", "MB", "ratio", "compress ns/B", "inflate ns/B");
+        for(Compression compression : new Compression[]{Compression.GZIP, Compression.DEFLATE}) {
+            run("raw", compression, toWrites(rawLogs, logsPerWrite));
+            run("leef", compression, toWrites(leefLogs, logsPerWrite));
+            run("leef", compression, toWrites(leefLogs, 1));
+        }
+    }
+
+    private static List<byte[]> toWrites(List<String> logs, int logsPerWrite) {
+        List<byte[]> writes = new ArrayList<>();
+        for(int i = 0; i < logs.size(); i += logsPerWrite) {
+            writes.add(String.join("", logs.subList(i, Math.min(i + logsPerWrite, logs.size()))).getBytes(CharsetUtil.UTF_8));
+        }
+        return writes;
+    }
+
+    private static void run(String name, Compression compression, List<byte[]> writes) {
+        long rawBytes = writes.stream().mapToLong(w -> w.length).sum();
+        long compressedBytes = 0;
+        long compressNanos = Long.MAX_VALUE;
+        long inflateNanos = Long.MAX_VALUE;
+
+        for(int round = 0; round < ROUNDS; round++) {
+            EmbeddedChannel encoder = new EmbeddedChannel(ZlibCodecFactory.newZlibEncoder(compression.getEncoderWrapper()));
+            List<ByteBuf> compressed = new ArrayList<>();
+            long start = System.nanoTime();
+            for(byte[] write : writes) {
+                encoder.writeOutbound(Unpooled.wrappedBuffer(write));
+                ByteBuf out;
+                while((out = encoder.readOutbound()) != null) {
+                    compressed.add(out);
+                }
+            }
+            compressNanos = Math.min(compressNanos, System.nanoTime() - start);
+            compressedBytes = compressed.stream().mapToLong(ByteBuf::readableBytes).sum();
+
+            EmbeddedChannel decoder = new EmbeddedChannel(ZlibCodecFactory.newZlibDecoder(compression.getDecoderWrapper()));
+            long inflated = 0;
+            start = System.nanoTime();
+            for(ByteBuf buf : compressed) {
+                decoder.writeInbound(buf);
+                ByteBuf out;
+                while((out = decoder.readInbound()) != null) {
+                    inflated += out.readableBytes();
+                    out.release();
+                }
+            }
+            inflateNanos = Math.min(inflateNanos, System.nanoTime() - start);
+            if(inflated != rawBytes) {
+                throw new IllegalStateException("inflated " + inflated + " bytes of " + rawBytes);
+            }
+            encoder.finishAndReleaseAll();
+            decoder.finishAndReleaseAll();
+        }
+
+        System.out.printf("%-6s %-8s %8d %10.1f %8.2f %14.2f %14.2f%n", name, compression, writes.size(),
+                rawBytes / (1024.0 * 1024.0), (double) rawBytes / compressedBytes,
+                (double) compressNanos / rawBytes, (double) inflateNanos / rawBytes);
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.leo.logChoco.bench;
+
+import com.example.leo.logChoco.config.LogChocoConfig;
+import com.example.leo.logChoco.entity.ExecutionEngine;
+import com.example.leo.logChoco.service.ExecutionService;
+import ch.qos.logback.classic.Level;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+
+/**
+ * Benchmark of blocking stages on each execution engine with the same workload.
+ * Each task blocks like a disk write, then does a little work. VIRTUAL_THREAD falls back to REACTOR on JDK older than 21.
+ * It is not a unit test. run it with main, e.g.
+ * java -cp target/classes:target/test-classes:(dependencies) com.example.leo.logChoco.bench.ExecutionEngineBench [tasks] [concurrency] [block millis]
+ * */
+public class ExecutionEngineBench {
+
+    public static void main(String[] args) throws Exception {
+        int tasks = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 256;
+        long blockMillis = args.length > 2 ? Long.parseLong(args[2]) : 2;
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.INFO);
+
+        System.out.printf("tasks %d, concurrency %d, block %d ms, java %s%n", tasks, concurrency, blockMillis, Runtime.version());
+        for(ExecutionEngine engine : ExecutionEngine.values()) {
+            LogChocoConfig config = new LogChocoConfig();
+            config.getProcessing().setEngine(engine);
+            config.getProcessing().setBlockingConcurrency(concurrency);
+            ExecutionService executionService = new ExecutionService(config);
+            executionService.init();
+
+            // warm up
+            run(executionService, tasks / 10, concurrency, blockMillis);
+
+            long start = System.nanoTime();
+            long sum = run(executionService, tasks, concurrency, blockMillis);
+            double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+            System.out.printf("%-15s (runs on %-14s) %10.0f tasks/s %8.1f ms (%d)%n",
+                    engine, executionService.getEngine(), tasks / seconds, seconds * 1000, sum);
+            executionService.destroy();
+        }
+    }
+
+    private static long run(ExecutionService executionService, int tasks, int concurrency, long blockMillis) {
+        return Flux.range(0, tasks)
+                .flatMap(i -> executionService.blocking(() -> {
+                    Thread.sleep(blockMillis);
+                    long hash = i;
+                    for(int j = 0; j < 1000; j++) {
+                        hash = hash * 31 + j;
+                    }
+                    return hash & 1;
+                }), concurrency)
+                .reduce(0L, Long::sum)
+                .block();
+    }
+}
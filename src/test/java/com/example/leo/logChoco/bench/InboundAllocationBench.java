@@ -0,0 +1,104 @@
+package com.example.leo.logChoco.bench;
+
+import com.example.leo.logChoco.entity.log.InboundLog;
+import com.example.leo.logChoco.entity.log.LogBatch;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.CharsetUtil;
+import io.netty.util.ResourceLeakDetector;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Benchmark of allocation for reading inbound logs, with a new log object for each frame and with pooled logs.
+ * Pooled logs are recycled on the reading thread, and on another thread like pipeline lanes do.
+ * Allocation of both threads is counted.
+ * It is not a unit test. run it with main, e.g.
+ * java -cp target/classes:target/test-classes:(dependencies) com.example.leo.logChoco.bench.InboundAllocationBench [logs per batch]
+ * */
+public class InboundAllocationBench {
+
+    private static final int ROUNDS = 200;
+
+    public static void main(String[] args) throws Exception {
+        int batchSize = args.length > 0 ? Integer.parseInt(args[0]) : 10 * 1024;
+        // leak tracking samples logs and would be measured instead.
+        ResourceLeakDetector.setLevel(ResourceLeakDetector.Level.DISABLED);
+
+        InetAddress address = InetAddress.getByName("10.0.0.1");
+        byte[] rawAddress = address.getAddress();
+        String cachedAddr = address.getHostAddress();
+        ByteBuf frame = Unpooled.copiedBuffer("2024/02/29 07:05:09.123'EV1'10.0.0.1'80'10.0.0.2'443'3''5'true", CharsetUtil.UTF_8);
+
+        LogBatch batch = new LogBatch();
+        List<InboundLog> logs = new ArrayList<>(batchSize);
+        // stands for the thread of a pipeline lane, which copies logs into batch and recycles them.
+        ExecutorService lane = Executors.newSingleThreadExecutor(r -> new Thread(r, "bench-lane"));
+        long laneThreadId = lane.submit(() -> Thread.currentThread().getId()).get();
+
+        for(int pass = 0; pass < 2; pass++) {
+            // first pass warms up.
+            long bytes = allocatedBytes();
+            long start = System.nanoTime();
+            for(int r = 0; r < ROUNDS; r++) {
+                for(int i = 0; i < batchSize; i++) {
+                    logs.add(new InboundLog(address.getHostAddress(), 514, frame.toString(CharsetUtil.UTF_8)));
+                }
+                batch.addAll(logs);
+                batch.clear();
+                logs.clear();
+            }
+            report(pass, "new log per frame", allocatedBytes() - bytes, System.nanoTime() - start, batchSize);
+
+            bytes = allocatedBytes();
+            start = System.nanoTime();
+            for(int r = 0; r < ROUNDS; r++) {
+                for(int i = 0; i < batchSize; i++) {
+                    logs.add(InboundLog.newInstance(rawAddress, cachedAddr, 514, frame));
+                }
+                batch.addAll(logs);
+                batch.clear();
+                logs.forEach(InboundLog::recycle);
+                logs.clear();
+            }
+            report(pass, "pooled log", allocatedBytes() - bytes, System.nanoTime() - start, batchSize);
+
+            bytes = allocatedBytes() + allocatedBytes(laneThreadId);
+            start = System.nanoTime();
+            for(int r = 0; r < ROUNDS; r++) {
+                for(int i = 0; i < batchSize; i++) {
+                    logs.add(InboundLog.newInstance(rawAddress, cachedAddr, 514, frame));
+                }
+                lane.submit(() -> {
+                    batch.addAll(logs);
+                    batch.clear();
+                    logs.forEach(InboundLog::recycle);
+                    logs.clear();
+                }).get();
+            }
+            report(pass, "pooled, lane recycles", allocatedBytes() + allocatedBytes(laneThreadId) - bytes, System.nanoTime() - start, batchSize);
+        }
+        lane.shutdown();
+    }
+
+    private static void report(int pass, String name, long bytes, long nanos, int batchSize) {
+        if(pass == 0) {
+            return;
+        }
+        long count = (long) ROUNDS * batchSize;
+        System.out.printf("%-22s %8.1f bytes/log %8.1f ns/log%n", name, (double) bytes / count, (double) nanos / count);
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+
+    private static long allocatedBytes(long threadId) {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(threadId);
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.leo.logChoco.bench;
+
+import com.example.leo.logChoco.config.entity.LeefInfo;
+import com.example.leo.logChoco.config.entity.OutboundLogInfo;
+import com.example.leo.logChoco.entity.FormatSnapshot;
+import com.example.leo.logChoco.entity.ProcessingOrder;
+import com.example.leo.logChoco.entity.log.LogBatch;
+import com.example.leo.logChoco.processing.BatchProcessor;
+import com.example.leo.logChoco.service.FormatCompileService;
+import ch.qos.logback.classic.Level;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Benchmark of BatchProcessor with 1 to N workers.
+ * It is not a unit test. run it with main, e.g.
+ * java -cp target/classes:target/test-classes:(dependencies) com.example.leo.logChoco.bench.ParallelScalingBench [max workers] [batch size]
+ * */
+public class ParallelScalingBench {
+
+    private static final int SOURCES = 64;
+    private static final int ROUNDS = 20;
+
+    public static void main(String[] args) throws Exception {
+        int maxWorkers = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int batchSize = args.length > 1 ? Integer.parseInt(args[1]) : 10 * 1024;
+        // debug log of every formatted log would be measured instead.
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.INFO);
+
+        String setting = new String(Files.readAllBytes(Paths.get("src/main/resources/sample/sampleFormat.json")));
+        FormatSnapshot snapshot = new FormatCompileService().compile(setting, 1);
+        OutboundLogInfo outboundLogInfo = createOutboundLogInfo();
+
+        LogBatch batch = new LogBatch();
+        for(int i = 0; i < batchSize; i++) {
+            String ip = "10.0.0." + (i % SOURCES);
+            batch.add(ip, 514, i % 2 == 0
+                    ? "2024/02/29 07:05:" + String.format("%02d", i % 60) + ".123'EV" + (i % 10) + "'10.0.0.1'80'10.0.0.2'443'3''5'true"
+                    : "2024-02-29 07:05:09.123'EV" + (i % 10) + "'10.0.0.1'80'KR'10.0.0.2'443'US'3'1'5'false");
+        }
+
+        System.out.printf("batch size %d, sources %d, cores %d%n", batchSize, SOURCES, Runtime.getRuntime().availableProcessors());
+        for(ProcessingOrder order : ProcessingOrder.values()) {
+            double base = 0;
+            for(int workers = 1; workers <= maxWorkers; workers = workers < 4 ? workers + 1 : workers * 2) {
+                BatchProcessor processor = new BatchProcessor(workers, 256, order);
+                long[] consumed = new long[1];
+
+                // warm up
+                for(int i = 0; i < ROUNDS; i++) {
+                    processor.process(batch, snapshot, outboundLogInfo, (b, line) -> consumed[0]++);
+                }
+
+                long start = System.nanoTime();
+                for(int i = 0; i < ROUNDS; i++) {
+                    processor.process(batch, snapshot, outboundLogInfo, (b, line) -> consumed[0]++);
+                }
+                double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+                double logsPerSecond = (double) batchSize * ROUNDS / seconds;
+                if(workers == 1) {
+                    base = logsPerSecond;
+                }
+
+                System.out.printf("%-6s workers %3d : %,12.0f logs/s  x%.2f%n", order, workers, logsPerSecond, logsPerSecond / base);
+                processor.shutdown();
+            }
+        }
+    }
+
+    private static OutboundLogInfo createOutboundLogInfo() {
+        LeefInfo leefInfo = new LeefInfo();
+        leefInfo.setLeefVersion("2.0");
+        leefInfo.setVendor("Leo");
+        leefInfo.setProductName("log-choco");
+        leefInfo.setProductVersion("1.0.0");
+        leefInfo.setDelimiter(",");
+
+        OutboundLogInfo outboundLogInfo = new OutboundLogInfo();
+        outboundLogInfo.setLeefInfo(leefInfo);
+        return outboundLogInfo;
+    }
+}
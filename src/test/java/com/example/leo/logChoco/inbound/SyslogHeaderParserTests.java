@@ -0,0 +1,145 @@
+package com.example.leo.logChoco.inbound;
+
+import com.example.leo.logChoco.entity.SyslogFormat;
+import com.example.leo.logChoco.regex.scanner.EventTimeParser;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SyslogHeaderParserTests {
+
+	private final SyslogHeaderParser parser = new SyslogHeaderParser(SyslogFormat.AUTO);
+
+	@Test
+	void bsdLineWithoutHostnameUsesTagAsAppName() {
+		ByteBuf buf = parse("<13>Feb 28 07:05:09 sshd[1]: msg");
+
+		assertEquals(13, parser.getPriority());
+		assertNull(parser.getHostname());
+		assertEquals("sshd", parser.getAppName());
+		assertEquals("msg", body(buf));
+
+		parse("<13>Feb 28 07:05:09 cron: run");
+		assertNull(parser.getHostname());
+		assertEquals("cron", parser.getAppName());
+	}
+
+	@Test
+	void bsdLineWithoutTagHasOnlyHostname() {
+		ByteBuf buf = parse("<13>Feb 28 07:05:09 host plain text: here");
+
+		assertEquals("host", parser.getHostname());
+		assertNull(parser.getAppName());
+		assertEquals("plain text: here", body(buf));
+
+		// a line with nothing after timestamp has no header.
+		assertFalse(parser.parse(Unpooled.copiedBuffer("<13>Feb 28 07:05:09 message", StandardCharsets.UTF_8)));
+	}
+
+	@Test
+	void ipv6HostnameIsNotTakenAsTag() {
+		ByteBuf buf = parse("<13>Feb 28 07:05:09 fe80::1 su: hi");
+		assertEquals("fe80::1", parser.getHostname());
+		assertEquals("su", parser.getAppName());
+		assertEquals("hi", body(buf));
+
+		buf = parse("<14>1 2024-02-28T07:05:09Z 2001:db8::1 app 12 ID7 - hello");
+		assertEquals("2001:db8::1", parser.getHostname());
+		assertEquals("app", parser.getAppName());
+		assertEquals("hello", body(buf));
+	}
+
+	@Test
+	void nilFieldsAreEmpty() {
+		ByteBuf buf = parse("<165>1 - - - - - - msg");
+
+		assertEquals(165, parser.getPriority());
+		assertEquals(EventTimeParser.UNKNOWN_TIME, parser.getTimestamp());
+		assertNull(parser.getHostname());
+		assertNull(parser.getAppName());
+		assertEquals("msg", body(buf));
+	}
+
+	@Test
+	void structuredDataWithEscapedBracketIsSkipped() {
+		ByteBuf buf = parse("<14>1 2024-02-28T07:05:09Z host app - - [id@1 a=\"x\\]y\" b=\"q\\\"]r\"][x@2 c=\"1\"] body ] text");
+
+		assertEquals("body ] text", body(buf));
+
+		assertFalse(parser.parse(Unpooled.copiedBuffer("<14>1 2024-02-28T07:05:09Z host app - - [id@1 a=\"x\\]\"", StandardCharsets.UTF_8)));
+	}
+
+	@Test
+	void byteOrderMarkIsNotInBody() {
+		ByteBuf buf = parse("<14>1 2024-02-28T07:05:09Z host app - - - \uFEFFbody");
+
+		assertEquals("body", body(buf));
+	}
+
+	@Test
+	void fractionAndOffsetAreRead() {
+		parse("<14>1 2024-02-28T07:05:09.123+09:00 host app - - - x");
+		assertEquals(Instant.parse("2024-02-27T22:05:09.123Z").toEpochMilli(), parser.getTimestamp());
+
+		parse("<14>1 2024-02-28T07:05:09.5-05:30 host app - - - x");
+		assertEquals(Instant.parse("2024-02-28T12:35:09.500Z").toEpochMilli(), parser.getTimestamp());
+
+		parse("<14>1 2024-02-28T07:05:09.123456Z host app - - - x");
+		assertEquals(Instant.parse("2024-02-28T07:05:09.123Z").toEpochMilli(), parser.getTimestamp());
+
+		// RFC 3339 timestamp of relays in BSD line.
+		parse("<13>2024-02-29T23:59:60Z host app: x");
+		assertEquals(Instant.parse("2024-03-01T00:00:00Z").toEpochMilli(), parser.getTimestamp());
+
+		parse("<14>1 20x5-02-28T07:05:09Z host app - - - x");
+		assertEquals(EventTimeParser.UNKNOWN_TIME, parser.getTimestamp());
+		parse("<14>1 2024-02-28T07:05:09 host app - - - x");
+		assertEquals(EventTimeParser.UNKNOWN_TIME, parser.getTimestamp());
+	}
+
+	@Test
+	void bsdTimeLaterThanTomorrowIsLastYear() {
+		LocalDateTime now = LocalDateTime.now().withNano(0);
+		LocalDateTime later = now.plusDays(2);
+		if(later.getMonthValue() == 2 && later.getDayOfMonth() == 29) {
+			later = later.plusDays(1);
+		}
+		LocalDateTime earlier = now.minusHours(1);
+
+		parse("<13>" + bsdTime(later) + " host app: x");
+		assertEquals(toMillis(later.minusYears(1)), parser.getTimestamp());
+
+		parse("<13>" + bsdTime(earlier) + " host app: x");
+		assertEquals(toMillis(earlier), parser.getTimestamp());
+	}
+
+	private ByteBuf parse(String line) {
+		ByteBuf buf = Unpooled.copiedBuffer(line, StandardCharsets.UTF_8);
+		assertTrue(parser.parse(buf), line);
+		return buf;
+	}
+
+	private String body(ByteBuf buf) {
+		return buf.toString(parser.getBodyIndex(), buf.writerIndex() - parser.getBodyIndex(), StandardCharsets.UTF_8);
+	}
+
+	private String bsdTime(LocalDateTime time) {
+		return DateTimeFormatter.ofPattern("MMM ppd HH:mm:ss", Locale.ENGLISH).format(time);
+	}
+
+	private long toMillis(LocalDateTime time) {
+		return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+	}
+}
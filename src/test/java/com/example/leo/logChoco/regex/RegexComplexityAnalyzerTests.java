@@ -0,0 +1,76 @@
+package com.example.leo.logChoco.regex;
+
+import com.example.leo.logChoco.exception.InvalidLogFormatException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RegexComplexityAnalyzerTests {
+
+	@Test
+	void possessiveLatinRegexMatchesSameLines() throws InvalidLogFormatException {
+		RegexAnalysis analysis = new RegexComplexityAnalyzer().analyze(List.of("(\\d+)", "([a-z]+)", "(.*)"), " ");
+
+		assertEquals("(\\d++) ([a-z]++) (.*+)", analysis.getRegex());
+		assertSameMatches("(\\d+) ([a-z]+) (.*)", analysis.getRegex(), "1a ", 6);
+	}
+
+	@Test
+	void wildcardFieldKeepsQuantifierAndGroup() throws InvalidLogFormatException {
+		RegexAnalysis analysis = new RegexComplexityAnalyzer().analyze(List.of("(.+)", ".*", "(\\d+)"), ",");
+
+		assertEquals("([^,]++),[^,]*+,(\\d++)", analysis.getRegex());
+		Pattern pattern = Pattern.compile(analysis.getRegex());
+		assertEquals(2, pattern.matcher("").groupCount());
+		assertFalse(pattern.matcher(",,1").matches());
+		assertTrue(pattern.matcher("a,,1").matches());
+	}
+
+	@Test
+	void nonLatinClassIsNotPossessiveWhenFollowerOverlaps() throws InvalidLogFormatException {
+		RegexAnalysis analysis = new RegexComplexityAnalyzer().analyze(List.of("[가-힣]+힣"), " ");
+
+		assertEquals("[가-힣]+힣", analysis.getRegex());
+		assertTrue(Pattern.compile(analysis.getRegex()).matcher("가나힣").matches());
+		assertSameMatches("[가-힣]+힣", analysis.getRegex(), "가힣a", 5);
+	}
+
+	@Test
+	void nonLatinClassIsPossessiveWhenFollowerIsLatin() throws InvalidLogFormatException {
+		RegexAnalysis analysis = new RegexComplexityAnalyzer().analyze(List.of("([가-힣]+)", "(\\p{IsHangul}*)", "(\\d+)"), ",");
+
+		assertEquals("([가-힣]++),(\\p{IsHangul}*+),(\\d++)", analysis.getRegex());
+		assertSameMatches("([가-힣]+),(\\p{IsHangul}*),(\\d+)", analysis.getRegex(), "가ㄱ,1", 6);
+	}
+
+	/**
+	 * Check that both regex match the same lines among every line of alphabet up to maxLength.
+	 * */
+	private void assertSameMatches(String original, String rewritten, String alphabet, int maxLength) {
+		Pattern originalPattern = Pattern.compile(original);
+		Pattern rewrittenPattern = Pattern.compile(rewritten);
+
+		List<String> lines = new ArrayList<>();
+		lines.add("");
+		for(int start = 0, length = 1; length <= maxLength; length++) {
+			int end = lines.size();
+			for(int i = start; i < end; i++) {
+				for(char c : alphabet.toCharArray()) {
+					lines.add(lines.get(i) + c);
+				}
+			}
+			start = end;
+		}
+
+		for(String line : lines) {
+			assertEquals(originalPattern.matcher(line).matches(), rewrittenPattern.matcher(line).matches(),
+					"'" + line + "' on " + original + " and " + rewritten);
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package com.example.leo.logChoco.regex.scanner;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class FieldTokenizerTests {
+
+	// text around a line and slots before its columns, so ranges must be relative to from and base.
+	private static final String PADDING = "#,\"=";
+	private static final int BASE = 3;
+
+	@Test
+	void keyValueMapsKeysOntoColumnsInAnyOrder() {
+		KeyValueTokenizer tokenizer = new KeyValueTokenizer(" ", "=", '"', List.of("src", "dst", "msg"));
+
+		assertArrayEquals(new String[]{"10.0.0.1", "10.0.0.2", "hi"}, split(tokenizer, "msg=hi dst=10.0.0.2 src=10.0.0.1", 3));
+		// missing key is empty, unknown key is skipped, and spaces between pairs are skipped.
+		assertArrayEquals(new String[]{"10.0.0.1", "", ""}, split(tokenizer, "proto=tcp  src=10.0.0.1 other=\"a b\"", 3));
+		assertArrayEquals(new String[]{"", "", ""}, split(tokenizer, "", 3));
+		assertArrayEquals(new String[]{"", "x", ""}, split(tokenizer, "src= dst=x", 3));
+	}
+
+	@Test
+	void keyValueQuotedValueCanHaveDelimiterAndQuotes() {
+		KeyValueTokenizer tokenizer = new KeyValueTokenizer(" ", "=", '"', List.of("src", "msg"));
+
+		assertArrayEquals(new String[]{"1", "login failed"}, split(tokenizer, "msg=\"login failed\" src=1", 2));
+		assertArrayEquals(new String[]{"1", "say \"\"hi\"\""}, split(tokenizer, "src=1 msg=\"say \"\"hi\"\"\"", 2));
+		assertArrayEquals(new String[]{"", "a \\\" b"}, split(tokenizer, "msg=\"a \\\" b\"", 2));
+		assertArrayEquals(new String[]{"", ""}, split(tokenizer, "msg=\"\"", 2));
+
+		// value is not closed, or its quote is not followed by delimiter.
+		assertNull(split(tokenizer, "msg=\"login failed src=1", 2));
+		assertNull(split(tokenizer, "msg=\"a\"b src=1", 2));
+		// a token without separator is not a pair.
+		assertNull(split(tokenizer, "src=1 garbage", 2));
+	}
+
+	@Test
+	void keyValueMultiCharDelimiterAndSeparator() {
+		KeyValueTokenizer tokenizer = new KeyValueTokenizer(", ", ":=", '\'', List.of("user", "action"));
+
+		assertArrayEquals(new String[]{"kim, lee", "a=b:c"}, split(tokenizer, "action:=a=b:c, user:='kim, lee'", 2));
+		assertArrayEquals(new String[]{"kim", ""}, split(tokenizer, "user:=kim, , ", 2));
+		assertNull(split(tokenizer, "user=kim, action:=x", 2));
+	}
+
+	@Test
+	void quotedFieldCanHaveDelimiterAndQuotes() {
+		QuotedFieldTokenizer tokenizer = new QuotedFieldTokenizer(",", '"', 3);
+
+		assertArrayEquals(new String[]{"a", "b,c", "d"}, split(tokenizer, "a,\"b,c\",d", 3));
+		assertArrayEquals(new String[]{"", "say \"\"hi\"\"", "x"}, split(tokenizer, ",\"say \"\"hi\"\"\",x", 3));
+		assertArrayEquals(new String[]{"a\\\",b", "c", ""}, split(tokenizer, "\"a\\\",b\",c,", 3));
+
+		// quote that doesn't close a field before delimiter, and a line with too few fields.
+		assertNull(split(tokenizer, "\"a\"b,c,d", 3));
+		assertNull(split(tokenizer, "\"a,b,c", 3));
+		assertNull(split(tokenizer, "a,b", 3));
+	}
+
+	@Test
+	void quotedLastFieldTakesRestOfLine() {
+		QuotedFieldTokenizer tokenizer = new QuotedFieldTokenizer(",", '"', 2);
+
+		assertArrayEquals(new String[]{"a", "b,c"}, split(tokenizer, "a,\"b,c\"", 2));
+		assertArrayEquals(new String[]{"a", "b,c,d"}, split(tokenizer, "a,b,c,d", 2));
+		// quotes of last field that doesn't end at end of line are part of it.
+		assertArrayEquals(new String[]{"a", "\"b\" c"}, split(tokenizer, "a,\"b\" c", 2));
+		assertArrayEquals(new String[]{"a", "\"b"}, split(tokenizer, "a,\"b", 2));
+	}
+
+	@Test
+	void quotedMultiCharDelimiter() {
+		QuotedFieldTokenizer tokenizer = new QuotedFieldTokenizer("||", '\'', 3);
+
+		assertArrayEquals(new String[]{"a|b", "c||d", "e"}, split(tokenizer, "a|b||'c||d'||e", 3));
+		assertArrayEquals(new String[]{"", "", "x"}, split(tokenizer, "''||||'x'", 3));
+		assertNull(split(tokenizer, "a|b|c", 3));
+	}
+
+	/**
+	 * Split line that is put between padding, and return text of each column, or null if it can't be split.
+	 * */
+	private String[] split(FieldTokenizer tokenizer, String line, int columnCount) {
+		String text = PADDING + line + PADDING;
+		int from = PADDING.length();
+		int to = from + line.length();
+		int[] starts = new int[BASE + columnCount];
+		int[] ends = new int[BASE + columnCount];
+
+		if(!tokenizer.split(text, from, to, starts, ends, BASE)) {
+			return null;
+		}
+		String[] columns = new String[columnCount];
+		for(int i = 0; i < columnCount; i++) {
+			columns[i] = text.substring(starts[BASE + i], ends[BASE + i]);
+		}
+		return columns;
+	}
+}
@@ -0,0 +1,130 @@
+package com.example.leo.logChoco.rule;
+
+import com.example.leo.logChoco.entity.ReadFieldInfo;
+import com.example.leo.logChoco.entity.log.LogBatch;
+import com.example.leo.logChoco.exception.InvalidLogFormatException;
+import com.example.leo.logChoco.regex.FieldType;
+import com.example.leo.logChoco.regex.scanner.AbstractFieldScanner;
+import com.example.leo.logChoco.regex.scanner.FieldScannerFactory;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RuleCompilerTests {
+
+	private static final List<String> COLUMNS = List.of("sev", "critical", "sip", "score", "name", "dport");
+	private static final List<FieldType> TYPES = List.of(
+			FieldType.INTEGER, FieldType.BOOLEAN, FieldType.IPV4, FieldType.FLOAT, FieldType.STRING, FieldType.INTEGER);
+
+	private final ReadFieldInfo fieldInfo = newFieldInfo();
+
+	@Test
+	void notBindsTighterThanAndThanOr() throws InvalidLogFormatException {
+		DropRule rule = RuleCompiler.compile("not sev < 3 and critical == true or name == x", fieldInfo);
+
+		assertFalse(drops(rule, "5,false,10.0.0.1,1.0,y,80"));
+		assertTrue(drops(rule, "5,true,10.0.0.1,1.0,y,80"));
+		assertTrue(drops(rule, "1,true,10.0.0.1,1.0,x,80"));
+		assertFalse(drops(rule, "1,true,10.0.0.1,1.0,y,80"));
+
+		DropRule andFirst = RuleCompiler.compile("sev == 1 or sev == 2 and critical == true", fieldInfo);
+		assertTrue(drops(andFirst, "1,false,10.0.0.1,1.0,y,80"));
+		assertFalse(drops(andFirst, "2,false,10.0.0.1,1.0,y,80"));
+
+		DropRule grouped = RuleCompiler.compile("(sev == 1 or sev == 2) and critical == true", fieldInfo);
+		assertFalse(drops(grouped, "1,false,10.0.0.1,1.0,y,80"));
+		assertTrue(drops(grouped, "2,true,10.0.0.1,1.0,y,80"));
+	}
+
+	@Test
+	void quotedLiteralIsNeverKeywordOrSymbol() throws InvalidLogFormatException {
+		assertTrue(drops(RuleCompiler.compile("name == \"a b\"", fieldInfo), "1,true,10.0.0.1,1.0,a b,80"));
+		assertTrue(drops(RuleCompiler.compile("name == 'or'", fieldInfo), "1,true,10.0.0.1,1.0,or,80"));
+
+		DropRule rule = RuleCompiler.compile("name in {'{x}', \"not\"} and name != '('", fieldInfo);
+		assertTrue(drops(rule, "1,true,10.0.0.1,1.0,{x},80"));
+		assertTrue(drops(rule, "1,true,10.0.0.1,1.0,not,80"));
+		assertFalse(drops(rule, "1,true,10.0.0.1,1.0,x,80"));
+	}
+
+	@Test
+	void networkPrefixMasksAddress() throws InvalidLogFormatException {
+		DropRule any = RuleCompiler.compile("sip in 0.0.0.0/0", fieldInfo);
+		assertTrue(drops(any, "1,true,255.255.255.255,1.0,x,80"));
+		assertTrue(drops(any, "1,true,0.0.0.0,1.0,x,80"));
+		// a field without typed value is never in a network.
+		assertFalse(drops(any, "1,true,,1.0,x,80"));
+
+		DropRule host = RuleCompiler.compile("sip in 10.0.0.1/32", fieldInfo);
+		assertTrue(drops(host, "1,true,10.0.0.1,1.0,x,80"));
+		assertFalse(drops(host, "1,true,10.0.0.2,1.0,x,80"));
+
+		DropRule network = RuleCompiler.compile("sip in 10.1.2.3/8", fieldInfo);
+		assertTrue(drops(network, "1,true,10.200.0.1,1.0,x,80"));
+		assertFalse(drops(network, "1,true,11.0.0.1,1.0,x,80"));
+	}
+
+	@Test
+	void floatColumnIsComparedAsNumber() throws InvalidLogFormatException {
+		DropRule greater = RuleCompiler.compile("score > 1.5", fieldInfo);
+		assertTrue(drops(greater, "1,true,10.0.0.1,1.75,x,80"));
+		assertFalse(drops(greater, "1,true,10.0.0.1,1.5,x,80"));
+		assertTrue(drops(greater, "1,true,10.0.0.1,10.0,x,80"));
+
+		assertTrue(drops(RuleCompiler.compile("score <= -0.5", fieldInfo), "1,true,10.0.0.1,-2.25,x,80"));
+		assertTrue(drops(RuleCompiler.compile("score == 0.10", fieldInfo), "1,true,10.0.0.1,0.1,x,80"));
+		assertFalse(drops(RuleCompiler.compile("score != 0.1", fieldInfo), "1,true,10.0.0.1,0.1,x,80"));
+	}
+
+	@Test
+	void inSetComparesTypedValues() throws InvalidLogFormatException {
+		DropRule ports = RuleCompiler.compile("dport in {53, 123, 053}", fieldInfo);
+		assertTrue(drops(ports, "1,true,10.0.0.1,1.0,x,53"));
+		assertTrue(drops(ports, "1,true,10.0.0.1,1.0,x,123"));
+		assertFalse(drops(ports, "1,true,10.0.0.1,1.0,x,54"));
+		assertFalse(drops(ports, "1,true,10.0.0.1,1.0,x,"));
+
+		DropRule addresses = RuleCompiler.compile("sip in {10.0.0.1,10.0.0.3}", fieldInfo);
+		assertTrue(drops(addresses, "1,true,10.0.0.3,1.0,x,80"));
+		assertFalse(drops(addresses, "1,true,10.0.0.2,1.0,x,80"));
+	}
+
+	@Test
+	void invalidRuleIsRejected() {
+		assertThrows(InvalidLogFormatException.class, () -> RuleCompiler.compile("port == 80", fieldInfo));
+		assertThrows(InvalidLogFormatException.class, () -> RuleCompiler.compile("sev < abc", fieldInfo));
+		assertThrows(InvalidLogFormatException.class, () -> RuleCompiler.compile("score > 2", fieldInfo));
+		assertThrows(InvalidLogFormatException.class, () -> RuleCompiler.compile("dport in {53, x}", fieldInfo));
+		assertThrows(InvalidLogFormatException.class, () -> RuleCompiler.compile("sip in 10.0.0.0/33", fieldInfo));
+		assertThrows(InvalidLogFormatException.class, () -> RuleCompiler.compile("dport in 10.0.0.0/8", fieldInfo));
+		assertThrows(InvalidLogFormatException.class, () -> RuleCompiler.compile("name < x", fieldInfo));
+		assertThrows(InvalidLogFormatException.class, () -> RuleCompiler.compile("name == 'x", fieldInfo));
+		assertThrows(InvalidLogFormatException.class, () -> RuleCompiler.compile("(sev == 1", fieldInfo));
+		assertThrows(InvalidLogFormatException.class, () -> RuleCompiler.compile("sev == 1 sev == 2", fieldInfo));
+		assertThrows(InvalidLogFormatException.class, () -> RuleCompiler.compile("sev ~ 1", fieldInfo));
+	}
+
+	private ReadFieldInfo newFieldInfo() {
+		ReadFieldInfo info = new ReadFieldInfo();
+		info.setColumns(COLUMNS);
+		info.setDelimiter(",");
+		AbstractFieldScanner[] scanners = new AbstractFieldScanner[TYPES.size()];
+		for(int i = 0; i < scanners.length; i++) {
+			scanners[i] = FieldScannerFactory.getFieldScanner(TYPES.get(i));
+		}
+		info.setFieldScanners(scanners);
+		return info;
+	}
+
+	private boolean drops(DropRule rule, String log) {
+		LogBatch batch = new LogBatch();
+		batch.add("127.0.0.1", 0, log);
+		batch.reserveFields(COLUMNS.size());
+		batch.splitFields(0, fieldInfo);
+		return rule.drops(batch, 0);
+	}
+}